@@ -0,0 +1,172 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The checked-in documents that benchmarks run against, and the events that
+ * the sanitizer produces for them.
+ */
+final class Corpus {
+
+  /** Short inputs like user comments, for which per-call costs dominate. */
+  static final List<String> COMMENTS = List.of(
+      "Great post!",
+      "I <b>totally</b> agree &amp; would add <i>one</i> thing.",
+      "See <a href=\"http://example.com/\" onclick=\"evil()\">here</a>",
+      "<p>Two<br>lines</p><script>alert(1)</script>",
+      "1 &lt; 2 but <u>3</u> &gt; 2");
+
+  /**
+   * Loads a document from the corpus directory on the classpath.
+   *
+   * @param name a file name like {@code comment.html}.
+   */
+  static String load(String name) throws IOException {
+    try (InputStream in =
+             Corpus.class.getResourceAsStream("/corpus/" + name)) {
+      if (in == null) {
+        throw new IOException("No such document in corpus: " + name);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int n; (n = in.read(buffer)) > 0;) {
+        bytes.write(buffer, 0, n);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * The events that {@link HtmlSanitizer#sanitize(String,
+   * HtmlSanitizer.Policy) HtmlSanitizer.sanitize} passes to a policy for
+   * html, after tags are balanced but before any element or attribute is
+   * filtered.
+   */
+  static Events lex(String html) {
+    Events events = new Events();
+    HtmlSanitizer.sanitize(html, events);
+    return events;
+  }
+
+  /** Recorded events that can be replayed into a receiver. */
+  static final class Events implements HtmlSanitizer.Policy {
+    private static final int TEXT = -1;
+    private static final int CLOSE_TAG = -2;
+
+    /**
+     * For each event, {@link #TEXT}, {@link #CLOSE_TAG}, or for an open tag,
+     * the number of attribute names and values.
+     */
+    private final List<Integer> shapes = new ArrayList<>();
+    private final List<String> strings = new ArrayList<>();
+    /** The values of style attributes in document order. */
+    final List<String> styles = new ArrayList<>();
+    /** The values of all attributes in document order. */
+    final List<String> attributeValues = new ArrayList<>();
+    /** The decoded text chunks in document order. */
+    final List<String> texts = new ArrayList<>();
+
+    public void openDocument() {
+      // Bracketed by the replayer.
+    }
+
+    public void closeDocument() {
+      // Bracketed by the replayer.
+    }
+
+    public void openTag(String elementName, List<String> attrs) {
+      shapes.add(attrs.size());
+      strings.add(elementName);
+      strings.addAll(attrs);
+      for (int i = 0, n = attrs.size(); i + 1 < n; i += 2) {
+        attributeValues.add(attrs.get(i + 1));
+        if ("style".equals(attrs.get(i))) {
+          styles.add(attrs.get(i + 1));
+        }
+      }
+    }
+
+    public void closeTag(String elementName) {
+      shapes.add(CLOSE_TAG);
+      strings.add(elementName);
+    }
+
+    public void text(String text) {
+      shapes.add(TEXT);
+      strings.add(text);
+      texts.add(text);
+    }
+
+    /** Sends the recorded events to receiver as one document. */
+    void replay(HtmlStreamEventReceiver receiver) {
+      List<String> attrs = new ArrayList<>();
+      receiver.openDocument();
+      for (int i = 0, j = 0, n = shapes.size(); i < n; ++i) {
+        int shape = shapes.get(i);
+        switch (shape) {
+          case TEXT:
+            receiver.text(strings.get(j++));
+            break;
+          case CLOSE_TAG:
+            receiver.closeTag(strings.get(j++));
+            break;
+          default:
+            String elementName = strings.get(j++);
+            attrs.clear();
+            attrs.addAll(strings.subList(j, j + shape));
+            j += shape;
+            receiver.openTag(elementName, attrs);
+            break;
+        }
+      }
+      receiver.closeDocument();
+    }
+  }
+
+  /** Receives events and does nothing with them. */
+  static final HtmlStreamEventReceiver DO_NOTHING =
+      new HtmlStreamEventReceiver() {
+        public void openDocument() { /* do nothing */ }
+        public void closeDocument() { /* do nothing */ }
+        public void openTag(String elementName, List<String> attrs) {
+          /* do nothing */
+        }
+        public void closeTag(String elementName) { /* do nothing */ }
+        public void text(String text) { /* do nothing */ }
+      };
+
+  private Corpus() { /* uninstantiable */ }
+}
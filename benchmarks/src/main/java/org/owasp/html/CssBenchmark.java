@@ -0,0 +1,71 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Times lexing and filtering the style attributes in a document.
+ */
+public class CssBenchmark extends CorpusBenchmark {
+
+  private final StylingPolicy stylingPolicy = new StylingPolicy(
+      CssSchema.DEFAULT,
+      new Function<String, String>() {
+        public String apply(String url) {
+          return StandardUrlAttributePolicy.INSTANCE.apply("img", "src", url);
+        }
+      });
+
+  @Benchmark
+  public int lexCssTokens() {
+    int n = 0;
+    List<String> styles = events.styles;
+    for (int i = 0, size = styles.size(); i < size; ++i) {
+      for (String token : CssTokens.lex(styles.get(i))) {
+        n += token.length();
+      }
+    }
+    return n;
+  }
+
+  @Benchmark
+  public int stylingPolicy() {
+    int n = 0;
+    List<String> styles = events.styles;
+    for (int i = 0, size = styles.size(); i < size; ++i) {
+      String sanitized = stylingPolicy.apply("p", "style", styles.get(i));
+      if (sanitized != null) { n += sanitized.length(); }
+    }
+    return n;
+  }
+}
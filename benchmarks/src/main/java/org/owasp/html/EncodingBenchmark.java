@@ -0,0 +1,64 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/** Times decoding HTML and encoding text and attribute values. */
+public class EncodingBenchmark extends CorpusBenchmark {
+
+  private final StringBuilder out = new StringBuilder();
+
+  @Benchmark
+  public String decodeHtml() {
+    return Encoding.decodeHtml(html, false);
+  }
+
+  @Benchmark
+  public int encodePcdata() throws IOException {
+    out.setLength(0);
+    for (String text : events.texts) {
+      Encoding.encodePcdataOnto(text, out);
+    }
+    return out.length();
+  }
+
+  @Benchmark
+  public int encodeAttributeValues() throws IOException {
+    out.setLength(0);
+    List<String> values = events.attributeValues;
+    for (int i = 0, n = values.size(); i < n; ++i) {
+      Encoding.encodeHtmlAttribOnto(values.get(i), out);
+    }
+    return out.length();
+  }
+}
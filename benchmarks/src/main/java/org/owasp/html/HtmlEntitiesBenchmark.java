@@ -0,0 +1,65 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/** Times decoding each character reference in a document. */
+public class HtmlEntitiesBenchmark extends CorpusBenchmark {
+
+  /** The index of each {@code &} in html. */
+  private int[] ampersands;
+  private final StringBuilder out = new StringBuilder();
+
+  @Setup
+  public void findAmpersands() {
+    int[] found = new int[16];
+    int n = 0;
+    for (int i = html.indexOf('&'); i >= 0; i = html.indexOf('&', i + 1)) {
+      if (n == found.length) { found = Arrays.copyOf(found, n * 2); }
+      found[n++] = i;
+    }
+    ampersands = Arrays.copyOf(found, n);
+  }
+
+  @Benchmark
+  public int appendDecodedEntity() {
+    out.setLength(0);
+    int limit = html.length();
+    int end = 0;
+    for (int ampersand : ampersands) {
+      end += HtmlEntities.appendDecodedEntity(
+          html, ampersand, limit, false, out);
+    }
+    return end + out.length();
+  }
+}
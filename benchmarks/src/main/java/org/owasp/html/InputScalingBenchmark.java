@@ -0,0 +1,101 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times sanitizing documents of various shapes and sizes made by
+ * {@link HtmlCorpusGenerator}, to show how the cost grows with the input.
+ * <p>
+ * Dividing a score by {@link #length} gives the cost per input char, which
+ * should stay flat as the length grows.  Run with {@code -prof gc} and do
+ * the same with {@code gc.alloc.rate.norm} to compare bytes allocated per
+ * char, which is less noisy than time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputScalingBenchmark {
+
+  /** The kind of document to generate. */
+  @Param({
+      "default", "deep", "flat", "entities", "css", "scripts", "malformed" })
+  public String shape;
+
+  /** The length in chars of the document to generate. */
+  @Param({ "4096", "65536", "1048576" })
+  public int length;
+
+  /** The generator seed. */
+  @Param({ "0" })
+  public long seed;
+
+  private PolicyFactory policy;
+  private String html;
+
+  @Setup
+  public void generate() {
+    policy = Sanitizers.FORMATTING.and(Sanitizers.LINKS)
+        .and(Sanitizers.BLOCKS).and(Sanitizers.IMAGES)
+        .and(Sanitizers.TABLES).and(Sanitizers.STYLES);
+    HtmlCorpusGenerator g = new HtmlCorpusGenerator(seed);
+    switch (shape) {
+      case "default": break;
+      case "deep": g.maxDepth(1000).tagMix("div", "span", "b", "i"); break;
+      case "flat": g.maxDepth(1).attributesPerTag(4); break;
+      case "entities": g.entityDensity(0.5); break;
+      case "css": g.styleDensity(1); break;
+      case "scripts": g.scriptStyleRatio(0.5); break;
+      case "malformed": g.malformedness(0.2); break;
+      default: throw new IllegalArgumentException(shape);
+    }
+    html = g.length(length).generate();
+  }
+
+  @Benchmark
+  public String sanitize() {
+    return policy.sanitize(html);
+  }
+}
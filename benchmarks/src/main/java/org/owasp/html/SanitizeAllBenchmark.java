@@ -0,0 +1,117 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times {@link PolicyFactory#sanitizeAll(List, Executor)} on a batch of
+ * inputs with a number of threads sharing one policy.
+ * Compare scores across {@link #threads} to see how well it scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SanitizeAllBenchmark {
+
+  /**
+   * {@code comments} for a batch of short inputs, or the name of a document
+   * in the corpus for a batch of copies of it.
+   */
+  @Param({ "comments", "Yahoo!.html" })
+  public String batch;
+
+  /** The number of threads that sanitize, including the calling thread. */
+  @Param({ "1", "2", "4" })
+  public int threads;
+
+  private final PolicyFactory policy = Sanitizers.FORMATTING
+      .and(Sanitizers.LINKS).and(Sanitizers.BLOCKS).and(Sanitizers.IMAGES)
+      .and(Sanitizers.TABLES).and(Sanitizers.STYLES);
+  private List<String> inputs;
+  private ExecutorService pool;
+  private Executor executor;
+
+  @Setup
+  public void setUp() throws IOException {
+    inputs = new ArrayList<>();
+    if ("comments".equals(batch)) {
+      for (int i = 0; i < 20000; ++i) {
+        inputs.add(Corpus.COMMENTS.get(i % Corpus.COMMENTS.size()));
+      }
+    } else {
+      String html = Corpus.load(batch);
+      for (int i = 0; i < 200; ++i) {
+        inputs.add(html);
+      }
+    }
+    if (threads > 1) {
+      pool = Executors.newFixedThreadPool(threads - 1);
+      executor = pool;
+    } else {
+      executor = new Executor() {
+        public void execute(Runnable r) { r.run(); }
+      };
+    }
+  }
+
+  @TearDown
+  public void shutDown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Benchmark
+  public List<String> sanitizeAll() {
+    return policy.sanitizeAll(inputs, executor);
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.owasp.html.examples.EbayPolicyExample;
+
+/** Times sanitizing whole documents end to end with various policies. */
+public class SanitizeBenchmark extends CorpusBenchmark {
+
+  /**
+   * The name of one of the {@link Sanitizers} policies, {@code ALL} for all
+   * of them together, or {@code EBAY} for {@link EbayPolicyExample}.
+   */
+  @Param({
+      "FORMATTING", "BLOCKS", "STYLES", "LINKS", "TABLES", "IMAGES", "ALL",
+      "EBAY" })
+  public String policy;
+
+  private PolicyFactory factory;
+
+  @Setup
+  public void choosePolicy() {
+    switch (policy) {
+      case "FORMATTING": factory = Sanitizers.FORMATTING; break;
+      case "BLOCKS": factory = Sanitizers.BLOCKS; break;
+      case "STYLES": factory = Sanitizers.STYLES; break;
+      case "LINKS": factory = Sanitizers.LINKS; break;
+      case "TABLES": factory = Sanitizers.TABLES; break;
+      case "IMAGES": factory = Sanitizers.IMAGES; break;
+      case "ALL":
+        factory = Sanitizers.FORMATTING.and(Sanitizers.BLOCKS)
+            .and(Sanitizers.STYLES).and(Sanitizers.LINKS)
+            .and(Sanitizers.TABLES).and(Sanitizers.IMAGES);
+        break;
+      case "EBAY": factory = EbayPolicyExample.POLICY_DEFINITION; break;
+      default: throw new IllegalArgumentException(policy);
+    }
+  }
+
+  @Benchmark
+  public String sanitize() {
+    return factory.sanitize(html);
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times checking the URLs in link-heavy content, like link lists and
+ * image galleries, where URL attribute policies dominate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlBenchmark {
+
+  private static final String[] PREFIXES = {
+      "http://", "https://", "HTTPS://", "mailto:", "javascript:", "ftp://",
+      "/", "//", "", "#", "?q=",
+  };
+
+  /** The count of links in the generated document. */
+  @Param({ "1000" })
+  public int links;
+
+  private final AttributePolicy urlPolicy =
+      new FilterUrlByProtocolAttributePolicy(
+          List.of("http", "https", "mailto"));
+
+  private final PolicyFactory policy =
+      Sanitizers.LINKS.and(Sanitizers.IMAGES);
+
+  /** The href and src values in the document. */
+  private List<String> urls;
+  /** Links and images with those URLs. */
+  private String html;
+
+  @Setup
+  public void generate() {
+    Random r = new Random(0x5eed);
+    urls = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < links; ++i) {
+      StringBuilder url = new StringBuilder();
+      if (r.nextInt(8) == 0) { url.append(' '); }
+      url.append(PREFIXES[r.nextInt(PREFIXES.length)])
+          .append("example").append(r.nextInt(100)).append(".com/path/")
+          .append(i);
+      if (r.nextInt(8) == 0) { url.append('\n'); }
+      String value = url.toString();
+      urls.add(value);
+      if (r.nextBoolean()) {
+        sb.append("<a href=\"").append(value).append("\">link ").append(i)
+            .append("</a>\n");
+      } else {
+        sb.append("<img src=\"").append(value).append("\" alt=\"")
+            .append(i).append("\">\n");
+      }
+    }
+    html = sb.toString();
+  }
+
+  @Benchmark
+  public int filterUrls() {
+    int n = 0;
+    for (int i = 0, size = urls.size(); i < size; ++i) {
+      String url = urlPolicy.apply("a", "href", urls.get(i));
+      if (url != null) { n += url.length(); }
+    }
+    return n;
+  }
+
+  @Benchmark
+  public String sanitizeLinks() {
+    return policy.sanitize(html);
+  }
+}
@@ -0,0 +1,52 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+/**
+ * Implemented by policies that know, from an attribute's name alone, that
+ * they will discard it, so that {@link HtmlSanitizer} need not decode the
+ * attribute's value or pass it to the policy.
+ * <p>
+ * The sanitizer only consults this when events go straight from the tag
+ * balancer to the policy; a preprocessor could rename elements or inspect
+ * the attributes that would be skipped.
+ * When sanitizing in parallel, this is called on other threads while the
+ * policy receives events, so it must depend only on immutable state.
+ */
+@TCB
+interface AttributeFilter {
+  /**
+   * False if an attribute with the given name on an element with the given
+   * name would certainly be removed by the policy before it has any effect.
+   *
+   * @param elementName a canonical element name as passed to
+   *     {@link HtmlSanitizer.Policy#openTag}.
+   * @param attributeName a canonical attribute name.
+   */
+  boolean mayKeepAttribute(String elementName, String attributeName);
+}
@@ -0,0 +1,158 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The list of alternating attribute names and values passed to
+ * {@link HtmlSanitizer.Policy#openTag}.
+ * <p>
+ * Policies commonly walk the list with a {@link java.util.ListIterator},
+ * removing disallowed attributes as they go, and then index into it to look
+ * for duplicates.  A linked list makes removal cheap but indexing expensive
+ * and allocates a node per element.
+ * <p>
+ * This is instead a gap buffer: elements live in one array with a single
+ * gap that moves to wherever elements are inserted or removed.  Indexing is
+ * O(1), and since closing the gap is deferred until an element on the other
+ * side of it is touched, removing elements while walking in one direction is
+ * O(1) amortized.  One instance is reused for every tag, so once it has grown
+ * to fit the largest tag it does not allocate.
+ */
+@NotThreadSafe
+final class AttributeList extends AbstractList<String> implements RandomAccess {
+  private String[] contents = new String[16];
+  /** Elements are in contents[0:gapStart] and contents[gapEnd:]. */
+  private int gapStart;
+  private int gapEnd = contents.length;
+
+  @Override
+  public int size() {
+    return contents.length - (gapEnd - gapStart);
+  }
+
+  @Override
+  public String get(int index) {
+    return contents[physicalIndex(index)];
+  }
+
+  @Override
+  public String set(int index, String element) {
+    int i = physicalIndex(index);
+    String old = contents[i];
+    contents[i] = element;
+    return old;
+  }
+
+  @Override
+  public void add(int index, String element) {
+    if (index < 0 || index > size()) {
+      throw new IndexOutOfBoundsException("" + index);
+    }
+    moveGapTo(index);
+    if (gapStart == gapEnd) { grow(); }
+    contents[gapStart++] = element;
+    ++modCount;
+  }
+
+  @Override
+  public String remove(int index) {
+    String old = get(index);
+    moveGapTo(index);
+    // The element at index is now just after the gap.
+    contents[gapEnd++] = null;
+    ++modCount;
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(contents, 0, gapStart, null);
+    Arrays.fill(contents, gapEnd, contents.length, null);
+    gapStart = 0;
+    gapEnd = contents.length;
+    ++modCount;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException(fromIndex + ":" + toIndex);
+    }
+    moveGapTo(fromIndex);
+    int newGapEnd = gapEnd + (toIndex - fromIndex);
+    Arrays.fill(contents, gapEnd, newGapEnd, null);
+    gapEnd = newGapEnd;
+    ++modCount;
+  }
+
+  /** The last element. */
+  String getLast() {
+    return get(size() - 1);
+  }
+
+  private int physicalIndex(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("" + index);
+    }
+    return index < gapStart ? index : index + (gapEnd - gapStart);
+  }
+
+  /** Moves elements across the gap so that it starts at index. */
+  private void moveGapTo(int index) {
+    if (index < gapStart) {
+      int n = gapStart - index;
+      System.arraycopy(contents, index, contents, gapEnd - n, n);
+      // Clear slots that are now in the gap so they do not retain strings.
+      Arrays.fill(contents, index, Math.min(gapStart, gapEnd - n), null);
+      gapStart = index;
+      gapEnd -= n;
+    } else if (index > gapStart) {
+      int n = index - gapStart;
+      System.arraycopy(contents, gapEnd, contents, gapStart, n);
+      Arrays.fill(contents, Math.max(gapEnd, index), gapEnd + n, null);
+      gapStart = index;
+      gapEnd += n;
+    }
+  }
+
+  private void grow() {
+    int tailLength = contents.length - gapEnd;
+    String[] newContents = new String[contents.length * 2];
+    System.arraycopy(contents, 0, newContents, 0, gapStart);
+    int newGapEnd = newContents.length - tailLength;
+    System.arraycopy(contents, gapEnd, newContents, newGapEnd, tailLength);
+    contents = newContents;
+    gapEnd = newGapEnd;
+  }
+}
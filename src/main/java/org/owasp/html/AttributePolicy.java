@@ -58,6 +58,15 @@ import org.owasp.html.Joinable.JoinHelper;
   public @Nullable String apply(
       String elementName, String attributeName, String value);
 
+  /**
+   * True if {@link #apply} has no side effects and its result depends only on
+   * its arguments.
+   * A {@link PolicyFactory#withAttributeCache factory} may then remember
+   * results for values that repeat instead of calling apply again.
+   */
+  default boolean isPure() {
+    return false;
+  }
 
   /** Utilities for working with attribute policies. */
   public static final class Util {
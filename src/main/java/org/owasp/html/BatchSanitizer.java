@@ -0,0 +1,158 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Sanitizes batches of documents in parallel for
+ * {@link PolicyFactory#sanitizeAll}.
+ * Each worker sanitizes with its own {@link SanitizerSession} so that
+ * scratch buffers are reused across the documents it handles.
+ */
+final class BatchSanitizer {
+
+  /**
+   * The number of consecutive documents that a worker claims at a time.
+   * Large enough that workers rarely contend on the shared index, and small
+   * enough to balance load when document sizes vary.
+   */
+  static final int CHUNK_SIZE = 32;
+
+  static List<String> sanitizeAll(
+      final PolicyFactory factory, List<? extends String> html,
+      Executor executor) {
+    final List<? extends String> inputs = html instanceof RandomAccess
+        ? html : new ArrayList<>(html);
+    final int n = inputs.size();
+    final String[] outputs = new String[n];
+    final AtomicInteger nextIndex = new AtomicInteger();
+    Runnable worker = new Runnable() {
+      public void run() {
+        try {
+          SanitizerSession session = factory.newSession();
+          for (int start; (start = nextIndex.getAndAdd(CHUNK_SIZE)) < n;) {
+            for (int i = start, end = Math.min(n, start + CHUNK_SIZE);
+                 i < end; ++i) {
+              outputs[i] = session.sanitize(inputs.get(i));
+            }
+          }
+        } catch (RuntimeException | Error ex) {
+          // Hand out no more chunks since the batch has failed.
+          nextIndex.set(n);
+          throw ex;
+        }
+      }
+    };
+
+    int nChunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    int nWorkers = Math.min(
+        nChunks, Runtime.getRuntime().availableProcessors());
+    // This thread works too, so hand the others to the executor.
+    CompletableFuture<?>[] others = new CompletableFuture<?>[
+        Math.max(0, nWorkers - 1)];
+    for (int i = 0; i < others.length; ++i) {
+      others[i] = CompletableFuture.runAsync(worker, executor);
+    }
+    Throwable failure = null;
+    try {
+      worker.run();
+    } catch (RuntimeException | Error ex) {
+      failure = ex;
+    }
+    // Wait for the others even after a failure so that none is still
+    // writing outputs once this returns.
+    for (CompletableFuture<?> other : others) {
+      try {
+        other.join();
+      } catch (CompletionException ex) {
+        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+        if (failure == null) {
+          failure = cause;
+        } else if (failure != cause) {
+          failure.addSuppressed(cause);
+        }
+      }
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure != null) {
+      throw (Error) failure;
+    }
+    return Collections.unmodifiableList(Arrays.asList(outputs));
+  }
+
+  /**
+   * Throws what a worker threw instead of the exception that wraps it.
+   *
+   * @return never, but declared so that callers can {@code throw} the result
+   *     to show that control does not continue.
+   */
+  static RuntimeException rethrowCause(CompletionException ex) {
+    Throwable cause = ex.getCause();
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw ex;
+  }
+
+  static Stream<String> sanitizeAll(
+      final PolicyFactory factory, Stream<? extends String> html) {
+    // Sessions not in use by any thread.
+    final Queue<SanitizerSession> idle = new ConcurrentLinkedQueue<>();
+    return html.map(new Function<String, String>() {
+      public String apply(String s) {
+        SanitizerSession session = idle.poll();
+        if (session == null) {
+          session = factory.newSession();
+        }
+        try {
+          return session.sanitize(s);
+        } finally {
+          idle.offer(session);
+        }
+      }
+    });
+  }
+
+  private BatchSanitizer() { /* uninstantiable */ }
+}
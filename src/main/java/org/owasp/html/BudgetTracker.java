@@ -0,0 +1,550 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.io.FilterReader;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Tracks one sanitize call's use of a {@link SanitizerBudget}.
+ * The checks are cheap so that they can run for every token.
+ */
+@NotThreadSafe
+final class BudgetTracker {
+  /** The clock is only read once per this many tokens. */
+  private static final int TOKENS_PER_CLOCK_CHECK = 64;
+
+  private final SanitizerBudget budget;
+  private final long startNanos;
+  private long inputLength;
+  private long outputLength;
+  private int textLength;
+  private long tokenCount;
+  private boolean exhausted;
+  /**
+   * When truncating to the output limit, a bound on the output so far and
+   * the room kept for the end tags of open elements.
+   */
+  private long projectedOutput;
+  private long reservedOutput;
+  /** Names of open elements, null for ones whose start tag was dropped. */
+  private final List<String> openElements = new ArrayList<>();
+  private final LengthCounter lengthCounter = new LengthCounter();
+
+  private BudgetTracker(SanitizerBudget budget) {
+    this.budget = budget;
+    this.startNanos = budget.timeLimitNanos != Long.MAX_VALUE
+        ? System.nanoTime() : 0L;
+  }
+
+  /** A tracker for a sanitize call that starts now, or null if unlimited. */
+  static @Nullable BudgetTracker start(SanitizerBudget budget) {
+    return budget.isUnlimited() ? null : new BudgetTracker(budget);
+  }
+
+  /**
+   * True once a limit was exceeded so that no further input should be
+   * consumed.
+   */
+  boolean isExhausted() {
+    return exhausted;
+  }
+
+  /**
+   * The number of chars out of the next n chars of input to sanitize.
+   * Less than n if the input limit is reached.
+   */
+  int admitInput(int n) {
+    long remaining = budget.maxInputLength - inputLength;
+    if (exhausted) {
+      return 0;
+    } else if (n > remaining) {
+      // Not exhausted since the input that was admitted should be lexed.
+      dropped(SanitizerBudget.Limit.INPUT_LENGTH);
+      n = (int) remaining;
+    }
+    inputLength += n;
+    return n;
+  }
+
+  /**
+   * The prefix of html to sanitize.
+   * Called before sanitizing so that a budget that fails on input length
+   * does so before any output.
+   */
+  CharSequence admitInput(CharSequence html) {
+    int n = admitInput(html.length());
+    return n == html.length() ? html : html.subSequence(0, n);
+  }
+
+  /**
+   * Called before each token is lexed.
+   * @return false if the sanitizer should stop consuming input.
+   */
+  boolean admitToken() {
+    if (exhausted) {
+      return false;
+    }
+    long count = ++tokenCount;
+    if (count > budget.maxTokens) {
+      return exceeded(SanitizerBudget.Limit.TOKENS);
+    }
+    if (count % TOKENS_PER_CLOCK_CHECK == 0
+        && budget.timeLimitNanos != Long.MAX_VALUE
+        && System.nanoTime() - startNanos > budget.timeLimitNanos) {
+      return exceeded(SanitizerBudget.Limit.TIME);
+    }
+    return true;
+  }
+
+  /**
+   * Called before an attribute is added to a tag that already has n.
+   * @return false if the attribute should be dropped.
+   */
+  boolean admitAttribute(int n) {
+    return n < budget.maxAttributesPerTag
+        || dropped(SanitizerBudget.Limit.ATTRIBUTES_PER_TAG);
+  }
+
+  /**
+   * Called with the length of an attribute's value in the input.
+   * @return false if the attribute should be dropped.
+   */
+  boolean admitAttributeValue(int length) {
+    return length <= budget.maxAttributeValueLength
+        || dropped(SanitizerBudget.Limit.ATTRIBUTE_VALUE_LENGTH);
+  }
+
+  /**
+   * The part of text that may be output.
+   * A prefix of text if the text limit is reached, after which no further
+   * input should be consumed.
+   */
+  String admitText(String text) {
+    int n = text.length();
+    int remaining = budget.maxTextLength - textLength;
+    if (n < remaining
+        || (n == remaining && budget.outcome == SanitizerBudget.Outcome.FAIL)) {
+      textLength += n;
+      return text;
+    }
+    if (n > remaining) {
+      dropped(SanitizerBudget.Limit.TEXT_LENGTH);
+      n = remaining;
+      // Do not split a supplementary code-point.
+      if (n != 0 && Character.isHighSurrogate(text.charAt(n - 1))) {
+        --n;
+      }
+    }
+    // Once the limit is reached, more input can only produce markup that
+    // will be discarded or more text, so stop.
+    textLength = budget.maxTextLength;
+    exhausted = true;
+    return n == text.length() ? text : text.substring(0, n);
+  }
+
+  /**
+   * Called before a start tag is output.
+   * @return false if the tag, and the end tags of it and of the elements
+   *     already open, would not fit in the output, after which no further
+   *     input should be consumed.
+   */
+  boolean admitOpenTag(String elementName, List<String> attrs) {
+    String name = HtmlStreamRenderer.safeName(elementName);
+    boolean isVoid = HtmlTextEscapingMode.isVoidElement(name);
+    // <name attr="value" /> where the renderer adds a space after values
+    // that contain a backtick.
+    long length = name.length() + (isVoid ? 4 : 2);
+    for (int i = 0, n = attrs.size(); i < n; i += 2) {
+      String value = attrs.get(i + 1);
+      length += attrs.get(i).length() + 4
+          + lengthCounter.encodedAttribLength(value)
+          + (value.indexOf('`') >= 0 ? 1 : 0);
+    }
+    long endTagLength = isVoid ? 0 : name.length() + 3;
+    boolean fits = !exhausted && fitsOutput(length + endTagLength);
+    if (fits) {
+      projectedOutput += length;
+      reservedOutput += endTagLength;
+    } else {
+      exceeded(SanitizerBudget.Limit.OUTPUT_LENGTH);
+    }
+    if (!isVoid) {
+      openElements.add(fits ? name : null);
+    }
+    return fits;
+  }
+
+  /**
+   * Called before an end tag is output.
+   * @return false if the end tag should be dropped because its start tag was
+   *     or because it does not fit in the output.
+   */
+  boolean admitCloseTag(String elementName) {
+    String name = HtmlStreamRenderer.safeName(elementName);
+    long length = name.length() + 3;
+    int last = openElements.size() - 1;
+    if (last >= 0) {
+      String open = openElements.get(last);
+      if (open == null || open.equals(name)) {
+        openElements.remove(last);
+        if (open == null) {
+          return false;
+        }
+        // Already counted against the output.
+        reservedOutput -= length;
+        projectedOutput += length;
+        return true;
+      }
+    }
+    if (!exhausted && fitsOutput(length)) {
+      projectedOutput += length;
+      return true;
+    }
+    return exceeded(SanitizerBudget.Limit.OUTPUT_LENGTH);
+  }
+
+  /**
+   * The part of text that fits in the output along with the end tags of open
+   * elements.
+   * A prefix of text if the output limit is reached, after which no further
+   * input should be consumed.
+   */
+  String admitOutputText(String text) {
+    if (exhausted) {
+      return "";
+    }
+    long remaining =
+        budget.maxOutputLength - projectedOutput - reservedOutput;
+    // Text is never output with more escaping than in PCDATA.
+    long length = lengthCounter.encodedPcdataLength(text);
+    if (length <= remaining) {
+      projectedOutput += length;
+      return text;
+    }
+    exceeded(SanitizerBudget.Limit.OUTPUT_LENGTH);
+    // The prefix of length lo fits and the one of length hi does not.
+    int lo = 0;
+    long loLength = 0;
+    int hi = text.length();
+    while (hi - lo > 1) {
+      int mid = (lo + hi) >>> 1;
+      // Do not split a supplementary code-point.
+      if (Character.isHighSurrogate(text.charAt(mid - 1))) {
+        if (mid - 1 > lo) {
+          --mid;
+        } else if (mid + 1 < hi) {
+          ++mid;
+        } else {
+          break;
+        }
+      }
+      long midLength =
+          lengthCounter.encodedPcdataLength(text.substring(0, mid));
+      if (midLength <= remaining) {
+        lo = mid;
+        loLength = midLength;
+      } else {
+        hi = mid;
+      }
+    }
+    projectedOutput += loLength;
+    return text.substring(0, lo);
+  }
+
+  private boolean fitsOutput(long length) {
+    return length <= budget.maxOutputLength - projectedOutput - reservedOutput;
+  }
+
+  /** Wraps out to count output against the budget. */
+  Appendable countOutput(Appendable out) {
+    return budget.maxOutputLength == Long.MAX_VALUE
+        ? out : new CountingAppendable(out);
+  }
+
+  /** Wraps out to count text against the budget. */
+  HtmlStreamEventReceiver countText(HtmlStreamEventReceiver out) {
+    if (budget.maxTextLength == Integer.MAX_VALUE) {
+      return out;
+    }
+    TextCounter counter = new TextCounter(out);
+    counter.budget = this;
+    return counter;
+  }
+
+  /**
+   * Wraps out to keep the output within the budget by dropping events and
+   * cutting text short.
+   * When failing instead, output is checked as it is counted.
+   */
+  HtmlStreamEventReceiver limitOutput(HtmlStreamEventReceiver out) {
+    if (budget.maxOutputLength == Long.MAX_VALUE
+        || budget.outcome == SanitizerBudget.Outcome.FAIL) {
+      return out;
+    }
+    OutputLimiter limiter = new OutputLimiter(out);
+    limiter.budget = this;
+    return limiter;
+  }
+
+  /**
+   * Wraps in to count input against the budget.  Once the input limit is
+   * reached, the result reports end of input.
+   */
+  Reader countInput(Reader in) {
+    if (budget.maxInputLength == Integer.MAX_VALUE) {
+      return in;
+    }
+    return new FilterReader(in) {
+      @Override
+      public int read() throws IOException {
+        char[] buf = new char[1];
+        return read(buf, 0, 1) < 0 ? -1 : buf[0];
+      }
+
+      @Override
+      public int read(char[] buf, int off, int len) throws IOException {
+        if (len == 0) { return 0; }
+        // Read one past the limit so that reaching it exactly is not an error.
+        long remaining = budget.maxInputLength - inputLength;
+        int n = super.read(buf, off, (int) Math.min(len, remaining + 1));
+        if (n < 0) { return n; }
+        n = admitInput(n);
+        return n != 0 ? n : -1;
+      }
+    };
+  }
+
+  /** Handles exceeding a limit after which no input should be consumed. */
+  private boolean exceeded(SanitizerBudget.Limit limit) {
+    dropped(limit);
+    exhausted = true;
+    return false;
+  }
+
+  /** Handles exceeding a limit that drops input or an attribute. */
+  private boolean dropped(SanitizerBudget.Limit limit) {
+    if (budget.outcome == SanitizerBudget.Outcome.FAIL) {
+      throw new BudgetExceededException(limit);
+    }
+    return false;
+  }
+
+  private final class CountingAppendable
+      implements Appendable, Flushable, TrimmableOutput {
+    private final Appendable out;
+
+    CountingAppendable(Appendable out) {
+      this.out = out;
+    }
+
+    public Appendable append(CharSequence csq) throws IOException {
+      count(csq.length());
+      out.append(csq);
+      return this;
+    }
+
+    public Appendable append(CharSequence csq, int start, int end)
+        throws IOException {
+      count(end - start);
+      out.append(csq, start, end);
+      return this;
+    }
+
+    public Appendable append(char c) throws IOException {
+      count(1);
+      out.append(c);
+      return this;
+    }
+
+    private void count(int n) {
+      if (n > budget.maxOutputLength - outputLength) {
+        // When truncating, the OutputLimiter keeps this from happening.
+        exceeded(SanitizerBudget.Limit.OUTPUT_LENGTH);
+      }
+      outputLength += n;
+    }
+
+    public boolean dropLastIf(char ch) {
+      if (TrimmableOutput.dropLastIf(out, ch)) {
+        --outputLength;
+        return true;
+      }
+      return false;
+    }
+
+    public void flush() throws IOException {
+      if (out instanceof Flushable) {
+        ((Flushable) out).flush();
+      }
+    }
+  }
+
+  /**
+   * Counts text against a budget.
+   * The budget may be changed so that a session can reuse one across calls.
+   */
+  static final class TextCounter implements HtmlStreamEventReceiver {
+    // Not an HtmlStreamEventReceiverWrapper which is AutoCloseable though
+    // there is nothing here to close.
+    private final HtmlStreamEventReceiver underlying;
+    @Nullable BudgetTracker budget;
+
+    TextCounter(HtmlStreamEventReceiver underlying) {
+      this.underlying = underlying;
+    }
+
+    public void openDocument() {
+      underlying.openDocument();
+    }
+
+    public void closeDocument() {
+      underlying.closeDocument();
+    }
+
+    public void openTag(String elementName, List<String> attrs) {
+      underlying.openTag(elementName, attrs);
+    }
+
+    public void closeTag(String elementName) {
+      underlying.closeTag(elementName);
+    }
+
+    public void text(String text) {
+      String admitted = budget != null ? budget.admitText(text) : text;
+      if (!admitted.isEmpty()) {
+        underlying.text(admitted);
+      }
+    }
+  }
+
+  /**
+   * Keeps output within a budget.
+   * The budget may be changed so that a session can reuse one across calls.
+   */
+  static final class OutputLimiter implements HtmlStreamEventReceiver {
+    private final HtmlStreamEventReceiver underlying;
+    @Nullable BudgetTracker budget;
+
+    OutputLimiter(HtmlStreamEventReceiver underlying) {
+      this.underlying = underlying;
+    }
+
+    public void openDocument() {
+      underlying.openDocument();
+    }
+
+    public void closeDocument() {
+      underlying.closeDocument();
+    }
+
+    public void openTag(String elementName, List<String> attrs) {
+      if (budget == null || budget.admitOpenTag(elementName, attrs)) {
+        underlying.openTag(elementName, attrs);
+      }
+    }
+
+    public void closeTag(String elementName) {
+      if (budget == null || budget.admitCloseTag(elementName)) {
+        underlying.closeTag(elementName);
+      }
+    }
+
+    public void text(String text) {
+      String admitted = budget != null ? budget.admitOutputText(text) : text;
+      if (!admitted.isEmpty()) {
+        underlying.text(admitted);
+      }
+    }
+  }
+
+  /** Measures encoded strings without keeping them. */
+  private static final class LengthCounter
+      implements Appendable, TrimmableOutput {
+    private long length;
+    /** The last char appended, or 0 if unknown. */
+    private char last;
+
+    long encodedPcdataLength(String text) {
+      length = 0;
+      last = 0;
+      try {
+        Encoding.encodePcdataOnto(text, this);
+      } catch (IOException ex) {
+        throw new AssertionError("LengthCounter does not throw", ex);
+      }
+      return length;
+    }
+
+    long encodedAttribLength(String value) {
+      length = 0;
+      last = 0;
+      try {
+        Encoding.encodeHtmlAttribOnto(value, this);
+      } catch (IOException ex) {
+        throw new AssertionError("LengthCounter does not throw", ex);
+      }
+      return length;
+    }
+
+    public Appendable append(CharSequence csq) {
+      return append(csq, 0, csq.length());
+    }
+
+    public Appendable append(CharSequence csq, int start, int end) {
+      if (end != start) {
+        length += end - start;
+        last = csq.charAt(end - 1);
+      }
+      return this;
+    }
+
+    public Appendable append(char c) {
+      ++length;
+      last = c;
+      return this;
+    }
+
+    public boolean dropLastIf(char ch) {
+      if (length != 0 && last == ch) {
+        --length;
+        last = 0;
+        return true;
+      }
+      return false;
+    }
+  }
+}
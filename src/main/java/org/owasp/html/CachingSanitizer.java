@@ -0,0 +1,129 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Sanitizes with a {@link PolicyFactory} but remembers the output for
+ * recently sanitized inputs.
+ * <p>
+ * Inputs are compared in full on lookup so that colliding hashes cannot
+ * return the output for a different input.
+ * <p>
+ * The cache is bypassed when a change listener is given since the listener
+ * must hear about every rejected tag, and when the policy's output does not
+ * depend only on its input, for example because a processor is not
+ * {@linkplain HtmlStreamEventProcessor#isDeterministic deterministic}.
+ */
+@ThreadSafe
+public final class CachingSanitizer {
+  private static final LruCache.Weigher<String, String> WEIGHER =
+      new LruCache.Weigher<String, String>() {
+        public long weigh(String input, String output) {
+          // Clean inputs are their own output so only count them once.
+          return input == output ? input.length()
+              : (long) input.length() + output.length();
+        }
+      };
+
+  private final PolicyFactory policy;
+  private final boolean cacheable;
+  private final LruCache<String, String> cache;
+
+  CachingSanitizer(PolicyFactory policy, long maxCachedChars) {
+    if (maxCachedChars < 0) {
+      throw new IllegalArgumentException(
+          "maxCachedChars=" + maxCachedChars);
+    }
+    this.policy = policy;
+    this.cacheable = policy.isDeterministic() && maxCachedChars != 0;
+    this.cache = new LruCache<>(maxCachedChars, WEIGHER);
+  }
+
+  /** The policy used to sanitize inputs that are not in the cache. */
+  public PolicyFactory getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Equivalent to {@link PolicyFactory#sanitize(String)} but may reuse the
+   * output from an earlier call.
+   */
+  public String sanitize(@Nullable String html) {
+    if (html == null) { return ""; }
+    if (!cacheable) { return policy.sanitize(html); }
+    String output = cache.get(html);
+    if (output == null) {
+      // Sanitize outside any lock so that a slow input only delays itself.
+      output = policy.sanitize(html);
+      cache.put(html, output);
+    }
+    return output;
+  }
+
+  /**
+   * Equivalent to
+   * {@link PolicyFactory#sanitize(String, HtmlChangeListener, Object)}.
+   * The cache is only used when listener is null.
+   */
+  public <CTX> String sanitize(
+      @Nullable String html,
+      @Nullable HtmlChangeListener<CTX> listener, @Nullable CTX context) {
+    if (listener != null) {
+      return policy.sanitize(html, listener, context);
+    }
+    return sanitize(html);
+  }
+
+  /** The count of calls that reused cached output. */
+  public long hitCount() {
+    return cache.hitCount();
+  }
+
+  /** The count of calls that consulted the cache but had to sanitize. */
+  public long missCount() {
+    return cache.missCount();
+  }
+
+  /** The count of entries dropped to stay within the size bound. */
+  public long evictionCount() {
+    return cache.evictionCount();
+  }
+
+  /** The total length of the inputs and outputs currently cached. */
+  public long cachedChars() {
+    return cache.weight();
+  }
+
+  /** Drops all cached entries but keeps the counts. */
+  public void clear() {
+    cache.clear();
+  }
+}
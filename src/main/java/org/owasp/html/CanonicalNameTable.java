@@ -0,0 +1,350 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A hash table of well-known element or attribute names that canonicalizes
+ * names straight from a range of input without allocating, and maps each
+ * known name to a small integer id.
+ * <p>
+ * The strings it returns are interned, so every canonical occurrence of a
+ * known name is the same {@code String} instance.
+ * <p>
+ * Lookup ignores ASCII case like {@link HtmlLexer#canonicalElementName} does:
+ * an SVG or MathML name like {@code clipPath} is canonical only when it
+ * appears exactly so, and otherwise is lower-cased like any HTML name.
+ */
+@Immutable
+@TCB
+final class CanonicalNameTable {
+
+  /** Element names from {@link HtmlElementTables} plus foreign ones. */
+  static final CanonicalNameTable ELEMENT_NAMES;
+  /** Common HTML attribute names plus foreign ones. */
+  static final CanonicalNameTable ATTRIBUTE_NAMES;
+
+  /** Lower-case names by id. */
+  private final String[] names;
+  /** Mixed-case foreign names by id, or null where there is none. */
+  private final @Nullable String[] mixedCaseNames;
+  /** {@link #hash} of each name by id. */
+  private final int[] hashes;
+  /** Open-addressed table of one more than ids.  Zero marks an empty slot. */
+  private final int[] slots;
+  private final int maxLength;
+
+  private CanonicalNameTable(Iterable<String> canonicalNames) {
+    List<String> nameList = new ArrayList<>();
+    List<String> mixedCaseNameList = new ArrayList<>();
+    int maxLen = 0;
+    for (String canonicalName : canonicalNames) {
+      String name = Strings.toLowerCase(canonicalName).intern();
+      int id = nameList.indexOf(name);
+      if (id < 0) {
+        id = nameList.size();
+        nameList.add(name);
+        mixedCaseNameList.add(null);
+      }
+      if (!name.equals(canonicalName)) {
+        if (mixedCaseNameList.get(id) != null) {
+          throw new IllegalArgumentException(canonicalName);
+        }
+        mixedCaseNameList.set(id, canonicalName.intern());
+      }
+      maxLen = Math.max(maxLen, name.length());
+    }
+
+    int n = nameList.size();
+    this.names = nameList.toArray(new String[n]);
+    this.mixedCaseNames = mixedCaseNameList.toArray(new String[n]);
+    this.hashes = new int[n];
+    this.maxLength = maxLen;
+    // Keep the load factor at or below 1/4 so that probe sequences are short.
+    int nSlots = Integer.highestOneBit(Math.max(n, 1) * 4) * 2;
+    this.slots = new int[nSlots];
+    for (int id = 0; id < n; ++id) {
+      String name = names[id];
+      int h = hash(name, 0, name.length());
+      hashes[id] = h;
+      int slot = h & (nSlots - 1);
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & (nSlots - 1);
+      }
+      slots[slot] = id + 1;
+    }
+  }
+
+  /**
+   * The id of the name in the given range of s ignoring ASCII case, or -1 if
+   * it is not a known name.
+   */
+  int indexOf(CharSequence s, int start, int end) {
+    int n = end - start;
+    if (n > maxLength) { return -1; }
+    int h = hash(s, start, end);
+    int mask = slots.length - 1;
+    for (int slot = h & mask;; slot = (slot + 1) & mask) {
+      int id = slots[slot] - 1;
+      if (id < 0) { return -1; }
+      if (hashes[id] == h) {
+        String name = names[id];
+        if (name.length() == n
+            && Strings.regionMatchesIgnoreCase(s, start, name, 0, n)) {
+          return id;
+        }
+      }
+    }
+  }
+
+  /** The lower-case name for the given id. */
+  String name(int id) {
+    return names[id];
+  }
+
+  /** The number of ids. */
+  int size() {
+    return names.length;
+  }
+
+  /**
+   * The canonical form of the name in the given range of s, or null if it is
+   * not a known name.
+   */
+  @Nullable String canonicalName(CharSequence s, int start, int end) {
+    int id = indexOf(s, start, end);
+    if (id < 0) { return null; }
+    String mixedCaseName = mixedCaseNames[id];
+    if (mixedCaseName != null
+        && matchesExactly(s, start, mixedCaseName)) {
+      return mixedCaseName;
+    }
+    return names[id];
+  }
+
+  /** True if the range of s starting at start is exactly name. */
+  private static boolean matchesExactly(
+      CharSequence s, int start, String name) {
+    for (int i = name.length(); --i >= 0;) {
+      if (s.charAt(start + i) != name.charAt(i)) { return false; }
+    }
+    return true;
+  }
+
+  /** A hash of the name in the given range ignoring ASCII case. */
+  private static int hash(CharSequence s, int start, int end) {
+    int h = 0;
+    for (int i = start; i < end; ++i) {
+      char c = s.charAt(i);
+      if (c <= 'Z' && c >= 'A') { c |= 0x20; }
+      h = 31 * h + c;
+    }
+    // Spread the high bits down since the table is small.
+    return h ^ (h >>> 16);
+  }
+
+  static final Set<String> MIXED_CASE_FOREIGN_ATTRIBUTE_NAMES = Set.of(
+      "attributeName",
+      "attributeType",
+      "baseFrequency",
+      "baseProfile",
+      "calcMode",
+      "clipPathUnits",
+      "contentScriptType",
+      "defaultAction",
+      "definitionURL",
+      "diffuseConstant",
+      "edgeMode",
+      "externalResourcesRequired",
+      "filterUnits",
+      "focusHighlight",
+      "gradientTransform",
+      "gradientUnits",
+      "initialVisibility",
+      "kernelMatrix",
+      "kernelUnitLength",
+      "keyPoints",
+      "keySplines",
+      "keyTimes",
+      "lengthAdjust",
+      "limitingConeAngle",
+      "markerHeight",
+      "markerUnits",
+      "markerWidth",
+      "maskContentUnits",
+      "maskUnits",
+      "mediaCharacterEncoding",
+      "mediaContentEncodings",
+      "mediaSize",
+      "mediaTime",
+      "numOctaves",
+      "pathLength",
+      "patternContentUnits",
+      "patternTransform",
+      "patternUnits",
+      "playbackOrder",
+      "pointsAtX",
+      "pointsAtY",
+      "pointsAtZ",
+      "preserveAlpha",
+      "preserveAspectRatio",
+      "primitiveUnits",
+      "refX",
+      "refY",
+      "repeatCount",
+      "repeatDur",
+      "requiredExtensions",
+      "requiredFeatures",
+      "requiredFonts",
+      "requiredFormats",
+      "schemaLocation",
+      "snapshotTime",
+      "specularConstant",
+      "specularExponent",
+      "spreadMethod",
+      "startOffset",
+      "stdDeviation",
+      "stitchTiles",
+      "surfaceScale",
+      "syncBehavior",
+      "syncBehaviorDefault",
+      "syncMaster",
+      "syncTolerance",
+      "syncToleranceDefault",
+      "systemLanguage",
+      "tableValues",
+      "targetX",
+      "targetY",
+      "textLength",
+      "timelineBegin",
+      "transformBehavior",
+      "viewBox",
+      "xChannelSelector",
+      "yChannelSelector",
+      "zoomAndPan"
+  );
+
+  static final Set<String> MIXED_CASE_FOREIGN_ELEMENT_NAMES = Set.of(
+      "animateColor",
+      "animateMotion",
+      "animateTransform",
+      "clipPath",
+      "feBlend",
+      "feColorMatrix",
+      "feComponentTransfer",
+      "feComposite",
+      "feConvolveMatrix",
+      "feDiffuseLighting",
+      "feDisplacementMap",
+      "feDistantLight",
+      "feDropShadow",
+      "feFlood",
+      "feFuncA",
+      "feFuncB",
+      "feFuncG",
+      "feFuncR",
+      "feGaussianBlur",
+      "feImage",
+      "feMerge",
+      "feMergeNode",
+      "feMorphology",
+      "feOffset",
+      "fePointLight",
+      "feSpecularLighting",
+      "feSpotLight",
+      "feTile",
+      "feTurbulence",
+      "foreignObject",
+      "linearGradient",
+      "radialGradient",
+      "solidColor",
+      "textArea",
+      "textPath"
+  );
+
+  /**
+   * Attribute names from HTML that commonly appear in content that is
+   * sanitized.
+   */
+  private static final List<String> COMMON_HTML_ATTRIBUTE_NAMES = List.of(
+      "abbr", "accept", "accept-charset", "accesskey", "action", "align",
+      "alink", "allow", "allowfullscreen", "alt", "archive", "async",
+      "autocapitalize", "autocomplete", "autofocus", "autoplay", "axis",
+      "background", "bgcolor", "border", "cellpadding", "cellspacing",
+      "char", "charoff", "charset", "checked", "cite", "class", "classid",
+      "clear", "code", "codebase", "codetype", "color", "cols", "colspan",
+      "compact", "content", "contenteditable", "controls", "coords",
+      "crossorigin", "data", "datetime", "declare", "decoding", "default",
+      "defer", "dir", "dirname", "disabled", "download", "draggable",
+      "enctype", "enterkeyhint", "face", "for", "form", "formaction",
+      "frame", "frameborder", "headers", "height", "hidden", "high", "href",
+      "hreflang", "hspace", "http-equiv", "id", "inert", "inputmode",
+      "integrity", "is", "ismap", "itemid", "itemprop", "itemref",
+      "itemscope", "itemtype", "kind", "label", "lang", "language", "link",
+      "list", "loading", "longdesc", "loop", "low", "marginheight",
+      "marginwidth", "max", "maxlength", "media", "method", "min",
+      "minlength", "multiple", "muted", "name", "nohref", "nomodule",
+      "nonce", "noresize", "noshade", "novalidate", "nowrap", "onabort",
+      "onblur", "onchange", "onclick", "ondblclick", "onerror", "onfocus",
+      "oninput", "onkeydown", "onkeypress", "onkeyup", "onload",
+      "onmousedown", "onmousemove", "onmouseout", "onmouseover",
+      "onmouseup", "onreset", "onresize", "onscroll", "onselect",
+      "onsubmit", "onunload", "open", "optimum", "pattern", "ping",
+      "placeholder", "playsinline", "poster", "preload", "profile",
+      "readonly", "referrerpolicy", "rel", "required", "rev", "reversed",
+      "role", "rows", "rowspan", "rules", "sandbox", "scheme", "scope",
+      "scrolling", "selected", "shape", "size", "sizes", "slot", "span",
+      "spellcheck", "src", "srcdoc", "srclang", "srcset", "standby",
+      "start", "step", "style", "summary", "tabindex", "target", "text",
+      "title", "translate", "type", "usemap", "valign", "value",
+      "valuetype", "version", "vlink", "vspace", "width", "wrap");
+
+  static {
+    HtmlElementTables metadata = HtmlElementTables.get();
+    Set<String> elementNames = new LinkedHashSet<>();
+    for (int i = 0, n = metadata.nElementTypes(); i < n; ++i) {
+      elementNames.add(metadata.canonNameForIndex(i));
+    }
+    elementNames.remove(
+        HtmlElementTables.HtmlElementNames.CUSTOM_ELEMENT_NAME);
+    elementNames.addAll(MIXED_CASE_FOREIGN_ELEMENT_NAMES);
+    ELEMENT_NAMES = new CanonicalNameTable(elementNames);
+
+    Set<String> attributeNames = new LinkedHashSet<>(
+        COMMON_HTML_ATTRIBUTE_NAMES);
+    attributeNames.addAll(MIXED_CASE_FOREIGN_ATTRIBUTE_NAMES);
+    ATTRIBUTE_NAMES = new CanonicalNameTable(attributeNames);
+  }
+}
@@ -29,6 +29,9 @@
 package org.owasp.html;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -37,15 +40,17 @@ import java.util.Set;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
+import org.owasp.html.HtmlElementTables.HtmlElementNames;
+
 /**
  * A sanitizer policy that applies element and attribute policies to tags.
  */
 @TCB
 @NotThreadSafe
 class ElementAndAttributePolicyBasedSanitizerPolicy
-    implements HtmlSanitizer.Policy {
-  final Map<String, ElementAndAttributePolicies> elAndAttrPolicies;
-  final Set<String> allowedTextContainers;
+    implements HtmlSanitizer.Policy, AttributeFilter, TextFilter,
+        ElementIndexReceiver {
+  final ElementAndAttributePolicyTable policyTable;
   private final HtmlStreamEventReceiver out;
   /**
    * True to skip textual content.  Used to ignore the content of embedded CDATA
@@ -53,18 +58,40 @@ class ElementAndAttributePolicyBasedSanitizerPolicy
    */
   transient boolean skipText = true;
   /**
-   * Alternating input names and adjusted names of elements opened by the
-   * caller.
+   * Alternating input elements and adjusted elements opened by the caller.
+   * Each is an element index, {@link #NO_ELEMENT} for an input element that
+   * was not output, or for a custom element, {@link #customElementCode}.
+   */
+  private final IntVector openElementStack = new IntVector();
+  /** Names of the custom elements on openElementStack, bottom first. */
+  private final List<String> openCustomElementNames = new ArrayList<>();
+  /**
+   * For each pair on openElementStack, the value of {@link #skipText} once
+   * that pair is innermost, so that closing a tag need not rescan the stack.
+   */
+  private final IntVector openElementSkipsText = new IntVector();
+  /**
+   * Counts of input elements on openElementStack by element index so that a
+   * close tag for an element that is not open need not scan the stack.
    */
-  private final List<String> openElementStack = new ArrayList<>();
+  private final int[] openElementCounts = new int[METADATA.nElementTypes()];
+  /** Like openElementCounts but for input custom elements by name. */
+  private final Map<String, Integer> openCustomElementCounts = new HashMap<>();
+
+  private static final HtmlElementTables METADATA = HtmlElementTables.get();
+  private static final int CUSTOM_ELEMENT_INDEX =
+      METADATA.indexForName(HtmlElementNames.CUSTOM_ELEMENT_NAME);
+  private static final int NO_ELEMENT = -1;
 
+  /**
+   * @param policyTable shared, not copied, so that creating a policy per
+   *     sanitize call is cheap.
+   */
   ElementAndAttributePolicyBasedSanitizerPolicy(
       HtmlStreamEventReceiver out,
-      Map<String, ElementAndAttributePolicies> elAndAttrPolicies,
-      Set<String> allowedTextContainers) {
+      ElementAndAttributePolicyTable policyTable) {
     this.out = out;
-    this.elAndAttrPolicies = Map.copyOf(elAndAttrPolicies);
-    this.allowedTextContainers = Set.copyOf(allowedTextContainers);
+    this.policyTable = policyTable;
   }
 
   static final Set<String> SKIPPABLE_ELEMENT_CONTENT
@@ -74,18 +101,18 @@ class ElementAndAttributePolicyBasedSanitizerPolicy
 
   public void openDocument() {
     skipText = false;
-    openElementStack.clear();
+    clearOpenElements();
     out.openDocument();
   }
 
   public void closeDocument() {
     for (int i = openElementStack.size() - 1; i >= 0; i -= 2) {
-      String tagNameToClose = openElementStack.get(i);
-      if (tagNameToClose != null) {
-        out.closeTag(tagNameToClose);
+      int elementToClose = openElementStack.get(i);
+      if (elementToClose != NO_ELEMENT) {
+        out.closeTag(elementName(elementToClose));
       }
     }
-    openElementStack.clear();
+    clearOpenElements();
     skipText = true;
     out.closeDocument();
   }
@@ -97,17 +124,31 @@ class ElementAndAttributePolicyBasedSanitizerPolicy
   }
 
   public void openTag(String elementName, List<String> attrs) {
-    // StylingPolicy repeats some of this code because it is more complicated
-    // to refactor it into multiple method bodies, so if you change this,
-    // check the override of it in that class.
-    ElementAndAttributePolicies policies = elAndAttrPolicies.get(elementName);
+    openTag(METADATA.indexForName(elementName), elementName, attrs);
+  }
+
+  public void openTag(
+      int elementIndex, String elementName, List<String> attrs) {
+    ElementAndAttributePolicies policies =
+        policyTable.get(elementIndex, elementName);
     String adjustedElementName = applyPolicies(elementName, attrs, policies);
     if (adjustedElementName != null
         && !(attrs.isEmpty() && policies.htmlTagSkipType.skipAvailability())) {
-      writeOpenTag(policies, adjustedElementName, attrs);
+      writeOpenTag(elementIndex, elementName, adjustedElementName, attrs);
       return;
     }
-    deferOpenTag(elementName);
+    deferOpenTag(elementIndex, elementName);
+  }
+
+  public boolean isDiscardingText() {
+    return skipText;
+  }
+
+  public boolean mayKeepAttribute(String elementName, String attributeName) {
+    // applyPolicies removes any attribute without a policy, and drops the
+    // whole tag when there are no policies for its element.
+    ElementAndAttributePolicies policies = policyTable.get(elementName);
+    return policies != null && policies.attrPolicies.containsKey(attributeName);
   }
 
   static final @Nullable String applyPolicies(
@@ -152,50 +193,148 @@ class ElementAndAttributePolicyBasedSanitizerPolicy
   }
 
   public void closeTag(String elementName) {
-    int n = openElementStack.size();
+    closeTag(METADATA.indexForName(elementName), elementName);
+  }
+
+  public void closeTag(int elementIndex, String elementName) {
+    int n = isOpen(elementIndex, elementName) ? openElementStack.size() : 0;
     for (int i = n; i > 0;) {
       i -= 2;
-      String openElementName = openElementStack.get(i);
-      if (elementName.equals(openElementName)) {
+      int openElement = openElementStack.get(i);
+      if (openElement == elementIndex
+          || (openElement < NO_ELEMENT
+              && elementIndex == CUSTOM_ELEMENT_INDEX
+              && elementName.equals(elementName(openElement)))) {
         for (int j = n - 1; j > i; j -= 2) {
-          String tagNameToClose = openElementStack.get(j);
-          if (tagNameToClose != null) {
-            out.closeTag(tagNameToClose);
+          int elementToClose = openElementStack.get(j);
+          if (elementToClose != NO_ELEMENT) {
+            out.closeTag(elementName(elementToClose));
           }
         }
-        openElementStack.subList(i, n).clear();
-        break;
-      }
-    }
-    skipText = false;
-    for (int i = openElementStack.size() - 1; i >= 0; i -= 2) {
-      String adjustedName = openElementStack.get(i);
-      if (adjustedName != null) {
-        skipText = !(allowedTextContainers.contains(adjustedName));
+        // Pop down to i.
+        for (int j = n; j > i; j -= 2) {
+          popOpenElement();
+        }
         break;
       }
     }
+    skipText = !openElementSkipsText.isEmpty()
+        && openElementSkipsText.getLast() != 0;
   }
 
   void writeOpenTag(
-      ElementAndAttributePolicies policies, String adjustedElementName,
+      int elementIndex, String elementName, String adjustedElementName,
       List<String> attrs) {
-    if (!HtmlTextEscapingMode.isVoidElement(adjustedElementName)) {
-      openElementStack.add(policies.elementName);
-      openElementStack.add(adjustedElementName);
-      skipText = !allowedTextContainers.contains(adjustedElementName);
+    int adjustedElementIndex = adjustedElementName.equals(elementName)
+        ? elementIndex : METADATA.indexForName(adjustedElementName);
+    if (!ElementAndAttributePolicyTable.isVoidElement(
+            adjustedElementIndex, adjustedElementName)) {
+      int elementCode = stackCode(elementIndex, elementName);
+      int adjustedElementCode = stackCode(
+          adjustedElementIndex, adjustedElementName);
+      skipText = !policyTable.isTextContainer(
+          adjustedElementIndex, adjustedElementName);
+      pushOpenElement(elementCode, adjustedElementCode, skipText);
     }
     out.openTag(adjustedElementName, attrs);
   }
 
-  void deferOpenTag(String elementName) {
-    if (!HtmlTextEscapingMode.isVoidElement(elementName)) {
-      openElementStack.add(elementName);
-      openElementStack.add(null);
+  void deferOpenTag(int elementIndex, String elementName) {
+    if (!ElementAndAttributePolicyTable.isVoidElement(
+            elementIndex, elementName)) {
+      // Text inside a deferred element is skipped as for its container.
+      pushOpenElement(
+          stackCode(elementIndex, elementName), NO_ELEMENT,
+          !openElementSkipsText.isEmpty()
+          && openElementSkipsText.getLast() != 0);
+    }
+    skipText = ElementAndAttributePolicyTable.hasSkippableContent(
+        elementIndex, elementName);
+  }
+
+  private void pushOpenElement(
+      int elementCode, int adjustedElementCode, boolean skipsText) {
+    openElementStack.add(elementCode);
+    openElementStack.add(adjustedElementCode);
+    openElementSkipsText.add(skipsText ? 1 : 0);
+    if (elementCode >= 0) {
+      ++openElementCounts[elementCode];
+    } else {
+      String name = elementName(elementCode);
+      Integer count = openCustomElementCounts.get(name);
+      openCustomElementCounts.put(name, count != null ? count + 1 : 1);
     }
-    skipText = SKIPPABLE_ELEMENT_CONTENT.contains(elementName);
   }
 
+  /**
+   * Pops the innermost pair from openElementStack along with any custom
+   * element names it uses.
+   */
+  private void popOpenElement() {
+    if (openElementStack.removeLast() < NO_ELEMENT) {
+      openCustomElementNames.remove(openCustomElementNames.size() - 1);
+    }
+    int elementCode = openElementStack.removeLast();
+    if (elementCode >= 0) {
+      --openElementCounts[elementCode];
+    } else {
+      String name = openCustomElementNames.remove(
+          openCustomElementNames.size() - 1);
+      int count = openCustomElementCounts.get(name);
+      if (count == 1) {
+        openCustomElementCounts.remove(name);
+      } else {
+        openCustomElementCounts.put(name, count - 1);
+      }
+    }
+    openElementSkipsText.removeLast();
+  }
+
+  private void clearOpenElements() {
+    openElementStack.clear();
+    openCustomElementNames.clear();
+    openElementSkipsText.clear();
+    Arrays.fill(openElementCounts, 0);
+    openCustomElementCounts.clear();
+  }
+
+  /** True if a close tag with the given name may match an open element. */
+  private boolean isOpen(int elementIndex, String elementName) {
+    return elementIndex == CUSTOM_ELEMENT_INDEX
+        ? openCustomElementCounts.containsKey(elementName)
+        : openElementCounts[elementIndex] != 0;
+  }
+
+  /** The openElementStack entry for an element about to be pushed. */
+  private int stackCode(int elementIndex, String elementName) {
+    if (elementIndex != CUSTOM_ELEMENT_INDEX) {
+      return elementIndex;
+    }
+    openCustomElementNames.add(elementName);
+    return customElementCode(openCustomElementNames.size() - 1);
+  }
+
+  /**
+   * The openElementStack entry for the custom element whose name is at the
+   * given index in openCustomElementNames.
+   */
+  private static int customElementCode(int customElementNameIndex) {
+    return NO_ELEMENT - 1 - customElementNameIndex;
+  }
+
+  /** The name of the element for an openElementStack entry. */
+  private String elementName(int stackCode) {
+    return stackCode >= 0
+        ? METADATA.canonNameForIndex(stackCode)
+        : openCustomElementNames.get(NO_ELEMENT - 1 - stackCode);
+  }
+
+  /**
+   * The length of attrs prefix past which removeDuplicateAttributes switches
+   * from a linear scan to a hash set.
+   */
+  private static final int MAX_DUPLICATE_SCAN_LENGTH = 32;
+
   /**
    * Remove attributes with the same name.
    * <p>
@@ -222,6 +361,9 @@ class ElementAndAttributePolicyBasedSanitizerPolicy
     // attrs.subList(0, k) contains the non-duplicate parts of attrs that
     // have been processed thus far.
     int k = 0;
+    // Once many attributes survive, the entries of attrs.subList(0, k), so
+    // that many names with the same first letter are not O(n**2) either.
+    Set<String> kept = null;
     attrLoop:
     for (int i = 0; i < n; i += 2) {
       String name = attrs.get(i);
@@ -242,17 +384,31 @@ class ElementAndAttributePolicyBasedSanitizerPolicy
           }
         }
         // Look for a duplicate.
-        for (int j = k; --j >= 0;) {
-          if (attrs.get(j).equals(name)) {
+        if (kept == null && k > MAX_DUPLICATE_SCAN_LENGTH) {
+          kept = new HashSet<>(attrs.subList(0, k));
+        }
+        if (kept != null) {
+          if (kept.contains(name)) {
             continue attrLoop;
           }
+        } else {
+          for (int j = k; --j >= 0;) {
+            if (attrs.get(j).equals(name)) {
+              continue attrLoop;
+            }
+          }
         }
       }
 
       // Preserve the attribute.
+      String value = attrs.get(i + 1);
       if (k != i) {
         attrs.set(k, name);
-        attrs.set(k + 1, attrs.get(i + 1));
+        attrs.set(k + 1, value);
+      }
+      if (kept != null) {
+        kept.add(name);
+        kept.add(value);
       }
       k += 2;
     }
@@ -0,0 +1,200 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.owasp.html.HtmlElementTables.HtmlElementNames;
+
+/**
+ * Element and attribute policies and text containers compiled into arrays
+ * indexed by {@link HtmlElementTables} element index so that looking up the
+ * policy for a tag does not require hashing its name.
+ * Names that the tables do not know, custom elements, fall back to maps.
+ * <p>
+ * A {@link PolicyFactory} compiles one of these and shares it with every
+ * policy it applies.
+ * Pure attribute policies may be wrapped to share a cache of their results.
+ */
+@Immutable
+@TCB
+final class ElementAndAttributePolicyTable {
+  static final HtmlElementTables METADATA = HtmlElementTables.get();
+  /** The index of any element name not in {@link #METADATA}. */
+  static final int CUSTOM_ELEMENT_INDEX =
+      METADATA.indexForName(HtmlElementNames.CUSTOM_ELEMENT_NAME);
+
+  private static final boolean[] VOID_ELEMENTS;
+  private static final boolean[] SKIPPABLE_CONTENT_ELEMENTS;
+  static {
+    int n = METADATA.nElementTypes();
+    VOID_ELEMENTS = new boolean[n];
+    SKIPPABLE_CONTENT_ELEMENTS = new boolean[n];
+    for (int i = 0; i < n; ++i) {
+      if (i != CUSTOM_ELEMENT_INDEX) {
+        String name = METADATA.canonNameForIndex(i);
+        VOID_ELEMENTS[i] = HtmlTextEscapingMode.isVoidElement(name);
+        SKIPPABLE_CONTENT_ELEMENTS[i] =
+            ElementAndAttributePolicyBasedSanitizerPolicy
+            .SKIPPABLE_ELEMENT_CONTENT.contains(name);
+      }
+    }
+  }
+
+  /** Policies by element index.  Null at {@link #CUSTOM_ELEMENT_INDEX}. */
+  private final ElementAndAttributePolicies[] policiesByIndex;
+  private final Map<String, ElementAndAttributePolicies> customPolicies;
+  /** Whether each element may contain text.  False for custom elements. */
+  private final boolean[] textContainersByIndex;
+  private final Set<String> customTextContainers;
+  /** Shared by memoized attribute policies, or null if there are none. */
+  final @Nullable LruCache<MemoizedAttributePolicy.Key, String>
+      attributeCache;
+
+  /**
+   * @param maxCachedAttributeChars bounds the chars in values and results
+   *     that {@link AttributePolicy#isPure pure} attribute policies remember,
+   *     or zero to not remember any.
+   */
+  ElementAndAttributePolicyTable(
+      Map<String, ElementAndAttributePolicies> policies,
+      Set<String> textContainers,
+      long maxCachedAttributeChars) {
+    this.attributeCache = maxCachedAttributeChars != 0
+        ? new LruCache<>(
+            maxCachedAttributeChars, MemoizedAttributePolicy.WEIGHER)
+        : null;
+    int n = METADATA.nElementTypes();
+    ElementAndAttributePolicies[] policiesByIndexBuilder =
+        new ElementAndAttributePolicies[n];
+    Map<String, ElementAndAttributePolicies> customPoliciesBuilder =
+        new HashMap<>();
+    for (Map.Entry<String, ElementAndAttributePolicies> e
+         : policies.entrySet()) {
+      String elementName = e.getKey();
+      ElementAndAttributePolicies elementPolicies = memoize(e.getValue());
+      int elementIndex = METADATA.indexForName(elementName);
+      if (elementIndex != CUSTOM_ELEMENT_INDEX) {
+        policiesByIndexBuilder[elementIndex] = elementPolicies;
+      } else {
+        customPoliciesBuilder.put(elementName, elementPolicies);
+      }
+    }
+    boolean[] textContainersByIndexBuilder = new boolean[n];
+    Set<String> customTextContainersBuilder = new HashSet<>();
+    for (String elementName : textContainers) {
+      int elementIndex = METADATA.indexForName(elementName);
+      if (elementIndex != CUSTOM_ELEMENT_INDEX) {
+        textContainersByIndexBuilder[elementIndex] = true;
+      } else {
+        customTextContainersBuilder.add(elementName);
+      }
+    }
+    this.policiesByIndex = policiesByIndexBuilder;
+    this.customPolicies = Map.copyOf(customPoliciesBuilder);
+    this.textContainersByIndex = textContainersByIndexBuilder;
+    this.customTextContainers = Set.copyOf(customTextContainersBuilder);
+  }
+
+  private ElementAndAttributePolicies memoize(
+      ElementAndAttributePolicies p) {
+    if (attributeCache == null) { return p; }
+    Map<String, AttributePolicy> attrPolicies = new HashMap<>();
+    boolean memoized = false;
+    for (Map.Entry<String, AttributePolicy> e : p.attrPolicies.entrySet()) {
+      AttributePolicy attrPolicy = e.getValue();
+      if (attrPolicy.isPure()) {
+        attrPolicy = new MemoizedAttributePolicy(attrPolicy, attributeCache);
+        memoized = true;
+      }
+      attrPolicies.put(e.getKey(), attrPolicy);
+    }
+    return memoized
+        ? new ElementAndAttributePolicies(
+            p.elementName, p.elPolicy, attrPolicies, p.htmlTagSkipType)
+        : p;
+  }
+
+  /**
+   * The policies for the named element.
+   *
+   * @param elementIndex {@code METADATA.indexForName(elementName)}.
+   */
+  @Nullable ElementAndAttributePolicies get(
+      int elementIndex, String elementName) {
+    return elementIndex != CUSTOM_ELEMENT_INDEX
+        ? policiesByIndex[elementIndex]
+        : customPolicies.get(elementName);
+  }
+
+  /** The policies for the named element. */
+  @Nullable ElementAndAttributePolicies get(String elementName) {
+    return get(METADATA.indexForName(elementName), elementName);
+  }
+
+  /**
+   * True if the policy allows text in the named element.
+   *
+   * @param elementIndex {@code METADATA.indexForName(elementName)}.
+   */
+  boolean isTextContainer(int elementIndex, String elementName) {
+    return elementIndex != CUSTOM_ELEMENT_INDEX
+        ? textContainersByIndex[elementIndex]
+        : customTextContainers.contains(elementName);
+  }
+
+  /**
+   * Like {@link HtmlTextEscapingMode#isVoidElement}.
+   *
+   * @param elementIndex {@code METADATA.indexForName(elementName)}.
+   */
+  static boolean isVoidElement(int elementIndex, String elementName) {
+    return elementIndex != CUSTOM_ELEMENT_INDEX
+        ? VOID_ELEMENTS[elementIndex]
+        : HtmlTextEscapingMode.isVoidElement(elementName);
+  }
+
+  /**
+   * True if the content of the named element is not human-readable, so
+   * should be skipped when the element itself is dropped.
+   *
+   * @param elementIndex {@code METADATA.indexForName(elementName)}.
+   */
+  static boolean hasSkippableContent(int elementIndex, String elementName) {
+    return elementIndex != CUSTOM_ELEMENT_INDEX
+        ? SKIPPABLE_CONTENT_ELEMENTS[elementIndex]
+        : ElementAndAttributePolicyBasedSanitizerPolicy
+          .SKIPPABLE_ELEMENT_CONTENT.contains(elementName);
+  }
+}
@@ -57,45 +57,73 @@ public final class Encoding {
    * @return text/plain
    */
   public static String decodeHtml(String s, boolean inAttribute) {
-    int firstAmp = s.indexOf('&');
-    int safeLimit = longestPrefixOfGoodCodeunits(s);
-    if ((firstAmp & safeLimit) < 0) { return s; }
+    return decodeHtml(s, 0, s.length(), inAttribute);
+  }
+
+  /**
+   * Decodes HTML entities in a range of s without first copying it out.
+   *
+   * @param s contains text/html between start and end.
+   * @param inAttribute is s in an attribute value?
+   * @return text/plain
+   */
+  static String decodeHtml(
+      CharSequence s, int start, int end, boolean inAttribute) {
+    int firstAmp = indexOf(s, '&', start, end);
+    int safeLimit = longestPrefixOfGoodCodeunits(s, start, end);
+    if ((firstAmp & safeLimit) < 0) {
+      return s.subSequence(start, end).toString();
+    }
 
     StringBuilder sb;
     {
-      int n = s.length();
-      sb = new StringBuilder(n);
-      int pos = 0;
+      sb = new StringBuilder(end - start);
+      int pos = start;
       int amp = firstAmp;
       while (amp >= 0) {
         sb.append(s, pos, amp);
-        int end = HtmlEntities.appendDecodedEntity(s, amp, n, inAttribute, sb);
-        pos = end;
-        amp = s.indexOf('&', end);
+        pos = HtmlEntities.appendDecodedEntity(s, amp, end, inAttribute, sb);
+        amp = indexOf(s, '&', pos, end);
       }
-      sb.append(s, pos, n);
+      sb.append(s, pos, end);
     }
 
     stripBannedCodeunits(
         sb,
-        firstAmp < 0
+        (firstAmp < 0
           ? safeLimit : safeLimit < 0
-          ? firstAmp : Math.min(firstAmp, safeLimit));
+          ? firstAmp : Math.min(firstAmp, safeLimit)) - start);
 
     return sb.toString();
   }
 
+  private static int indexOf(CharSequence s, char ch, int start, int end) {
+    for (int i = start; i < end; ++i) {
+      if (s.charAt(i) == ch) { return i; }
+    }
+    return -1;
+  }
+
   /**
    * Returns the portion of its input that consists of XML safe chars.
    * @see <a href="http://www.w3.org/TR/2008/REC-xml-20081126/#charsets">XML Ch. 2.2 - Characters</a>
    */
   @TCB
   static String stripBannedCodeunits(String s) {
-    int safeLimit = longestPrefixOfGoodCodeunits(s);
-    if (safeLimit < 0) { return s; }
+    return stripBannedCodeunits(s, 0, s.length());
+  }
+
+  /**
+   * Returns the portion of a range of its input that consists of XML safe
+   * chars.
+   */
+  @TCB
+  static String stripBannedCodeunits(CharSequence s, int start, int end) {
+    int safeLimit = longestPrefixOfGoodCodeunits(s, start, end);
+    if (safeLimit < 0) { return s.subSequence(start, end).toString(); }
 
-    StringBuilder sb = new StringBuilder(s);
-    stripBannedCodeunits(sb, safeLimit);
+    StringBuilder sb = new StringBuilder(end - start).append(s, start, end);
+    stripBannedCodeunits(sb, safeLimit - start);
     return sb.toString();
   }
 
@@ -138,14 +166,14 @@ public final class Encoding {
   }
 
   /**
-   * The number of code-units at the front of s that form code-points in the
-   * XML Character production.
-   * @return -1 if all of s is in the XML Character production.
+   * The index of the end of the longest prefix of s[start:end] whose
+   * code-units form code-points in the XML Character production.
+   * @return -1 if all of s[start:end] is in the XML Character production.
    */
   @TCB
-  private static int longestPrefixOfGoodCodeunits(String s) {
-    int n = s.length(), i;
-    for (i = 0; i < n; ++i) {
+  private static int longestPrefixOfGoodCodeunits(
+      CharSequence s, int start, int end) {
+    for (int i = start; i < end; ++i) {
       char ch = s.charAt(i);
       if (ch < 0x20) {
         if (IS_BANNED_ASCII[ch]) {
@@ -153,7 +181,7 @@ public final class Encoding {
         }
       } else if (0xd800 <= ch) {
         if (ch <= 0xdfff) {
-          if (i+1 < n && Character.isSurrogatePair(ch, s.charAt(i+1))) {
+          if (i+1 < end && Character.isSurrogatePair(ch, s.charAt(i+1))) {
             ++i;  // Skip over low surrogate since we know it's ok.
           } else {
             return i;
@@ -210,6 +238,61 @@ public final class Encoding {
     encodeHtmlOnto(plainText, output, "{<!-- -->");
   }
 
+  /**
+   * Like {@link #encodePcdataOnto} but returns plainText itself when encoding
+   * would not change it.
+   */
+  static String encodePcdata(String plainText) {
+    int n = plainText.length();
+    int i = 0;
+    while (i < n && isPcdataSafe(plainText.charAt(i))) { ++i; }
+    if (i == n) { return plainText; }
+    StringBuilder sb = new StringBuilder(n + 16);
+    try {
+      encodePcdataOnto(plainText, sb);
+    } catch (IOException ex) {
+      throw new AssertionError("StringBuilder does not throw", ex);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * True if {@link #encodeHtmlOnto} passes ch through regardless of its
+   * neighbours.
+   */
+  private static boolean isPcdataSafe(char ch) {
+    if (ch < REPLACEMENTS.length) {
+      return REPLACEMENTS[ch] == null && ch != '{';
+    }
+    return !isZwnjSensitiveVowel(ch) && !isEncodedNonAscii(ch);
+  }
+
+  /**
+   * True for the Devanagari, Bengali and Telugu vowels before which
+   * {@link #encodeHtmlOnto} drops a ZWNJ.
+   */
+  private static boolean isZwnjSensitiveVowel(char ch) {
+    return (0x93A <= ch && ch <= 0xC4C)
+        && (
+            // Devanagari vowel
+            ch <= 0x94F
+            // Benagli vowels
+            || 0x985 <= ch && ch <= 0x994
+            || 0x9BE <= ch && ch < 0x9CC  // 0x9CC (Bengali AU) is ok
+            || 0x9E0 <= ch && ch <= 0x9E3
+            // Telugu vowels
+            || 0xC05 <= ch && ch <= 0xC14
+            || 0xC3E <= ch && ch != 0xC48 /* 0xC48 (Telugu AI) is ok */);
+  }
+
+  /**
+   * True for non-ASCII code-units that {@link #encodeHtmlOnto} always
+   * encodes or elides: surrogates, code-units from U+FE60 up, and U+1FEF.
+   */
+  private static boolean isEncodedNonAscii(char ch) {
+    return Character.isSurrogate(ch) || 0xfe60 <= ch || ch == '\u1FEF';
+  }
+
   /**
    * Appends an encoded form of plainText to putput where the encoding is
    * sufficient to prevent an HTML parser from transitioning out of the
@@ -263,17 +346,7 @@ public final class Encoding {
           output.append(plainText, pos, i).append(repl);
           pos = i + 1;
         }
-      } else if ((0x93A <= ch && ch <= 0xC4C)
-          && (
-              // Devanagari vowel
-              ch <= 0x94F
-              // Benagli vowels
-              || 0x985 <= ch && ch <= 0x994
-              || 0x9BE <= ch && ch < 0x9CC  // 0x9CC (Bengali AU) is ok
-              || 0x9E0 <= ch && ch <= 0x9E3
-              // Telugu vowels
-              || 0xC05 <= ch && ch <= 0xC14
-              || 0xC3E <= ch && ch != 0xC48 /* 0xC48 (Telugu AI) is ok */)) {
+      } else if (isZwnjSensitiveVowel(ch)) {
         // https://manishearth.github.io/blog/2018/02/15/picking-apart-the-crashing-ios-string/
         // > So, ultimately, the full set of cases that cause the crash are:
         // >   Any sequence <consonant1, virama, consonant2, ZWNJ, vowel>
@@ -290,17 +363,11 @@ public final class Encoding {
             // Drop the ZWNJ on the floor.
             pos = i;
           }
-        } else if (output instanceof StringBuilder) {
-          StringBuilder sb = (StringBuilder) output;
-          int len = sb.length();
-          if (len != 0) {
-            if (sb.charAt(len - 1) == 0x200C /* ZWNJ */) {
-              sb.setLength(len - 1);
-            }
-          }
+        } else {
+          TrimmableOutput.dropLastIf(output, (char) 0x200C /* ZWNJ */);
         }
-      } else if (((char) 0xd800) <= ch) {
-        if (ch <= ((char) 0xdfff)) {
+      } else if (isEncodedNonAscii(ch)) {
+        if (Character.isSurrogate(ch)) {
           char next;
           if (i + 1 < n
               && Character.isSurrogatePair(
@@ -318,7 +385,10 @@ public final class Encoding {
             // Elide the orphaned surrogate.
             pos = i + 1;
           }
-        } else if (0xfe60 <= ch) {
+        } else if (ch == '\u1FEF') {  // Normalizes to backtick.
+          output.append(plainText, pos, i).append("&#8175;");
+          pos = i + 1;
+        } else {
           // Is a control character or possible full-width version of a
           // special character, a BOM, or one of the FE60 block that might
           // be elided or normalized to an HTML special character.
@@ -336,9 +406,6 @@ public final class Encoding {
             appendNumericEntity(ch, output);
           }
         }
-      } else if (ch == '\u1FEF') {  // Normalizes to backtick.
-        output.append(plainText, pos, i).append("&#8175;");
-        pos = i + 1;
       }
     }
     output.append(plainText, pos, n);
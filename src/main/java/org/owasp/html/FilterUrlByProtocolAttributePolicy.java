@@ -29,7 +29,9 @@
 package org.owasp.html;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -59,6 +61,11 @@ import javax.annotation.Nullable;
 @TCB
 public class FilterUrlByProtocolAttributePolicy implements AttributePolicy {
   private final Set<String> protocols;
+  /**
+   * Protocols keyed by name so that a URL's protocol can be matched in place,
+   * or null if there are none.
+   */
+  private final @Nullable Trie<Boolean> protocolTrie;
 
   /**
    * @param protocols lower-case protocol names without any trailing colon (":")
@@ -68,14 +75,23 @@ public class FilterUrlByProtocolAttributePolicy implements AttributePolicy {
     Set<String> builder = new HashSet<>();
     protocols.forEach(builder::add);
     this.protocols = Collections.unmodifiableSet(builder);
+    Map<String, Boolean> trieBuilder = new HashMap<>();
+    for (String protocol : builder) {
+      trieBuilder.put(protocol, Boolean.TRUE);
+    }
+    this.protocolTrie = trieBuilder.isEmpty()
+        ? null : new Trie<>(trieBuilder);
   }
 
   public @Nullable String apply(
       String elementName, String attributeName, String value) {
     String url = Strings.stripHtmlSpaces(value);
+    // The node for the lower-cased prefix of url before i, if any.
+    Trie<Boolean> protocol = protocolTrie;
     protocol_loop:
     for (int i = 0, n = url.length(); i < n; ++i) {
-      switch (url.charAt(i)) {
+      char ch = url.charAt(i);
+      switch (ch) {
         case '/': case '#': case '?':  // No protocol.
           // Check for domain relative URLs like //www.evil.org/
           if (url.startsWith("//")
@@ -85,14 +101,28 @@ public class FilterUrlByProtocolAttributePolicy implements AttributePolicy {
           }
           break protocol_loop;
         case ':':
-          String protocol = Strings.toLowerCase(url.substring(0, i));
-          if (!protocols.contains(protocol)) { return null; }
+          if (protocol == null || !protocol.isTerminal()) { return null; }
           break protocol_loop;
+        default:
+          if (protocol != null) {
+            if ('A' <= ch && ch <= 'Z') { ch |= 0x20; }
+            protocol = protocol.lookup(ch);
+          }
+          break;
       }
     }
     return normalizeUri(url);
   }
 
+  /**
+   * True since the result depends only on the value and protocols, unless
+   * this is a subclass which might consult other state.
+   */
+  @Override
+  public boolean isPure() {
+    return getClass() == FilterUrlByProtocolAttributePolicy.class;
+  }
+
   protected boolean allowProtocolRelativeUrls() {
     return protocols.contains("http") && protocols.contains("https");
   }
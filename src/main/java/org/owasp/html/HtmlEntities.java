@@ -40,7 +40,11 @@ final class HtmlEntities {
   /** A trie that maps entity names to strings of referenced code points. */
   public static final Trie<String> ENTITY_TRIE;
 
-  private static final int LONGEST_ENTITY_NAME;
+  /**
+   * The decoder looks no further than this many chars past the {@code &}
+   * that starts a character reference.
+   */
+  static final int LONGEST_ENTITY_NAME;
 
   static {
     // Source data: https://html.spec.whatwg.org/multipage/named-characters.html
@@ -2327,7 +2331,8 @@ final class HtmlEntities {
    * @return The offset after the end of the decoded sequence in {@code html}.
    */
   public static int appendDecodedEntity(
-      String html, int offset, int limit, boolean inAttribute, StringBuilder sb) {
+      CharSequence html, int offset, int limit, boolean inAttribute,
+      StringBuilder sb) {
     char ch = html.charAt(offset);
     if ('&' != ch) {
       sb.append(ch);
@@ -2481,7 +2486,8 @@ final class HtmlEntities {
   }
 
   /** True if the character at i in html may complete a named character reference */
-  private static boolean mayComplete(boolean inAttribute, String html, int i, int limit) {
+  private static boolean mayComplete(
+      boolean inAttribute, CharSequence html, int i, int limit) {
     if (inAttribute && html.charAt(i) != ';' && i + 1 < limit) {
       // See if the next character blocks treating this as a full match.
       // This avoids problems like "&para" being treated as a decoding in
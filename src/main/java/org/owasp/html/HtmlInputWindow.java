@@ -0,0 +1,125 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A sliding window over a stream of HTML that the lexer can treat as the
+ * prefix of the document received so far.
+ * <p>
+ * Indices are relative to the start of the window, so when characters are
+ * {@link #discard}ed, the indices of those that remain shift down.
+ */
+@NotThreadSafe
+final class HtmlInputWindow implements CharSequence {
+  private char[] buf;
+  /** The count of characters at the front of buf that hold input. */
+  private int count;
+
+  HtmlInputWindow(int capacity) {
+    this.buf = new char[capacity];
+  }
+
+  public char charAt(int index) {
+    return buf[index];
+  }
+
+  public int length() {
+    return count;
+  }
+
+  public String subSequence(int start, int end) {
+    return new String(buf, start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    return new String(buf, 0, count);
+  }
+
+  /** The number of characters that can be held without growing. */
+  int capacity() {
+    return buf.length;
+  }
+
+  /**
+   * Reads as many characters as fit into the window.
+   * @return the number of characters read, or -1 at the end of the stream.
+   */
+  int fill(Reader in) throws IOException {
+    int n = in.read(buf, count, buf.length - count);
+    if (n > 0) { count += n; }
+    return n;
+  }
+
+  /**
+   * Appends as many characters from chars as fit into the window.
+   * @return the number of characters appended.
+   */
+  int fill(CharSequence chars, int start, int end) {
+    int n = Math.min(end - start, buf.length - count);
+    if (chars instanceof String) {
+      ((String) chars).getChars(start, start + n, buf, count);
+    } else {
+      for (int i = 0; i < n; ++i) {
+        buf[count + i] = chars.charAt(start + i);
+      }
+    }
+    count += n;
+    return n;
+  }
+
+  /**
+   * Discards the first n characters and makes sure there is room for more.
+   * The window only grows when a single construct, like a tag or comment, does
+   * not fit, so its size is bounded by the largest such construct rather
+   * than by the size of the stream.
+   *
+   * @throws IllegalStateException if the window would have to grow past
+   *     {@link HtmlToken#MAX_INPUT_LENGTH}.
+   */
+  void discard(int n) {
+    if (n > 0) {
+      System.arraycopy(buf, n, buf, 0, count - n);
+      count -= n;
+    }
+    if (count == buf.length) {
+      if (count == HtmlToken.MAX_INPUT_LENGTH) {
+        throw new IllegalStateException("HTML construct too long");
+      }
+      buf = Arrays.copyOf(
+          buf, (int) Math.min(buf.length * 2L, HtmlToken.MAX_INPUT_LENGTH));
+    }
+  }
+}
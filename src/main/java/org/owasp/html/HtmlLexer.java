@@ -28,9 +28,7 @@
 
 package org.owasp.html;
 
-import java.util.LinkedList;
 import java.util.NoSuchElementException;
-import java.util.Set;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -42,22 +40,178 @@ import javax.annotation.concurrent.NotThreadSafe;
  */
 @NotThreadSafe
 final class HtmlLexer extends AbstractTokenStream {
-  private final String input;
+  private CharSequence input;
   private final HtmlInputSplitter splitter;
   private State state = State.OUTSIDE_TAG;
 
   public HtmlLexer(String input) {
+    this(input, true);
+  }
+
+  /**
+   * @param input the HTML to lex.
+   * @param endOfInput false if input holds only a prefix of the document, and
+   *     will grow as more of the document is received.
+   *     In that case, {@link #setEndOfInput} must be called once input holds
+   *     the whole remainder of the document.
+   */
+  HtmlLexer(CharSequence input, boolean endOfInput) {
     this.input = input;
-    this.splitter = new HtmlInputSplitter(input);
+    this.splitter = new HtmlInputSplitter(input, endOfInput);
+  }
+
+  /**
+   * Starts lexing a new document, reusing this lexer's buffers.
+   *
+   * @param newInput as for the constructor.
+   * @param endOfInput as for the constructor.
+   */
+  void restart(CharSequence newInput, boolean endOfInput) {
+    this.input = newInput;
+    splitter.restart(newInput, endOfInput);
+    state = State.OUTSIDE_TAG;
+    lookahead.clear();
+    markState = State.OUTSIDE_TAG;
+    markLookahead.clear();
+    discardPending();
   }
 
+  /**
+   * Lexes only the part of the input from start, stopping at the first of
+   * boundaries at which a lexer started there would produce the same tokens
+   * as this one.
+   * This lets parts of a document be lexed separately and the results be
+   * stitched together.
+   *
+   * @param start an index into the input where a lexer in its initial state
+   *     produces the same tokens as one started at the beginning, such as 0
+   *     or a boundary at which another lexer stopped.
+   * @param boundaries ascending indices into the input.  Those from
+   *     firstBoundary on must be of {@code <} characters followed by an
+   *     ASCII letter.
+   * @param firstBoundary the index into boundaries of the first that is
+   *     after start.
+   */
+  void setRange(int start, int[] boundaries, int firstBoundary) {
+    splitter.setRange(start, boundaries, firstBoundary);
+  }
+
+  /**
+   * The index into the boundaries passed to {@link #setRange} of the one at
+   * which lexing stopped, or their count if lexing reached the end of input.
+   */
+  int boundaryReached() {
+    return splitter.boundaryReached();
+  }
+
+  /**
+   * Called when no characters will be appended to the input beyond those
+   * already there.
+   */
+  void setEndOfInput() {
+    splitter.setEndOfInput();
+  }
+
+  /**
+   * True if the lexer could not produce a token because it might extend past
+   * the end of the input received so far.
+   * When true, the last token returned may have been affected by the
+   * shortage; a text token may be a prefix of the text run, and tag content
+   * may be misclassified.
+   */
+  boolean isStarved() {
+    return splitter.isStarved();
+  }
+
+  /**
+   * True if the next token would be in the body of an element like
+   * {@code <script>} whose content is not markup, and that content has not
+   * been split into tokens yet.
+   */
+  boolean isInEscapeExemptContent() {
+    return state == State.OUTSIDE_TAG && lookahead.isEmpty()
+        && splitter.isInEscapeExemptContent();
+  }
+
+  /**
+   * Advances over the content of the element whose body
+   * {@link #isInEscapeExemptContent we are in} without producing tokens for
+   * it.
+   * Stops before the end tag, or as far as it can be sure no end tag starts
+   * when that is not in the input yet.
+   */
+  void skipEscapeExemptContent() {
+    splitter.skipEscapeExemptContent();
+  }
+
+  /**
+   * Remembers the current position so that {@link #reset} can return to it.
+   * This is a no-op once the end of input has been reached since the lexer
+   * then never starves.
+   * Must not be called between {@link #hasNext} and {@link #next}.
+   */
+  void mark() {
+    if (splitter.isEndOfInput()) { return; }
+    splitter.mark();
+    markState = state;
+    markLookahead.copyFrom(lookahead);
+  }
+
+  /**
+   * Returns to the position last {@link #mark}ed so that the tokens after it
+   * can be lexed again once more input is available.
+   */
+  void reset() {
+    discardPending();
+    splitter.reset();
+    state = markState;
+    lookahead.copyFrom(markLookahead);
+  }
+
+  /**
+   * The index into input of the first character that is needed to produce the
+   * tokens after the {@link #mark}ed position.
+   * No earlier character will be read after a {@link #reset}.
+   */
+  int markedOffset() {
+    return markLookahead.isEmpty()
+        ? splitter.markedOffset() : HtmlToken.start(markLookahead.get(0));
+  }
+
+  /**
+   * Adjusts offsets after the first delta characters have been removed from
+   * input so that the character at delta is now at 0.
+   * Must be called directly after {@link #reset} with a delta no greater than
+   * {@link #markedOffset}.
+   */
+  void shift(int delta) {
+    splitter.shift(delta);
+    shift(markLookahead, delta);
+    shift(lookahead, delta);
+  }
+
+  private static void shift(LongRingBuffer tokens, int delta) {
+    for (int i = 0, n = tokens.size(); i < n; ++i) {
+      tokens.set(i, HtmlToken.shift(tokens.get(i), delta));
+    }
+  }
+
+  private State markState = State.OUTSIDE_TAG;
+  private final LongRingBuffer markLookahead =
+      new LongRingBuffer(LOOKAHEAD_CAPACITY);
+
   /**
    * Normalize case of names that are not name-spaced.  This lower-cases HTML
    * element names, but not ones for embedded SVG or MathML.
    */
   static String canonicalElementName(String elementName) {
-    return elementName.indexOf(':') >= 0 || mixedCaseForeignElementNames.contains(elementName)
-            ? elementName : Strings.toLowerCase(elementName);
+    String known = CanonicalNameTable.ELEMENT_NAMES.canonicalName(
+        elementName, 0, elementName.length());
+    if (known != null) { return known; }
+    return elementName.indexOf(':') >= 0
+        || CanonicalNameTable.MIXED_CASE_FOREIGN_ELEMENT_NAMES.contains(
+            elementName)
+        ? elementName : Strings.toLowerCase(elementName);
   }
 
   /**
@@ -65,8 +219,49 @@ final class HtmlLexer extends AbstractTokenStream {
    * attribute names, but not ones for embedded SVG or MathML.
    */
   static String canonicalAttributeName(String attribName) {
-    return attribName.indexOf(':') >= 0 || mixedCaseForeignAttributeNames.contains(attribName)
-            ? attribName : Strings.toLowerCase(attribName);
+    String known = CanonicalNameTable.ATTRIBUTE_NAMES.canonicalName(
+        attribName, 0, attribName.length());
+    if (known != null) { return known; }
+    return attribName.indexOf(':') >= 0
+        || CanonicalNameTable.MIXED_CASE_FOREIGN_ATTRIBUTE_NAMES.contains(
+            attribName)
+        ? attribName : Strings.toLowerCase(attribName);
+  }
+
+  /**
+   * Like {@link #canonicalElementName(String)} but for a range of input so
+   * that well-known names are not copied out at all, and others are copied
+   * out only once when already canonical.
+   */
+  static String canonicalElementName(CharSequence s, int start, int end) {
+    String known = CanonicalNameTable.ELEMENT_NAMES.canonicalName(
+        s, start, end);
+    if (known != null) { return known; }
+    String name = s.subSequence(start, end).toString();
+    return hasAsciiUpperCase(s, start, end)
+        ? canonicalElementName(name) : name;
+  }
+
+  /**
+   * Like {@link #canonicalAttributeName(String)} but for a range of input so
+   * that well-known names are not copied out at all, and others are copied
+   * out only once when already canonical.
+   */
+  static String canonicalAttributeName(CharSequence s, int start, int end) {
+    String known = CanonicalNameTable.ATTRIBUTE_NAMES.canonicalName(
+        s, start, end);
+    if (known != null) { return known; }
+    String name = s.subSequence(start, end).toString();
+    return hasAsciiUpperCase(s, start, end)
+        ? canonicalAttributeName(name) : name;
+  }
+
+  private static boolean hasAsciiUpperCase(CharSequence s, int start, int end) {
+    for (int i = start; i < end; ++i) {
+      char c = s.charAt(i);
+      if (c <= 'Z' && c >= 'A') { return true; }
+    }
+    return false;
   }
 
   /**
@@ -94,24 +289,25 @@ final class HtmlLexer extends AbstractTokenStream {
    * splitter.
    */
   @Override
-  protected HtmlToken produce() {
-    HtmlToken token = readToken();
-    if (token == null) { return null; }
+  protected long produce() {
+    long token = readToken();
+    if (token == HtmlToken.NONE) { return HtmlToken.NONE; }
 
-    switch (token.type) {
+    HtmlTokenType type = HtmlToken.type(token);
+    switch (type) {
 
       // Keep track of whether we're inside a tag or not.
       case TAGBEGIN:
         state = State.IN_TAG;
         break;
       case TAGEND:
-        if (state == State.SAW_EQ && HtmlTokenType.TAGEND == token.type) {
+        if (state == State.SAW_EQ && HtmlTokenType.TAGEND == type) {
           // Distinguish <input type=checkbox checked=> from
           // <input type=checkbox checked>
           pushbackToken(token);
           state = State.IN_TAG;
-          return HtmlToken.instance(
-              token.start, token.start, HtmlTokenType.ATTRVALUE);
+          int start = HtmlToken.start(token);
+          return HtmlToken.instance(start, start, HtmlTokenType.ATTRVALUE);
         }
 
         state = State.OUTSIDE_TAG;
@@ -126,47 +322,44 @@ final class HtmlLexer extends AbstractTokenStream {
       default:
         switch (state) {
           case OUTSIDE_TAG:
-            if (HtmlTokenType.TEXT == token.type
-                || HtmlTokenType.UNESCAPED == token.type) {
+            if (HtmlTokenType.TEXT == type
+                || HtmlTokenType.UNESCAPED == type) {
               token = collapseSubsequent(token);
             }
             break;
           case IN_TAG:
-            if (HtmlTokenType.TEXT == token.type
-                && !token.tokenInContextMatches(input, "=")) {
+            if (HtmlTokenType.TEXT == type
+                && !HtmlToken.tokenInContextMatches(token, input, "=")) {
               // Reclassify as attribute name
-              token = HtmlInputSplitter.reclassify(
-                  token, HtmlTokenType.ATTRNAME);
+              token = HtmlToken.reclassify(token, HtmlTokenType.ATTRNAME);
               state = State.SAW_NAME;
             }
             break;
           case SAW_NAME:
-            if (HtmlTokenType.TEXT == token.type) {
-              if (token.tokenInContextMatches(input, "=")) {
+            if (HtmlTokenType.TEXT == type) {
+              if (HtmlToken.tokenInContextMatches(token, input, "=")) {
                 state = State.SAW_EQ;
                 // Skip the '=' token
                 return produce();
               } else {
                 // Reclassify as attribute name
-                token = HtmlInputSplitter.reclassify(
-                    token, HtmlTokenType.ATTRNAME);
+                token = HtmlToken.reclassify(token, HtmlTokenType.ATTRNAME);
               }
             } else {
               state = State.IN_TAG;
             }
             break;
           case SAW_EQ:
-            if (HtmlTokenType.TEXT == token.type
-                || HtmlTokenType.QSTRING == token.type) {
-              if (HtmlTokenType.TEXT == token.type) {
+            if (HtmlTokenType.TEXT == type
+                || HtmlTokenType.QSTRING == type) {
+              if (HtmlTokenType.TEXT == type) {
                 // Collapse adjacent text nodes to properly handle
                 //   <a onclick=this.clicked=true>
                 //   <a title=foo bar>
                 token = collapseAttributeName(token);
               }
               // Reclassify as value
-              token = HtmlInputSplitter.reclassify(
-                  token, HtmlTokenType.ATTRVALUE);
+              token = HtmlToken.reclassify(token, HtmlTokenType.ATTRVALUE);
               state = State.IN_TAG;
             }
             break;
@@ -180,17 +373,19 @@ final class HtmlLexer extends AbstractTokenStream {
   /**
    * Collapses all the following tokens of the same type into this.token.
    */
-  private HtmlToken collapseSubsequent(HtmlToken token) {
-    HtmlToken collapsed = token;
-    for (HtmlToken next;
-         (next= peekToken(0)) != null && next.type == token.type;
+  private long collapseSubsequent(long token) {
+    long collapsed = token;
+    HtmlTokenType type = HtmlToken.type(token);
+    for (long next;
+         (next = peekToken(0)) != HtmlToken.NONE
+         && HtmlToken.type(next) == type;
          readToken()) {
       collapsed = join(collapsed, next);
     }
     return collapsed;
   }
 
-  private HtmlToken collapseAttributeName(HtmlToken token) {
+  private long collapseAttributeName(long token) {
     // We want to collapse tokens into the value that are not parts of an
     // attribute value.  We should include any space or text adjacent to the
     // value, but should stop at any of the following constructions:
@@ -199,191 +394,103 @@ final class HtmlLexer extends AbstractTokenStream {
     //   space tag-end                  e.g. name=foo />
     //   space text space? '='          e.g. name=foo bar=
     int nToMerge = 0;
-    for (HtmlToken t; (t = peekToken(nToMerge)) != null;) {
-      if (t.type == HtmlTokenType.IGNORABLE) {
-        HtmlToken tok = peekToken(nToMerge + 1);
-        if (tok == null) { break; }
-        if (tok.type != HtmlTokenType.TEXT) { break; }
-        if (isValuelessAttribute(input.substring(tok.start, tok.end))) {
+    for (long t; (t = peekToken(nToMerge)) != HtmlToken.NONE;) {
+      HtmlTokenType type = HtmlToken.type(t);
+      if (type == HtmlTokenType.IGNORABLE) {
+        long tok = peekToken(nToMerge + 1);
+        if (tok == HtmlToken.NONE) { break; }
+        if (HtmlToken.type(tok) != HtmlTokenType.TEXT) { break; }
+        if (isValuelessAttribute(
+                input, HtmlToken.start(tok), HtmlToken.end(tok))) {
           break;
         }
-        HtmlToken eq = peekToken(nToMerge + 2);
-        if (eq != null && eq.type == HtmlTokenType.IGNORABLE) {
+        long eq = peekToken(nToMerge + 2);
+        if (eq != HtmlToken.NONE
+            && HtmlToken.type(eq) == HtmlTokenType.IGNORABLE) {
           eq = peekToken(nToMerge + 3);
         }
-        if (eq == null || eq.tokenInContextMatches(input, "=")) {
+        if (eq == HtmlToken.NONE
+            || HtmlToken.tokenInContextMatches(eq, input, "=")) {
           break;
         }
-      } else if (t.type != HtmlTokenType.TEXT) {
+      } else if (type != HtmlTokenType.TEXT) {
         break;
       }
       ++nToMerge;
     }
     if (nToMerge == 0) { return token; }
 
-    int end = token.end;
+    int end;
     do {
-      end = readToken().end;
+      end = HtmlToken.end(readToken());
     } while (--nToMerge > 0);
 
-    return HtmlToken.instance(token.start, end, HtmlTokenType.TEXT);
+    return HtmlToken.instance(
+        HtmlToken.start(token), end, HtmlTokenType.TEXT);
   }
 
-  private static HtmlToken join(HtmlToken a, HtmlToken b) {
-    return HtmlToken.instance(a.start, b.end, a.type);
+  private static long join(long a, long b) {
+    return HtmlToken.instance(
+        HtmlToken.start(a), HtmlToken.end(b), HtmlToken.type(a));
   }
 
-  private final LinkedList<HtmlToken> lookahead = new LinkedList<>();
-  private HtmlToken readToken() {
+  /**
+   * Enough for the attribute FSM and for collapseAttributeName on typical
+   * unquoted values.  Longer unquoted values make the buffer grow.
+   */
+  private static final int LOOKAHEAD_CAPACITY = 16;
+
+  /** Tokens fetched from the splitter but not yet consumed. */
+  private final LongRingBuffer lookahead =
+      new LongRingBuffer(LOOKAHEAD_CAPACITY);
+
+  private long readToken() {
     if (!lookahead.isEmpty()) {
-      return lookahead.remove();
+      return lookahead.removeFirst();
     } else if (splitter.hasNext()) {
       return splitter.next();
     } else {
-      return null;
+      return HtmlToken.NONE;
     }
   }
 
-  private HtmlToken peekToken(int i) {
+  private long peekToken(int i) {
     while (lookahead.size() <= i && splitter.hasNext()) {
-      lookahead.add(splitter.next());
+      lookahead.addLast(splitter.next());
     }
-    return lookahead.size() > i ? lookahead.get(i) : null;
+    return lookahead.size() > i ? lookahead.get(i) : HtmlToken.NONE;
   }
 
-  private void pushbackToken(HtmlToken token) {
+  private void pushbackToken(long token) {
     lookahead.addFirst(token);
   }
 
   /** Can the attribute appear in HTML without a value. */
-  private static boolean isValuelessAttribute(String attribName) {
-    return VALUELESS_ATTRIB_NAMES.contains(canonicalAttributeName(attribName));
+  private static boolean isValuelessAttribute(
+      CharSequence s, int start, int end) {
+    // None of these are foreign or namespaced, so they are canonical exactly
+    // when they match ignoring case.
+    int id = CanonicalNameTable.ATTRIBUTE_NAMES.indexOf(s, start, end);
+    return id >= 0 && VALUELESS_ATTRIBS_BY_ID[id];
   }
 
   // From http://issues.apache.org/jira/browse/XALANC-519
-  private static final Set<String> VALUELESS_ATTRIB_NAMES = Set.of(
+  private static final String[] VALUELESS_ATTRIB_NAMES = {
       "checked", "compact", "declare", "defer", "disabled",
       "ismap", "multiple", "nohref", "noresize", "noshade",
-      "nowrap", "readonly", "selected");
-
-  private static final Set<String> mixedCaseForeignAttributeNames = Set.of(
-          "attributeName",
-          "attributeType",
-          "baseFrequency",
-          "baseProfile",
-          "calcMode",
-          "clipPathUnits",
-          "contentScriptType",
-          "defaultAction",
-          "definitionURL",
-          "diffuseConstant",
-          "edgeMode",
-          "externalResourcesRequired",
-          "filterUnits",
-          "focusHighlight",
-          "gradientTransform",
-          "gradientUnits",
-          "initialVisibility",
-          "kernelMatrix",
-          "kernelUnitLength",
-          "keyPoints",
-          "keySplines",
-          "keyTimes",
-          "lengthAdjust",
-          "limitingConeAngle",
-          "markerHeight",
-          "markerUnits",
-          "markerWidth",
-          "maskContentUnits",
-          "maskUnits",
-          "mediaCharacterEncoding",
-          "mediaContentEncodings",
-          "mediaSize",
-          "mediaTime",
-          "numOctaves",
-          "pathLength",
-          "patternContentUnits",
-          "patternTransform",
-          "patternUnits",
-          "playbackOrder",
-          "pointsAtX",
-          "pointsAtY",
-          "pointsAtZ",
-          "preserveAlpha",
-          "preserveAspectRatio",
-          "primitiveUnits",
-          "refX",
-          "refY",
-          "repeatCount",
-          "repeatDur",
-          "requiredExtensions",
-          "requiredFeatures",
-          "requiredFonts",
-          "requiredFormats",
-          "schemaLocation",
-          "snapshotTime",
-          "specularConstant",
-          "specularExponent",
-          "spreadMethod",
-          "startOffset",
-          "stdDeviation",
-          "stitchTiles",
-          "surfaceScale",
-          "syncBehavior",
-          "syncBehaviorDefault",
-          "syncMaster",
-          "syncTolerance",
-          "syncToleranceDefault",
-          "systemLanguage",
-          "tableValues",
-          "targetX",
-          "targetY",
-          "textLength",
-          "timelineBegin",
-          "transformBehavior",
-          "viewBox",
-          "xChannelSelector",
-          "yChannelSelector",
-          "zoomAndPan"
-  );
-
-  private static final Set<String> mixedCaseForeignElementNames = Set.of(
-          "animateColor",
-          "animateMotion",
-          "animateTransform",
-          "clipPath",
-          "feBlend",
-          "feColorMatrix",
-          "feComponentTransfer",
-          "feComposite",
-          "feConvolveMatrix",
-          "feDiffuseLighting",
-          "feDisplacementMap",
-          "feDistantLight",
-          "feDropShadow",
-          "feFlood",
-          "feFuncA",
-          "feFuncB",
-          "feFuncG",
-          "feFuncR",
-          "feGaussianBlur",
-          "feImage",
-          "feMerge",
-          "feMergeNode",
-          "feMorphology",
-          "feOffset",
-          "fePointLight",
-          "feSpecularLighting",
-          "feSpotLight",
-          "feTile",
-          "feTurbulence",
-          "foreignObject",
-          "linearGradient",
-          "radialGradient",
-          "solidColor",
-          "textArea",
-          "textPath"
-  );
+      "nowrap", "readonly", "selected",
+  };
+
+  /** By {@link CanonicalNameTable#ATTRIBUTE_NAMES} id. */
+  private static final boolean[] VALUELESS_ATTRIBS_BY_ID =
+      new boolean[CanonicalNameTable.ATTRIBUTE_NAMES.size()];
+  static {
+    for (String name : VALUELESS_ATTRIB_NAMES) {
+      int id = CanonicalNameTable.ATTRIBUTE_NAMES.indexOf(
+          name, 0, name.length());
+      VALUELESS_ATTRIBS_BY_ID[id] = true;
+    }
+  }
 }
 
 /**
@@ -393,9 +500,16 @@ final class HtmlLexer extends AbstractTokenStream {
  */
 final class HtmlInputSplitter extends AbstractTokenStream {
   /** The source of HTML character data. */
-  private final String input;
+  private CharSequence input;
   /** An offset into input. */
   private int offset;
+  /** False if characters may yet be appended to input. */
+  private boolean endOfInput;
+  /**
+   * True if a token could not be produced because it might continue past the
+   * end of the input received so far.
+   */
+  private boolean starved;
   /** True iff the current character is inside a tag. */
   private boolean inTag;
   /**
@@ -414,41 +528,209 @@ final class HtmlInputSplitter extends AbstractTokenStream {
 
   private HtmlTextEscapingMode textEscapingMode;
 
-  public HtmlInputSplitter(String input) {
+  public HtmlInputSplitter(CharSequence input, boolean endOfInput) {
     this.input = input;
+    this.endOfInput = endOfInput;
+  }
+
+  /** Starts splitting a new document as if newly constructed. */
+  void restart(CharSequence newInput, boolean newEndOfInput) {
+    this.input = newInput;
+    this.endOfInput = newEndOfInput;
+    offset = 0;
+    starved = false;
+    inTag = false;
+    inEscapeExemptBlock = false;
+    escapeExemptTagName = null;
+    textEscapingMode = null;
+    lastNonIgnorableIsEq = false;
+    markOffset = 0;
+    markInTag = false;
+    markInEscapeExemptBlock = false;
+    markEscapeExemptTagName = null;
+    markTextEscapingMode = null;
+    markLastNonIgnorableIsEq = false;
+    boundaries = null;
+    boundaryIndex = 0;
+    discardPending();
+  }
+
+  void setEndOfInput() {
+    this.endOfInput = true;
+  }
+
+  /** Null or offsets at which to stop as per {@link HtmlLexer#setRange}. */
+  private int[] boundaries;
+  /** The index into boundaries of the first that offset has not passed. */
+  private int boundaryIndex;
+
+  void setRange(int start, int[] newBoundaries, int firstBoundary) {
+    this.offset = start;
+    this.boundaries = newBoundaries;
+    this.boundaryIndex = firstBoundary;
+  }
+
+  int boundaryReached() {
+    return boundaryIndex;
+  }
+
+  /**
+   * True if offset is at the next boundary, and we are in the state that
+   * lexing starts in, so that the token there begins a tag.
+   */
+  private boolean isAtBoundary() {
+    int n = boundaries.length;
+    while (boundaryIndex < n && boundaries[boundaryIndex] < offset) {
+      ++boundaryIndex;
+    }
+    return boundaryIndex < n && boundaries[boundaryIndex] == offset
+        && !inTag && !inEscapeExemptBlock && escapeExemptTagName == null
+        && textEscapingMode == null;
+  }
+
+  boolean isEndOfInput() {
+    return endOfInput;
+  }
+
+  boolean isStarved() {
+    return starved;
+  }
+
+  boolean isInEscapeExemptContent() {
+    return inEscapeExemptBlock && !hasPending();
+  }
+
+  /**
+   * Skips to the first place where lexing would end the escape exempt block.
+   * <p>
+   * Lexing ends the block at the first {@code </} that is followed by the
+   * block's tag name and a character that ends a tag name, except that
+   * {@code <%...%>} is lexed as server code even in escape exempt blocks so
+   * any end tag in it is ignored.
+   */
+  void skipEscapeExemptContent() {
+    int limit = input.length();
+    int pos = offset;
+    String tagName = escapeExemptTagName;
+    int n = tagName.length();
+    scan:
+    while (pos < limit) {
+      if (input.charAt(pos) != '<') {
+        ++pos;
+        continue;
+      }
+      if (pos + 1 == limit) {
+        if (endOfInput) { pos = limit; }
+        break;
+      }
+      char next = input.charAt(pos + 1);
+      if (next == '%') {
+        for (int i = pos + 2; i + 1 < limit; ++i) {
+          if (input.charAt(i) == '%' && input.charAt(i + 1) == '>') {
+            pos = i + 2;
+            continue scan;
+          }
+        }
+        // Server code runs to the end of the input received so far.
+        if (endOfInput) { pos = limit; }
+        break;
+      } else if (next == '/'
+                 && textEscapingMode != HtmlTextEscapingMode.PLAIN_TEXT) {
+        int nameEnd = pos + 2 + n;
+        if (nameEnd >= limit) {
+          // There is no room for a tag name and the character that ends it.
+          if (endOfInput) { pos = limit; }
+          break;
+        }
+        char afterName = input.charAt(nameEnd);
+        if ((Character.isWhitespace(afterName) || '>' == afterName
+             || '/' == afterName || '<' == afterName)
+            && Strings.regionMatchesIgnoreCase(input, pos + 2, tagName, 0, n)
+            && canonicalElementName(pos + 2, nameEnd).equals(tagName)) {
+          break;
+        }
+      }
+      ++pos;
+    }
+    offset = pos;
+  }
+
+  // State saved by mark() and restored by reset().
+  private int markOffset;
+  private boolean markInTag;
+  private boolean markInEscapeExemptBlock;
+  private String markEscapeExemptTagName;
+  private HtmlTextEscapingMode markTextEscapingMode;
+  private boolean markLastNonIgnorableIsEq;
+
+  void mark() {
+    markOffset = offset;
+    markInTag = inTag;
+    markInEscapeExemptBlock = inEscapeExemptBlock;
+    markEscapeExemptTagName = escapeExemptTagName;
+    markTextEscapingMode = textEscapingMode;
+    markLastNonIgnorableIsEq = lastNonIgnorableIsEq;
+  }
+
+  void reset() {
+    discardPending();
+    offset = markOffset;
+    inTag = markInTag;
+    inEscapeExemptBlock = markInEscapeExemptBlock;
+    escapeExemptTagName = markEscapeExemptTagName;
+    textEscapingMode = markTextEscapingMode;
+    lastNonIgnorableIsEq = markLastNonIgnorableIsEq;
+    starved = false;
+  }
+
+  int markedOffset() {
+    return markOffset;
+  }
+
+  void shift(int delta) {
+    offset -= delta;
+    markOffset -= delta;
   }
 
   /**
    * Make sure that there is a token ready to yield in this.token.
    */
   @Override
-  protected HtmlToken produce() {
-    HtmlToken token = parseToken();
-    if (null == token) { return null; }
+  protected long produce() {
+    if (boundaries != null && isAtBoundary()) { return HtmlToken.NONE; }
+    long token = parseToken();
+    if (HtmlToken.NONE == token) { return HtmlToken.NONE; }
+    HtmlTokenType type = HtmlToken.type(token);
 
     // Handle escape-exempt blocks.
     // The parse() method is only dimly aware of escape-excempt blocks, so
     // here we detect the beginning and ends of escape exempt blocks, and
     // reclassify as UNESCAPED, any tokens that appear in the middle.
     if (inEscapeExemptBlock) {
-      if (token.type != HtmlTokenType.SERVERCODE) {
+      if (type != HtmlTokenType.SERVERCODE) {
         // classify RCDATA as text since it can contain entities
-        token = reclassify(
+        token = HtmlToken.reclassify(
             token, (this.textEscapingMode == HtmlTextEscapingMode.RCDATA
                     ? HtmlTokenType.TEXT
                     : HtmlTokenType.UNESCAPED));
       }
     } else {
-      switch (token.type) {
+      switch (type) {
         case TAGBEGIN:
           {
-            String canonTagName = canonicalElementName(
-                token.start + 1, token.end);
-            if (HtmlTextEscapingMode.isTagFollowedByLiteralContent(
-                    canonTagName)) {
-              this.escapeExemptTagName = canonTagName;
-              this.textEscapingMode = HtmlTextEscapingMode.getModeForTag(
-                  canonTagName);
+            int start = HtmlToken.start(token) + 1;
+            int end = HtmlToken.end(token);
+            // Most tags are not followed by literal content, so avoid
+            // copying out their names.
+            if (HtmlTextEscapingMode.mayBeTagFollowedByLiteralContent(
+                    input, start, end)) {
+              String canonTagName = canonicalElementName(start, end);
+              if (HtmlTextEscapingMode.isTagFollowedByLiteralContent(
+                      canonTagName)) {
+                this.escapeExemptTagName = canonTagName;
+                this.textEscapingMode = HtmlTextEscapingMode.getModeForTag(
+                    canonTagName);
+              }
             }
             break;
           }
@@ -482,7 +764,8 @@ final class HtmlInputSplitter extends AbstractTokenStream {
     ;
   }
 
-  private HtmlToken lastNonIgnorable = null;
+  /** True if the last token that was not IGNORABLE was an {@code =}. */
+  private boolean lastNonIgnorableIsEq;
   /**
    * Breaks the character stream into tokens.
    * This method returns a stream of tokens such that each token starts where
@@ -493,35 +776,48 @@ final class HtmlInputSplitter extends AbstractTokenStream {
    *
    * <p>Later passes are responsible for throwing away useless tokens.
    */
-  private HtmlToken parseToken() {
+  private long parseToken() {
     int start = offset;
     int limit = input.length();
-    if (start == limit) { return null; }
+    if (start == limit) {
+      starved = !endOfInput;
+      return HtmlToken.NONE;
+    }
 
     int end = start + 1;
     HtmlTokenType type;
+    // True if the token ends with a character that ends it regardless of what
+    // follows, so that it is complete even if it ends at limit.
+    boolean terminated = false;
+    // True if the token is text only because limit cut short what might be
+    // markup like "</" or "<!-".
+    boolean mayBeMarkup = false;
 
     char ch = input.charAt(start);
     if (inTag) {
       if ('>' == ch) {
         type = HtmlTokenType.TAGEND;
         inTag = false;
+        terminated = true;
       } else if ('/' == ch) {
         if (end != limit && '>' == input.charAt(end)) {
           type = HtmlTokenType.TAGEND;
           inTag = false;
+          terminated = true;
           ++end;
         } else {
           type = HtmlTokenType.TEXT;
         }
       } else if ('=' == ch) {
         type = HtmlTokenType.TEXT;
+        terminated = true;
       } else if ('"' == ch || '\'' == ch) {
         type = HtmlTokenType.QSTRING;
         int delim = ch;
         for (; end < limit; ++end) {
           if (input.charAt(end) == delim) {
             ++end;
+            terminated = true;
             break;
           }
         }
@@ -530,8 +826,7 @@ final class HtmlInputSplitter extends AbstractTokenStream {
         for (; end < limit; ++end) {
           ch = input.charAt(end);
           // End a text chunk before />
-          if ((lastNonIgnorable == null
-               || !lastNonIgnorable.tokenInContextMatches(input, "="))
+          if (!lastNonIgnorableIsEq
               && '/' == ch && end + 1 < limit
               && '>' == input.charAt(end + 1)) {
             break;
@@ -609,6 +904,10 @@ final class HtmlInputSplitter extends AbstractTokenStream {
                     if (this.inEscapeExemptBlock
                         && '/' == input.charAt(start + 1)
                         && textEscapingMode != HtmlTextEscapingMode.PLAIN_TEXT
+                        && end - (start + 2) == escapeExemptTagName.length()
+                        && Strings.regionMatchesIgnoreCase(
+                            input, start + 2, escapeExemptTagName, 0,
+                            end - (start + 2))
                         && canonicalElementName(start + 2, end)
                             .equals(escapeExemptTagName)) {
                       this.inEscapeExemptBlock = false;
@@ -699,7 +998,10 @@ final class HtmlInputSplitter extends AbstractTokenStream {
                       "Unexpectedly DONE while lexing HTML token stream");
               }
               ++end;
-              if (State.DONE == state) { break; }
+              if (State.DONE == state) {
+                terminated = true;
+                break;
+              }
             }
             if (end == limit) {
               switch (state) {
@@ -723,6 +1025,7 @@ final class HtmlInputSplitter extends AbstractTokenStream {
                   break;
                 default:
                   type = HtmlTokenType.TEXT;
+                  mayBeMarkup = true;
                   break;
               }
             }
@@ -737,23 +1040,79 @@ final class HtmlInputSplitter extends AbstractTokenStream {
       type = HtmlTokenType.TEXT;
     }
 
+    if (end == limit && !terminated && !endOfInput) {
+      // The token might continue into input that has not been received yet.
+      // Text outside tags can be split since the lexer's client treats a run
+      // of text tokens the same as one big one, which lets us avoid holding
+      // large text nodes in memory all at once.
+      int split = !inTag && type == HtmlTokenType.TEXT && !mayBeMarkup
+          ? safeTextSplit(start, limit) : -1;
+      if (split < 0) {
+        starved = true;
+        return HtmlToken.NONE;
+      }
+      end = split;
+    }
+
     offset = end;
-    HtmlToken result = HtmlToken.instance(start, end, type);
-    if (type != HtmlTokenType.IGNORABLE) { lastNonIgnorable = result; }
-    return result;
+    if (type != HtmlTokenType.IGNORABLE) {
+      lastNonIgnorableIsEq = end - start == 1 && '=' == input.charAt(start);
+    }
+    return HtmlToken.instance(start, end, type);
+  }
+
+  /**
+   * The greatest index between start and limit exclusive at which text may be
+   * split into two text nodes whose decoded forms concatenate to that of the
+   * whole and which do not change how the tag balancer treats inter-element
+   * whitespace, or -1 if there is none.
+   * <p>
+   * We split before a character that cannot start an entity or decode to a
+   * space, and that has no unterminated character reference within
+   * {@link HtmlEntities#LONGEST_ENTITY_NAME} chars before it, so no
+   * character reference or surrogate pair straddles the split, and the
+   * second part does not start with space.
+   * Splitting between non-space chars lets long runs of text without
+   * spaces be split too.
+   */
+  private int safeTextSplit(int start, int limit) {
+    for (int i = limit; --i > start;) {
+      char ch = input.charAt(i);
+      if (ch > ' ' && ch != '&' && !Character.isSurrogate(ch)
+          && (ch & 0xfffe) != 0xfffe
+          && !mayContinueCharacterReference(start, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * True if the char at i could be part of, or change how the decoder
+   * treats, a character reference that starts at an {@code &} between start
+   * and i that is not terminated by a {@code ;}.
+   */
+  private boolean mayContinueCharacterReference(int start, int i) {
+    int min = Math.max(start, i - HtmlEntities.LONGEST_ENTITY_NAME);
+    for (int j = i; --j >= min;) {
+      char ch = input.charAt(j);
+      if (ch == ';') {
+        // No character reference spans a semicolon.
+        return false;
+      } else if (ch == '&') {
+        return true;
+      }
+    }
+    return false;
   }
 
   private String canonicalElementName(int start, int end) {
-    return HtmlLexer.canonicalElementName(input.substring(start, end));
+    return HtmlLexer.canonicalElementName(input, start, end);
   }
 
   private static boolean isIdentStart(char ch) {
     return ch >= 'A' && ch <= 'z' && (ch <= 'Z' || ch >= 'a');
   }
-
-  static HtmlToken reclassify(HtmlToken token, HtmlTokenType type) {
-    return HtmlToken.instance(token.start, token.end, type);
-  }
 }
 
 
@@ -763,20 +1122,31 @@ final class HtmlInputSplitter extends AbstractTokenStream {
  * @author Mike Samuel (mikesamuel@gmail.com)
  */
 abstract class AbstractTokenStream implements TokenStream {
-  private HtmlToken tok;
+  private long tok = HtmlToken.NONE;
 
   public final boolean hasNext() {
-    if (tok == null) { tok = produce(); }
-    return tok != null;
+    if (tok == HtmlToken.NONE) { tok = produce(); }
+    return tok != HtmlToken.NONE;
   }
 
-  public HtmlToken next() {
-    if (this.tok == null) { this.tok = produce(); }
-    HtmlToken t = this.tok;
-    if (t == null) { throw new NoSuchElementException(); }
-    this.tok = null;
+  public long next() {
+    if (this.tok == HtmlToken.NONE) { this.tok = produce(); }
+    long t = this.tok;
+    if (t == HtmlToken.NONE) { throw new NoSuchElementException(); }
+    this.tok = HtmlToken.NONE;
     return t;
   }
 
-  protected abstract HtmlToken produce();
+  /** The next token, or {@link HtmlToken#NONE} if there is none. */
+  protected abstract long produce();
+
+  /** Forgets any token produced by {@link #hasNext} but not yet consumed. */
+  final void discardPending() {
+    this.tok = HtmlToken.NONE;
+  }
+
+  /** True if a token produced by {@link #hasNext} has not been consumed. */
+  final boolean hasPending() {
+    return this.tok != HtmlToken.NONE;
+  }
 }
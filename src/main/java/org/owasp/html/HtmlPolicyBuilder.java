@@ -202,7 +202,9 @@ public class HtmlPolicyBuilder {
       HtmlStreamEventProcessor.Processors.IDENTITY;
   private HtmlStreamEventProcessor preprocessor =
       HtmlStreamEventProcessor.Processors.IDENTITY;
+  private SanitizerBudget budget = SanitizerBudget.UNLIMITED;
   private CssSchema stylingPolicySchema = null;
+  private long maxCachedStyleChars = StylingPolicy.DEFAULT_MAX_CACHED_CHARS;
   private AttributePolicy styleUrlPolicy =
       AttributePolicy.REJECT_ALL_ATTRIBUTE_POLICY;
   private Set<String> extraRelsForLinks;
@@ -544,6 +546,27 @@ public class HtmlPolicyBuilder {
     return this;
   }
 
+  /**
+   * Bounds the chars in style attribute values and their sanitized forms
+   * that the {@link #allowStyling() styling} policy remembers so that values
+   * which repeat need not be parsed again.
+   * Defaults to 64K chars.
+   * Nothing is remembered if a policy passed to
+   * {@link #allowUrlsInStyles} is not {@linkplain AttributePolicy#isPure pure}.
+   *
+   * @param maxCachedChars zero to not remember any style values.
+   * @see PolicyFactory#styleCacheHitCount
+   */
+  public HtmlPolicyBuilder withStyleCache(long maxCachedChars) {
+    if (maxCachedChars < 0) {
+      throw new IllegalArgumentException(
+          "maxCachedChars=" + maxCachedChars);
+    }
+    invalidateCompiledState();
+    this.maxCachedStyleChars = maxCachedChars;
+    return this;
+  }
+
   /**
    * Allow URLs in CSS styles.
    * For example,
@@ -591,6 +614,18 @@ public class HtmlPolicyBuilder {
     return this;
   }
 
+  /**
+   * Limits the resources that each call to the resulting factory's
+   * convenience methods, like {@link PolicyFactory#sanitize(String)}, may use.
+   * If called more than once, the lesser of each limit applies.
+   *
+   * @see PolicyFactory#withBudget
+   */
+  public HtmlPolicyBuilder withBudget(SanitizerBudget newBudget) {
+    this.budget = this.budget.and(newBudget);
+    return this;
+  }
+
   /**
    * Maps attribute names that need extra handling to producers of those
    * extra guards.
@@ -628,6 +663,12 @@ public class HtmlPolicyBuilder {
         }
         final AttributePolicy styleUrlPolicyFinal = AttributePolicy.Util.join(
             intermediates.styleUrlPolicy, intermediates.urlAttributePolicy);
+        // Sanitized styles include the output of the style URL policy, so
+        // they may only be remembered if that policy is pure.
+        long maxCachedChars =
+            styleUrlPolicyFinal == AttributePolicy.REJECT_ALL_ATTRIBUTE_POLICY
+            || styleUrlPolicyFinal.isPure()
+            ? intermediates.maxCachedStyleChars : 0;
         return new StylingPolicy(
             intermediates.cssSchema,
             new Function<String, String>() {
@@ -636,7 +677,8 @@ public class HtmlPolicyBuilder {
                     "img", "src",
                     url != null ? url : "about:invalid");
               }
-            });
+            },
+            maxCachedChars);
       }
 
     });
@@ -699,7 +741,7 @@ public class HtmlPolicyBuilder {
     return new PolicyFactory(
         compiled.compiledPolicies, Collections.unmodifiableSet(textContainerSetBuilder),
         Map.copyOf(compiled.globalAttrPolicies),
-        preprocessor, postprocessor);
+        preprocessor, postprocessor, budget);
   }
 
   // Speed up subsequent builds by caching the compiled policies.
@@ -772,7 +814,8 @@ public class HtmlPolicyBuilder {
 
       Set<String> toGuard = new HashSet<>(ATTRIBUTE_GUARDS.keySet());
       AttributeGuardIntermediates intermediates = new AttributeGuardIntermediates(
-          urlAttributePolicy, this.styleUrlPolicy, this.stylingPolicySchema);
+          urlAttributePolicy, this.styleUrlPolicy, this.stylingPolicySchema,
+          this.maxCachedStyleChars);
       for (Map.Entry<String, AttributeGuardMaker> e : ATTRIBUTE_GUARDS.entrySet()) {
         String attributeName = e.getKey();
         if (globalAttrPolicies.containsKey(attributeName)) {
@@ -889,6 +932,17 @@ public class HtmlPolicyBuilder {
       return this;
     }
 
+    /**
+     * Like {@link #matching(AttributePolicy)} but declares that attrPolicy
+     * is {@linkplain AttributePolicy#isPure pure} even if it does not say so
+     * itself, as is the case for a lambda, so that its results may be cached.
+     */
+    public AttributeBuilder matchingPure(AttributePolicy attrPolicy) {
+      return matching(attrPolicy.isPure()
+          ? attrPolicy
+          : new PureAttributePolicy(attrPolicy));
+    }
+
     /**
      * Restrict the values allowed by later {@code allow*} calls to those
      * matching the pattern.
@@ -901,6 +955,11 @@ public class HtmlPolicyBuilder {
             String elementName, String attributeName, String value) {
           return pattern.matcher(value).matches() ? value : null;
         }
+
+        @Override
+        public boolean isPure() {
+          return true;
+        }
       });
     }
 
@@ -948,6 +1007,11 @@ public class HtmlPolicyBuilder {
               : uncanonValue;
           return allowed.contains(value) ? value : null;
         }
+
+        @Override
+        public boolean isPure() {
+          return true;
+        }
       });
     }
 
@@ -987,6 +1051,25 @@ public class HtmlPolicyBuilder {
     }
   }
 
+  /** Vouches for the purity of a policy that does not declare it itself. */
+  private static final class PureAttributePolicy implements AttributePolicy {
+    final AttributePolicy policy;
+
+    PureAttributePolicy(AttributePolicy policy) {
+      this.policy = policy;
+    }
+
+    public @Nullable String apply(
+        String elementName, String attributeName, String value) {
+      return policy.apply(elementName, attributeName, value);
+    }
+
+    @Override
+    public boolean isPure() {
+      return true;
+    }
+  }
+
 
   private static final class RelsOnLinksPolicy
       implements ElementPolicy.JoinableElementPolicy {
@@ -1142,13 +1225,16 @@ final class AttributeGuardIntermediates {
   final AttributePolicy urlAttributePolicy;
   final AttributePolicy styleUrlPolicy;
   final CssSchema cssSchema;
+  final long maxCachedStyleChars;
 
   AttributeGuardIntermediates(
       AttributePolicy urlAttributePolicy,
       AttributePolicy styleUrlPolicy,
-      CssSchema cssSchema) {
+      CssSchema cssSchema,
+      long maxCachedStyleChars) {
     this.urlAttributePolicy = urlAttributePolicy;
     this.styleUrlPolicy = styleUrlPolicy;
     this.cssSchema = cssSchema;
+    this.maxCachedStyleChars = maxCachedStyleChars;
   }
 }
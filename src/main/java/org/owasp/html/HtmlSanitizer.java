@@ -28,8 +28,11 @@
 
 package org.owasp.html;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.List;
+import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 
 /**
@@ -127,57 +130,324 @@ public final class HtmlSanitizer {
   public static void sanitize(
       @Nullable String html, final Policy policy,
       HtmlStreamEventProcessor preprocessor) {
-    String htmlContent = html != null ? html : "";
+    sanitize((CharSequence) (html != null ? html : ""), policy, preprocessor);
+  }
 
+  /**
+   * Sanitizes the given HTML by applying the given policy to it.
+   * <p>
+   * Unlike {@link #sanitize(String, Policy)}, the caller need not copy the
+   * HTML into a string, so this is suited to content that is already in a
+   * {@link CharBuffer} or {@link StringBuilder}.
+   * Only those parts of the input that reach the policy are copied out.
+   * html must not change during this call.
+   *
+   * @param html A snippet of HTML to sanitize.
+   * @param policy The Policy that will receive events based on the tokens in
+   *     HTML.
+   */
+  public static void sanitize(CharSequence html, final Policy policy) {
+    sanitize(html, policy, HtmlStreamEventProcessor.Processors.IDENTITY);
+  }
+
+  /**
+   * Sanitizes the given HTML by applying the given policy to it.
+   *
+   * @param html A snippet of HTML to sanitize.
+   * @param policy The Policy that will receive events based on the tokens in
+   *     HTML.
+   * @param preprocessor A processor that may wrap the policy to reinterpret
+   *     parse events.
+   * @see #sanitize(CharSequence, Policy)
+   */
+  public static void sanitize(
+      CharSequence html, final Policy policy,
+      HtmlStreamEventProcessor preprocessor) {
+    sanitize(html, policy, preprocessor, null);
+  }
+
+  /**
+   * @param budget if not null, limits the resources used.
+   *     html must already have been counted against it via
+   *     {@link BudgetTracker#admitInput(CharSequence)}.
+   */
+  static void sanitize(
+      CharSequence html, final Policy policy,
+      HtmlStreamEventProcessor preprocessor, @Nullable BudgetTracker budget) {
     HtmlStreamEventReceiver receiver = initializePolicy(policy, preprocessor);
+    AttributeFilter attributeFilter = attributeFilter(policy, preprocessor);
+    TextFilter textFilter = textFilter(policy, preprocessor);
+
+    if (html.length() > HtmlToken.MAX_INPUT_LENGTH) {
+      // Too long for the lexer to represent offsets into, so lex it through
+      // a window instead.
+      IncrementalHtmlSanitizer sanitizer = new IncrementalHtmlSanitizer(
+          receiver, attributeFilter, textFilter,
+          new HtmlInputWindow(DEFAULT_INPUT_WINDOW_SIZE), budget);
+      sanitizer.feed(html, html.length());
+      sanitizer.finish();
+      return;
+    }
 
     receiver.openDocument();
 
-    HtmlLexer lexer = new HtmlLexer(htmlContent);
-    // Use a linked list so that policies can use Iterator.remove() in an O(1)
-    // way.
-    LinkedList<String> attrs = new LinkedList<>();
-    while (lexer.hasNext()) {
-      HtmlToken token = lexer.next();
-      switch (token.type) {
+    HtmlLexer lexer = new HtmlLexer(html, true);
+    emitEvents(
+        html, lexer, receiver, attributeFilter, textFilter,
+        new AttributeList(), budget);
+
+    receiver.closeDocument();
+  }
+
+  /**
+   * Sanitizes the given HTML like
+   * {@link #sanitize(CharSequence, Policy, HtmlStreamEventProcessor)}, but
+   * lexes parts of long documents on other threads.
+   * <p>
+   * Events reach the policy on this thread and in the same order as when
+   * sanitizing serially, so the policy need not be thread-safe and the output
+   * is the same.  This only pays off for documents of hundreds of kilobytes
+   * or more.
+   *
+   * @param html A snippet of HTML to sanitize.  Must not change during this
+   *     call.
+   * @param policy The Policy that will receive events based on the tokens in
+   *     HTML.
+   * @param preprocessor A processor that may wrap the policy to reinterpret
+   *     parse events.
+   * @param executor runs tasks that lex parts of html.
+   */
+  public static void sanitizeInParallel(
+      CharSequence html, final Policy policy,
+      HtmlStreamEventProcessor preprocessor, Executor executor) {
+    sanitizeInParallel(
+        html, policy, preprocessor, executor,
+        ParallelHtmlSanitizer.DEFAULT_CHUNK_LENGTH,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  static void sanitizeInParallel(
+      CharSequence html, final Policy policy,
+      HtmlStreamEventProcessor preprocessor, Executor executor,
+      int chunkLength, int parallelism) {
+    if (html.length() > HtmlToken.MAX_INPUT_LENGTH
+        || html.length() <= chunkLength || parallelism <= 1) {
+      sanitize(html, policy, preprocessor);
+      return;
+    }
+    ParallelHtmlSanitizer.sanitize(
+        html, initializePolicy(policy, preprocessor),
+        attributeFilter(policy, preprocessor),
+        textFilter(policy, preprocessor),
+        executor, chunkLength, parallelism);
+  }
+
+  /**
+   * Sanitizes the HTML in the given range of a char array by applying the
+   * given policy to it.
+   * This is convenient for callers that hold content in pooled buffers.
+   *
+   * @param html holds the HTML to sanitize at
+   *     {@code html[offset:offset+length]}.
+   *     Must not change during this call.
+   * @param policy The Policy that will receive events based on the tokens in
+   *     HTML.
+   * @param preprocessor A processor that may wrap the policy to reinterpret
+   *     parse events.
+   * @see #sanitize(CharSequence, Policy)
+   */
+  public static void sanitize(
+      char[] html, int offset, int length, final Policy policy,
+      HtmlStreamEventProcessor preprocessor) {
+    sanitize(CharBuffer.wrap(html, offset, length), policy, preprocessor);
+  }
+
+  /**
+   * Sanitizes HTML read from the given reader by applying the given policy to
+   * it.
+   *
+   * <p>
+   * Unlike {@link #sanitize(String, Policy)}, this does not require the
+   * whole document in memory.  Only a window of the input is held, and that
+   * window only grows when a single tag, comment, or similar construct does
+   * not fit.  Runs of text may be delivered to the policy in several
+   * {@link Policy#text} calls.
+   *
+   * @param html read until exhausted, but not closed.
+   * @param policy The Policy that will receive events based on the tokens in
+   *     HTML.
+   */
+  public static void sanitize(Reader html, final Policy policy)
+      throws IOException {
+    sanitize(html, policy, HtmlStreamEventProcessor.Processors.IDENTITY);
+  }
+
+  /**
+   * Sanitizes HTML read from the given reader by applying the given policy to
+   * it.
+   *
+   * @param html read until exhausted, but not closed.
+   * @param policy The Policy that will receive events based on the tokens in
+   *     HTML.
+   * @param preprocessor A processor that may wrap the policy to reinterpret
+   *     parse events.
+   * @see #sanitize(Reader, Policy)
+   */
+  public static void sanitize(
+      Reader html, final Policy policy,
+      HtmlStreamEventProcessor preprocessor) throws IOException {
+    sanitize(
+        html, policy, preprocessor,
+        new HtmlInputWindow(DEFAULT_INPUT_WINDOW_SIZE));
+  }
+
+  /** The initial size of the window used to sanitize a Reader. */
+  static final int DEFAULT_INPUT_WINDOW_SIZE = 8192;
+
+  static void sanitize(
+      Reader html, final Policy policy,
+      HtmlStreamEventProcessor preprocessor, HtmlInputWindow input)
+      throws IOException {
+    sanitize(html, policy, preprocessor, input, null);
+  }
+
+  static void sanitize(
+      Reader html, final Policy policy,
+      HtmlStreamEventProcessor preprocessor, HtmlInputWindow input,
+      @Nullable BudgetTracker budget)
+      throws IOException {
+    IncrementalHtmlSanitizer sanitizer = new IncrementalHtmlSanitizer(
+        initializePolicy(policy, preprocessor),
+        attributeFilter(policy, preprocessor),
+        textFilter(policy, preprocessor), input, budget);
+    if (budget != null) {
+      html = budget.countInput(html);
+    }
+    while (sanitizer.feed(html)) {
+      // Keep reading until html is exhausted.
+    }
+    sanitizer.finish();
+  }
+
+  /**
+   * Dispatches events to receiver for the tokens produced by lexer.
+   *
+   * @return true if all of the input was consumed, or false if the lexer
+   *     starved for input.  In the latter case, events have been dispatched
+   *     for every construct before {@link HtmlLexer#markedOffset} and none
+   *     after, and the lexer has been reset so that lexing can resume there
+   *     once more input has been received.
+   * @param attributeFilter if not null, used to skip attributes that the
+   *     policy would discard.
+   * @param textFilter if not null, used to skip the content of elements like
+   *     script when the policy would discard it.
+   * @param budget if not null, checked before each token.  Once exhausted,
+   *     no further events are dispatched and this returns true as if the
+   *     input had all been consumed.
+   */
+  static boolean emitEvents(
+      CharSequence htmlContent, HtmlLexer lexer,
+      HtmlStreamEventReceiver receiver,
+      @Nullable AttributeFilter attributeFilter,
+      @Nullable TextFilter textFilter,
+      AttributeList attrs, @Nullable BudgetTracker budget) {
+    tokenLoop:
+    while (true) {
+      // The content of elements like script is one run of text, possibly
+      // split by server code which we ignore, so if the policy would drop
+      // text now, it would drop all of that content.
+      if (textFilter != null && lexer.isInEscapeExemptContent()
+          && textFilter.isDiscardingText()) {
+        lexer.skipEscapeExemptContent();
+      }
+      // Remember where this construct starts so that, if it turns out to
+      // extend past the input received so far, we can lex it again once more
+      // input is available.
+      lexer.mark();
+      if (!lexer.hasNext()) { break; }
+      if (budget != null && !budget.admitToken()) { return true; }
+      long token = lexer.next();
+      HtmlTokenType type = HtmlToken.type(token);
+      switch (type) {
         case TEXT:
-          receiver.text(
-              Encoding.decodeHtml(htmlContent.substring(token.start, token.end), false));
-          break;
-        case UNESCAPED:
-          receiver.text(Encoding.stripBannedCodeunits(
-              htmlContent.substring(token.start, token.end)));
+        case UNESCAPED: {
+          int start = HtmlToken.start(token);
+          int end = HtmlToken.end(token);
+          String text = type == HtmlTokenType.TEXT
+              ? Encoding.decodeHtml(htmlContent, start, end, false)
+              : Encoding.stripBannedCodeunits(htmlContent, start, end);
+          if (lexer.isStarved()
+              && TagBalancingHtmlStreamEventReceiver
+                 .isInterElementWhitespace(text)) {
+            // The tag balancer drops some whitespace-only text, so wait to see
+            // what follows.  A text token that is a prefix of a run of text
+            // is otherwise fine.
+            break tokenLoop;
+          }
+          receiver.text(text);
           break;
+        }
         case TAGBEGIN:
-          if (htmlContent.charAt(token.start + 1) == '/') {  // A close tag.
-            receiver.closeTag(HtmlLexer.canonicalElementName(
-                htmlContent.substring(token.start + 2, token.end)));
-            while (lexer.hasNext()
-                   && lexer.next().type != HtmlTokenType.TAGEND) {
-              // skip tokens until we see a ">"
+          int tokenStart = HtmlToken.start(token);
+          int tokenEnd = HtmlToken.end(token);
+          if (htmlContent.charAt(tokenStart + 1) == '/') {  // A close tag.
+            String elementName = HtmlLexer.canonicalElementName(
+                htmlContent, tokenStart + 2, tokenEnd);
+            while (lexer.hasNext()) {
+              if (budget != null && !budget.admitToken()) { return true; }
+              if (HtmlToken.type(lexer.next()) == HtmlTokenType.TAGEND) {
+                break;
+              }
             }
+            if (lexer.isStarved()) { break tokenLoop; }
+            receiver.closeTag(elementName);
           } else {
+            String elementName = HtmlLexer.canonicalElementName(
+                htmlContent, tokenStart + 1, tokenEnd);
             attrs.clear();
 
             boolean attrsReadyForName = true;
+            // True if the last attribute name was skipped, so its value
+            // should be too.
+            boolean skippingAttr = false;
             tagBody:
             while (lexer.hasNext()) {
-              HtmlToken tagBodyToken = lexer.next();
-              switch (tagBodyToken.type) {
+              // An unfinished tag is dropped.
+              if (budget != null && !budget.admitToken()) { return true; }
+              long tagBodyToken = lexer.next();
+              switch (HtmlToken.type(tagBodyToken)) {
                 case ATTRNAME:
                   if (!attrsReadyForName) {
                     // Last attribute added was valueless.
-                    attrs.add(attrs.getLast());
+                    if (!skippingAttr) { attrs.add(attrs.getLast()); }
                   } else {
                     attrsReadyForName = false;
                   }
-                  attrs.add(HtmlLexer.canonicalAttributeName(
-                      htmlContent.substring(tagBodyToken.start, tagBodyToken.end)));
+                  String attrName = HtmlLexer.canonicalAttributeName(
+                      htmlContent, HtmlToken.start(tagBodyToken),
+                      HtmlToken.end(tagBodyToken));
+                  skippingAttr = (attributeFilter != null
+                                  && !attributeFilter.mayKeepAttribute(
+                                      elementName, attrName))
+                      || (budget != null
+                          && !budget.admitAttribute(attrs.size() / 2));
+                  if (!skippingAttr) { attrs.add(attrName); }
                   break;
                 case ATTRVALUE:
-                  String attributeContentRaw =
-                          stripQuotes(htmlContent.substring(tagBodyToken.start, tagBodyToken.end));
-                  attrs.add(Encoding.decodeHtml(attributeContentRaw, true));
+                  if (!skippingAttr) {
+                    long attributeContentRaw =
+                        stripQuotes(htmlContent, tagBodyToken);
+                    int valueStart = HtmlToken.start(attributeContentRaw);
+                    int valueEnd = HtmlToken.end(attributeContentRaw);
+                    if (budget != null
+                        && !budget.admitAttributeValue(valueEnd - valueStart)) {
+                      // Drop the name added above.
+                      attrs.remove(attrs.size() - 1);
+                    } else {
+                      attrs.add(Encoding.decodeHtml(
+                          htmlContent, valueStart, valueEnd, true));
+                    }
+                  }
                   attrsReadyForName = true;
                   break;
                 case TAGEND:
@@ -186,13 +456,11 @@ public final class HtmlSanitizer {
                   // Just drop anything not recognized
               }
             }
-            if (!attrsReadyForName) {
+            if (lexer.isStarved()) { break tokenLoop; }
+            if (!attrsReadyForName && !skippingAttr) {
               attrs.add(attrs.getLast());
             }
-            receiver.openTag(
-                HtmlLexer.canonicalElementName(
-                    htmlContent.substring(token.start + 1, token.end)),
-                attrs);
+            receiver.openTag(elementName, attrs);
           }
           break;
         default:
@@ -202,29 +470,58 @@ public final class HtmlSanitizer {
       }
     }
 
-    receiver.closeDocument();
+    if (lexer.isStarved()) {
+      lexer.reset();
+      return false;
+    }
+    return true;
   }
 
-  private static String stripQuotes(String encodedAttributeValue) {
-    int n = encodedAttributeValue.length();
-    if (n > 0) {
-      char last = encodedAttributeValue.charAt(n - 1);
+  /**
+   * The token spanning the encoded attribute value without any quotes.
+   */
+  private static long stripQuotes(CharSequence htmlContent, long token) {
+    int start = HtmlToken.start(token);
+    int end = HtmlToken.end(token);
+    if (end > start) {
+      char last = htmlContent.charAt(end - 1);
       if (last == '"' || last == '\'') {
-        int start = 0;
-        if (n != 1 && last == encodedAttributeValue.charAt(0)) {
-          start = 1;
+        if (end - start != 1 && last == htmlContent.charAt(start)) {
+          ++start;
         } else {
           // Browsers deal with missing left quotes : <img src=foo.png">
           // but generally do not deal with missing right : <img src="foo.png>
         }
-        return encodedAttributeValue.substring(start, n - 1);
+        return HtmlToken.instance(start, end - 1, HtmlToken.type(token));
       }
     }
-    return encodedAttributeValue;
+    return token;
+  }
+
+
+  /**
+   * The filter to use to skip attributes that policy will discard, or null if
+   * none can safely be skipped.
+   */
+  static @Nullable AttributeFilter attributeFilter(
+      Policy policy, HtmlStreamEventProcessor preprocessor) {
+    return preprocessor == HtmlStreamEventProcessor.Processors.IDENTITY
+        && policy instanceof AttributeFilter
+        ? (AttributeFilter) policy : null;
   }
 
+  /**
+   * The filter to use to skip text that policy will discard, or null if
+   * none can safely be skipped.
+   */
+  static @Nullable TextFilter textFilter(
+      Policy policy, HtmlStreamEventProcessor preprocessor) {
+    return preprocessor == HtmlStreamEventProcessor.Processors.IDENTITY
+        && policy instanceof TextFilter
+        ? (TextFilter) policy : null;
+  }
 
-  private static HtmlStreamEventReceiver initializePolicy(
+  static HtmlStreamEventReceiver initializePolicy(
       Policy policy, HtmlStreamEventProcessor preprocessor) {
     TagBalancingHtmlStreamEventReceiver balancer
         = new TagBalancingHtmlStreamEventReceiver(policy);
@@ -13,6 +13,16 @@ public interface HtmlStreamEventProcessor {
    */
   HtmlStreamEventReceiver wrap(HtmlStreamEventReceiver sink);
 
+  /**
+   * True if the receivers this wraps emit the same events whenever they
+   * receive the same events, so that sanitized output may be cached.
+   * Processors that consult clocks, counters or other outside state should
+   * return false.
+   */
+  default boolean isDeterministic() {
+    return true;
+  }
+
   /** */
   public static final class Processors {
     /**
@@ -44,6 +54,10 @@ public interface HtmlStreamEventProcessor {
           return g.wrap(f.wrap(sink));
         }
         @Override
+        public boolean isDeterministic() {
+          return g.isDeterministic() && f.isDeterministic();
+        }
+        @Override
         public String toString() {
           return "(" + g + " \u2218 " + f + ")";
         }
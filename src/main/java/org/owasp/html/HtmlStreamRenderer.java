@@ -124,6 +124,11 @@ public class HtmlStreamRenderer implements HtmlStreamEventReceiver {
   public final void openDocument() throws IllegalStateException {
     if (open) { throw new IllegalStateException(); }
     open = true;
+    // Forget anything left over from a previous document.
+    lastTagOpened = null;
+    pendingUnescaped = null;
+    escapingMode = HtmlTextEscapingMode.PCDATA;
+    foreignContentDepth = 0;
   }
 
   public final void closeDocument() throws IllegalStateException {
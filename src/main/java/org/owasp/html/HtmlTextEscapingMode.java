@@ -28,6 +28,8 @@
 
 package org.owasp.html;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -152,6 +154,35 @@ public enum HtmlTextEscapingMode {
     return mode != PCDATA && mode != VOID;
   }
 
+  /**
+   * False if no tag whose name is in the given range of s ignoring case could
+   * be followed by literal content.
+   * This lets the lexer avoid copying out most tag names.
+   */
+  static boolean mayBeTagFollowedByLiteralContent(
+      CharSequence s, int start, int end) {
+    int n = end - start;
+    for (String name : LITERAL_CONTENT_TAG_NAMES) {
+      if (name.length() == n
+          && Strings.regionMatchesIgnoreCase(s, start, name, 0, n)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final String[] LITERAL_CONTENT_TAG_NAMES;
+  static {
+    List<String> names = new ArrayList<>();
+    for (Map.Entry<String, HtmlTextEscapingMode> e
+         : ESCAPING_MODES.entrySet()) {
+      if (e.getValue() != PCDATA && e.getValue() != VOID) {
+        names.add(e.getKey());
+      }
+    }
+    LITERAL_CONTENT_TAG_NAMES = names.toArray(new String[0]);
+  }
+
   /**
    * True iff the tag cannot contain any content -- will an HTML parser consider
    * the element to have ended immediately after the start tag.
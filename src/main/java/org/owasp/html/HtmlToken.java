@@ -25,30 +25,71 @@
 // LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
 // ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
 // POSSIBILITY OF SUCH DAMAGE.
-
 package org.owasp.html;
 
-import javax.annotation.concurrent.Immutable;
-
-@Immutable
+/**
+ * Tokens are packed into a {@code long} so that lexing a document does not
+ * allocate an object per token.
+ * <p>
+ * The low 4 bits hold the ordinal of the {@link HtmlTokenType}, the next 30
+ * the end offset, and the high 30 the start offset.
+ * Offsets are indices into the lexer's input, so input may have at most
+ * {@link #MAX_INPUT_LENGTH} characters.
+ */
 final class HtmlToken {
-  final int start;
-  final int end;
-  final HtmlTokenType type;
+  /** Stands in for a token when there is none, as in an empty stream. */
+  static final long NONE = -1L;
+
+  /** The maximum length of input whose tokens can be represented. */
+  static final int MAX_INPUT_LENGTH = (1 << 30) - 1;
+
+  private static final int TYPE_BITS = 4;
+  private static final int END_SHIFT = TYPE_BITS;
+  private static final int START_SHIFT = END_SHIFT + 30;
+  private static final long TYPE_MASK = (1L << TYPE_BITS) - 1;
 
-  static HtmlToken instance(int start, int end, HtmlTokenType type) {
-    return new HtmlToken(start, end, type);
+  private static final HtmlTokenType[] TYPES = HtmlTokenType.values();
+
+  static long instance(int start, int end, HtmlTokenType type) {
+    return ((long) start << START_SHIFT) | ((long) end << END_SHIFT)
+        | type.ordinal();
   }
 
-  boolean tokenInContextMatches(String context, String match) {
-    int n = end - start;
-    if (n != match.length()) { return false; }
-    return context.regionMatches(start, match, 0, n);
+  static int start(long token) {
+    return (int) (token >>> START_SHIFT);
+  }
+
+  static int end(long token) {
+    return (int) (token >>> END_SHIFT) & MAX_INPUT_LENGTH;
   }
 
-  private HtmlToken(int start, int end, HtmlTokenType type) {
-    this.start = start;
-    this.end = end;
-    this.type = type;
+  static HtmlTokenType type(long token) {
+    return TYPES[(int) (token & TYPE_MASK)];
   }
+
+  /** A token with the same range as token but of the given type. */
+  static long reclassify(long token, HtmlTokenType type) {
+    return (token & ~TYPE_MASK) | type.ordinal();
+  }
+
+  /**
+   * The token that spans the same characters as token after the first delta
+   * characters of its input have been removed.
+   */
+  static long shift(long token, int delta) {
+    return instance(start(token) - delta, end(token) - delta, type(token));
+  }
+
+  static boolean tokenInContextMatches(
+      long token, CharSequence context, String match) {
+    int start = start(token);
+    int n = end(token) - start;
+    if (n != match.length()) { return false; }
+    for (int i = 0; i < n; ++i) {
+      if (context.charAt(start + i) != match.charAt(i)) { return false; }
+    }
+    return true;
+  }
+
+  private HtmlToken() { /* uninstantiable */ }
 }
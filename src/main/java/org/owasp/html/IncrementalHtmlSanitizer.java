@@ -0,0 +1,180 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Sanitizes HTML that arrives in chunks, as from a network connection,
+ * dispatching events for each chunk as soon as it is received instead of
+ * waiting for the whole document.
+ *
+ * <pre>
+ * IncrementalHtmlSanitizer s = policyFactory.incrementalSanitizer(out);
+ * for (CharSequence chunk : chunks) {
+ *   s.feed(chunk);
+ * }
+ * s.finish();
+ * </pre>
+ *
+ * The lexer and policy state, including the set of open elements known to the
+ * tag balancer, is carried from one chunk to the next, so chunk boundaries may
+ * fall anywhere, even inside a tag or character reference.  Only a bounded
+ * window of input is held between calls; it grows only when a single tag,
+ * comment, or similar construct does not fit.
+ * Runs of text may be delivered to the policy in several
+ * {@link HtmlSanitizer.Policy#text} calls.
+ */
+@NotThreadSafe
+public final class IncrementalHtmlSanitizer {
+  private final HtmlStreamEventReceiver receiver;
+  private final @Nullable AttributeFilter attributeFilter;
+  private final @Nullable TextFilter textFilter;
+  private final HtmlInputWindow input;
+  private final HtmlLexer lexer;
+  private final AttributeList attrs = new AttributeList();
+  private final @Nullable BudgetTracker budget;
+  private boolean finished;
+
+  /**
+   * @param policy The Policy that will receive events based on the tokens in
+   *     the HTML.
+   */
+  public static IncrementalHtmlSanitizer create(HtmlSanitizer.Policy policy) {
+    return create(policy, HtmlStreamEventProcessor.Processors.IDENTITY);
+  }
+
+  /**
+   * @param policy The Policy that will receive events based on the tokens in
+   *     the HTML.
+   * @param preprocessor A processor that may wrap the policy to reinterpret
+   *     parse events.
+   */
+  public static IncrementalHtmlSanitizer create(
+      HtmlSanitizer.Policy policy, HtmlStreamEventProcessor preprocessor) {
+    return new IncrementalHtmlSanitizer(
+        HtmlSanitizer.initializePolicy(policy, preprocessor),
+        HtmlSanitizer.attributeFilter(policy, preprocessor),
+        HtmlSanitizer.textFilter(policy, preprocessor),
+        new HtmlInputWindow(HtmlSanitizer.DEFAULT_INPUT_WINDOW_SIZE), null);
+  }
+
+  static IncrementalHtmlSanitizer create(
+      HtmlSanitizer.Policy policy, HtmlStreamEventProcessor preprocessor,
+      @Nullable BudgetTracker budget) {
+    return new IncrementalHtmlSanitizer(
+        HtmlSanitizer.initializePolicy(policy, preprocessor),
+        HtmlSanitizer.attributeFilter(policy, preprocessor),
+        HtmlSanitizer.textFilter(policy, preprocessor),
+        new HtmlInputWindow(HtmlSanitizer.DEFAULT_INPUT_WINDOW_SIZE), budget);
+  }
+
+  IncrementalHtmlSanitizer(
+      HtmlStreamEventReceiver receiver,
+      @Nullable AttributeFilter attributeFilter,
+      @Nullable TextFilter textFilter, HtmlInputWindow input,
+      @Nullable BudgetTracker budget) {
+    this.receiver = receiver;
+    this.attributeFilter = attributeFilter;
+    this.textFilter = textFilter;
+    this.input = input;
+    this.budget = budget;
+    this.lexer = new HtmlLexer(input, false);
+    receiver.openDocument();
+  }
+
+  /**
+   * Sanitizes the next chunk of the document.
+   * Events are dispatched for every construct that is complete, so the policy
+   * sees everything up to the last tag or comment that ends in chunk.
+   *
+   * @throws IllegalStateException if {@link #finish} has been called.
+   */
+  public void feed(CharSequence chunk) {
+    if (finished) { throw new IllegalStateException(); }
+    int n = chunk.length();
+    feed(chunk, budget != null ? budget.admitInput(n) : n);
+  }
+
+  /**
+   * Sanitizes chunk[0:n] which has already been counted against any budget.
+   */
+  void feed(CharSequence chunk, int n) {
+    for (int pos = 0; pos < n;) {
+      if (budget != null && budget.isExhausted()) {
+        // Do not buffer input that will not be lexed.
+        return;
+      }
+      pos += input.fill(chunk, pos, n);
+      emitEvents();
+    }
+  }
+
+  /**
+   * Reads once from in and sanitizes what was read.
+   * @return false if in is exhausted.
+   */
+  boolean feed(Reader in) throws IOException {
+    if (finished) { throw new IllegalStateException(); }
+    if ((budget != null && budget.isExhausted()) || input.fill(in) < 0) {
+      return false;
+    }
+    emitEvents();
+    return true;
+  }
+
+  /**
+   * Signals the end of the document so that any constructs left open by the
+   * chunks fed are dispatched and open elements are closed.
+   * Has no effect if already called.
+   */
+  public void finish() {
+    if (finished) { return; }
+    finished = true;
+    lexer.setEndOfInput();
+    HtmlSanitizer.emitEvents(
+        input, lexer, receiver, attributeFilter, textFilter, attrs, budget);
+    receiver.closeDocument();
+  }
+
+  private void emitEvents() {
+    if (!HtmlSanitizer.emitEvents(
+        input, lexer, receiver, attributeFilter, textFilter, attrs, budget)) {
+      // Everything before the construct the lexer stopped on has been
+      // dispatched so it can be dropped.
+      int n = lexer.markedOffset();
+      input.discard(n);
+      lexer.shift(n);
+    }
+  }
+}
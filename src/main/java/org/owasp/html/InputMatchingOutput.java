@@ -0,0 +1,126 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Receives the output of sanitizing a string without copying the longest
+ * prefix of output that matches that string, so that content which is
+ * already clean can be returned as is.
+ */
+@NotThreadSafe
+final class InputMatchingOutput implements Appendable, TrimmableOutput {
+  private final String input;
+  /** If true, append throws {@link Mismatch} instead of copying. */
+  private final boolean stopAtMismatch;
+  /** The length of input's prefix that output matches while sb is null. */
+  private int matched;
+  /** The output once it differs from input. */
+  private @Nullable StringBuilder sb;
+
+  InputMatchingOutput(String input, boolean stopAtMismatch) {
+    this.input = input;
+    this.stopAtMismatch = stopAtMismatch;
+  }
+
+  public InputMatchingOutput append(CharSequence csq) {
+    return append(csq, 0, csq.length());
+  }
+
+  public InputMatchingOutput append(CharSequence csq, int start, int end) {
+    if (sb == null) {
+      int n = input.length();
+      int i = start;
+      int pos = matched;
+      while (i < end && pos < n && csq.charAt(i) == input.charAt(pos)) {
+        ++i;
+        ++pos;
+      }
+      matched = pos;
+      if (i == end) { return this; }
+      diverge();
+      start = i;
+    }
+    sb.append(csq, start, end);
+    return this;
+  }
+
+  public InputMatchingOutput append(char c) {
+    if (sb == null) {
+      if (matched < input.length() && input.charAt(matched) == c) {
+        ++matched;
+        return this;
+      }
+      diverge();
+    }
+    sb.append(c);
+    return this;
+  }
+
+  public boolean dropLastIf(char ch) {
+    if (sb == null) {
+      if (matched != 0 && input.charAt(matched - 1) == ch) {
+        // The output is still a prefix of the input, just a shorter one.
+        --matched;
+        return true;
+      }
+      return false;
+    }
+    return TrimmableOutput.dropLastIf(sb, ch);
+  }
+
+  private void diverge() {
+    if (stopAtMismatch) { throw Mismatch.INSTANCE; }
+    sb = new StringBuilder(input.length() + 16);
+    sb.append(input, 0, matched);
+  }
+
+  /** True if all output so far was exactly the input. */
+  boolean matchesInput() {
+    return sb == null && matched == input.length();
+  }
+
+  @Override
+  public String toString() {
+    if (sb != null) { return sb.toString(); }
+    return matched == input.length() ? input : input.substring(0, matched);
+  }
+
+  /** Raised to abandon sanitizing once output is known to differ. */
+  static final class Mismatch extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    static final Mismatch INSTANCE = new Mismatch();
+
+    private Mismatch() {
+      super("output differs from input", null, false, false);
+    }
+  }
+}
@@ -55,6 +55,14 @@ final class JoinedAttributePolicy implements AttributePolicy {
     return value;
   }
 
+  @Override
+  public boolean isPure() {
+    for (AttributePolicy p : policies) {
+      if (!p.isPure()) { return false; }
+    }
+    return true;
+  }
+
   @Override
   public boolean equals(Object o) {
     return o != null && this.getClass() == o.getClass()
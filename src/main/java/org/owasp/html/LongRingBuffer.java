@@ -0,0 +1,136 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A deque of longs backed by a circular array, used for lexer lookahead.
+ * <p>
+ * All operations are O(1) and, once the buffer has reached the size needed by
+ * the input, none allocate.  The capacity is a power of two so that indices
+ * wrap with a mask instead of a division.
+ */
+@NotThreadSafe
+final class LongRingBuffer {
+  private long[] contents;
+  /** The index in contents of the first element. */
+  private int left;
+  private int size;
+
+  /** @param capacity the number of elements held before growing. */
+  LongRingBuffer(int capacity) {
+    int n = 1;
+    while (n < capacity) { n <<= 1; }
+    this.contents = new long[n];
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** The i-th element from the front. */
+  long get(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("" + i);
+    }
+    return contents[(left + i) & (contents.length - 1)];
+  }
+
+  void set(int i, long value) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("" + i);
+    }
+    contents[(left + i) & (contents.length - 1)] = value;
+  }
+
+  void addLast(long value) {
+    makeSpace();
+    contents[(left + size) & (contents.length - 1)] = value;
+    ++size;
+  }
+
+  void addFirst(long value) {
+    makeSpace();
+    left = (left - 1) & (contents.length - 1);
+    contents[left] = value;
+    ++size;
+  }
+
+  long removeFirst() {
+    if (size == 0) { throw new IndexOutOfBoundsException("empty"); }
+    long value = contents[left];
+    left = (left + 1) & (contents.length - 1);
+    --size;
+    return value;
+  }
+
+  void clear() {
+    left = size = 0;
+  }
+
+  /** Replaces this buffer's content with that of other. */
+  void copyFrom(LongRingBuffer other) {
+    if (contents.length < other.size) {
+      contents = new long[other.contents.length];
+    }
+    for (int i = 0; i < other.size; ++i) {
+      contents[i] = other.get(i);
+    }
+    left = 0;
+    size = other.size;
+  }
+
+  private void makeSpace() {
+    int bufsize = contents.length;
+    if (size == bufsize) {
+      // Unwrap so that left is 0 in the new array.
+      long[] newContents = new long[bufsize * 2];
+      int nBeforeEnd = bufsize - left;
+      System.arraycopy(contents, left, newContents, 0, nBeforeEnd);
+      System.arraycopy(contents, 0, newContents, nBeforeEnd, left);
+      contents = newContents;
+      left = 0;
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (int i = 0; i < size; ++i) {
+      if (i != 0) { sb.append(", "); }
+      sb.append(get(i));
+    }
+    return sb.append(']').toString();
+  }
+}
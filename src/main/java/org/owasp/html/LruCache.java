@@ -0,0 +1,188 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A map from recently used keys to values that stays within a bound on the
+ * total weight of its entries.
+ * <p>
+ * The cache is split into stripes, each a least-recently-used map under its
+ * own lock, so threads looking up different keys rarely contend.
+ * Keys are compared with equals, and hash maps with comparable keys like
+ * strings degrade to trees when hashes collide, so crafted keys cannot
+ * return another key's value or make lookups slow.
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of values which must not be null.
+ */
+@ThreadSafe
+final class LruCache<K, V> {
+  private static final int N_STRIPES = 16;
+
+  /** Computes how much an entry counts against the bound. */
+  interface Weigher<K, V> {
+    long weigh(K key, V value);
+  }
+
+  private final Weigher<? super K, ? super V> weigher;
+  private final Stripe<K, V>[] stripes;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param maxWeight a bound on the total weight of entries.  Each stripe
+   *     gets an equal share so an entry heavier than that share is never
+   *     cached.
+   */
+  LruCache(long maxWeight, Weigher<? super K, ? super V> weigher) {
+    if (maxWeight < 0) {
+      throw new IllegalArgumentException("maxWeight=" + maxWeight);
+    }
+    this.weigher = weigher;
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Stripe<K, V>[] newStripes = new Stripe[N_STRIPES];
+    for (int i = 0; i < N_STRIPES; ++i) {
+      newStripes[i] = new Stripe<>(maxWeight / N_STRIPES);
+    }
+    this.stripes = newStripes;
+  }
+
+  /** The value for key, or null if there is none, counting a hit or miss. */
+  @Nullable V get(K key) {
+    V value = stripeFor(key).get(key);
+    if (value != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return value;
+  }
+
+  /**
+   * Adds an entry unless it is too heavy or key already has a value, evicting
+   * least recently used entries as needed to stay within bounds.
+   */
+  void put(K key, V value) {
+    long weight = weigher.weigh(key, value);
+    evictions.add(stripeFor(key).put(key, value, weight, weigher));
+  }
+
+  /** The count of lookups that found a value. */
+  long hitCount() {
+    return hits.sum();
+  }
+
+  /** The count of lookups that found no value. */
+  long missCount() {
+    return misses.sum();
+  }
+
+  /** The count of entries dropped to stay within the bound. */
+  long evictionCount() {
+    return evictions.sum();
+  }
+
+  /** The total weight of the entries. */
+  long weight() {
+    long total = 0;
+    for (Stripe<K, V> stripe : stripes) {
+      total += stripe.weight();
+    }
+    return total;
+  }
+
+  /** Drops all entries but keeps the counts. */
+  void clear() {
+    for (Stripe<K, V> stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  private Stripe<K, V> stripeFor(K key) {
+    int h = key.hashCode();
+    // Spread high bits down since hash codes of short strings vary mostly
+    // in the low bits.
+    h ^= h >>> 16;
+    return stripes[h & (N_STRIPES - 1)];
+  }
+
+  private static final class Stripe<K, V> {
+    private final long maxWeight;
+    @GuardedBy("this")
+    private long weight;
+    /** Iterates from least to most recently used. */
+    @GuardedBy("this")
+    private final LinkedHashMap<K, V> entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    Stripe(long maxWeight) {
+      this.maxWeight = maxWeight;
+    }
+
+    synchronized @Nullable V get(K key) {
+      return entries.get(key);
+    }
+
+    /** Adds an entry and returns the count of entries evicted. */
+    synchronized int put(
+        K key, V value, long valueWeight,
+        Weigher<? super K, ? super V> weigher) {
+      // Another thread may have raced to compute the same value.
+      if (valueWeight > maxWeight || entries.containsKey(key)) { return 0; }
+      entries.put(key, value);
+      weight += valueWeight;
+      int nEvicted = 0;
+      for (Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+           weight > maxWeight; ++nEvicted) {
+        Map.Entry<K, V> e = it.next();
+        weight -= weigher.weigh(e.getKey(), e.getValue());
+        it.remove();
+      }
+      return nEvicted;
+    }
+
+    synchronized long weight() {
+      return weight;
+    }
+
+    synchronized void clear() {
+      entries.clear();
+      weight = 0;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Wraps a {@link AttributePolicy#isPure pure} attribute policy to remember
+ * its results in a cache shared by all the memoized policies of one
+ * {@link PolicyFactory}.
+ * Since a factory has one policy per element and attribute name, the key
+ * need not identify the policy.
+ */
+@ThreadSafe
+final class MemoizedAttributePolicy implements AttributePolicy {
+  /** Stands in for a null result in the cache. */
+  private static final String REJECTED = new String("");
+
+  static final LruCache.Weigher<Key, String> WEIGHER =
+      new LruCache.Weigher<Key, String>() {
+        public long weigh(Key key, String result) {
+          // Element and attribute names are shared with the policy tables.
+          return (long) key.value.length()
+              + (result != key.value ? result.length() : 0);
+        }
+      };
+
+  final AttributePolicy policy;
+  private final LruCache<Key, String> cache;
+
+  MemoizedAttributePolicy(
+      AttributePolicy policy, LruCache<Key, String> cache) {
+    this.policy = policy;
+    this.cache = cache;
+  }
+
+  public @Nullable String apply(
+      String elementName, String attributeName, String value) {
+    Key key = new Key(elementName, attributeName, value);
+    String result = cache.get(key);
+    if (result == null) {
+      result = policy.apply(elementName, attributeName, value);
+      if (result == null) { result = REJECTED; }
+      cache.put(key, result);
+    }
+    return result != REJECTED ? result : null;
+  }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
+  /**
+   * The arguments to a call to {@link AttributePolicy#apply}.
+   * Keys are comparable so that hash maps can still find them quickly when
+   * values are crafted to have colliding hash codes.
+   */
+  static final class Key implements Comparable<Key> {
+    final String elementName;
+    final String attributeName;
+    final String value;
+    private final int hashCode;
+
+    Key(String elementName, String attributeName, String value) {
+      this.elementName = elementName;
+      this.attributeName = attributeName;
+      this.value = value;
+      this.hashCode = value.hashCode()
+          + 31 * (attributeName.hashCode() + 31 * elementName.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) { return false; }
+      Key that = (Key) o;
+      return hashCode == that.hashCode
+          && value.equals(that.value)
+          && attributeName.equals(that.attributeName)
+          && elementName.equals(that.elementName);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    public int compareTo(Key that) {
+      int delta = value.compareTo(that.value);
+      if (delta == 0) {
+        delta = attributeName.compareTo(that.attributeName);
+        if (delta == 0) {
+          delta = elementName.compareTo(that.elementName);
+        }
+      }
+      return delta;
+    }
+  }
+}
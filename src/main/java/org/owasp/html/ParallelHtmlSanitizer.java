@@ -0,0 +1,264 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * Sanitizes a long document using several threads for
+ * {@link HtmlSanitizer#sanitizeInParallel}.
+ * <p>
+ * The document is cut into chunks at {@code <} characters that could start
+ * tags, and the chunks are lexed in parallel, each as if lexing started
+ * there.  That is wrong when a cut falls in a comment, a script, or an
+ * attribute value, so the lexer for the chunk before a cut only stops there
+ * if it is in the state that lexing starts in.  Otherwise it carries on to a
+ * later cut, and the chunks it passes over are discarded.
+ * <p>
+ * Lexing, decoding, and skipping attributes that the policy would drop
+ * happen in parallel, but the events for each chunk reach the tag balancer
+ * and policy on the calling thread and in document order, so the balancer's
+ * open element stack carries across cuts and the output is the same as when
+ * sanitizing serially.
+ */
+final class ParallelHtmlSanitizer {
+
+  /**
+   * The default approximate length of the chunks lexed in parallel.
+   * Long enough that handing a chunk to another thread costs little in
+   * comparison to lexing it.
+   */
+  static final int DEFAULT_CHUNK_LENGTH = 1 << 16;
+
+  /**
+   * Dispatches events to receiver for html as
+   * {@link HtmlSanitizer#emitEvents} would, bracketed by
+   * {@link HtmlStreamEventReceiver#openDocument} and
+   * {@link HtmlStreamEventReceiver#closeDocument}.
+   *
+   * @param attributeFilter as for emitEvents, but used on other threads, so
+   *     it must not depend on the state of the policy.
+   * @param textFilter as for emitEvents.  Only used on this thread.
+   * @param parallelism the number of threads to lex with including this one.
+   */
+  static void sanitize(
+      final CharSequence html, HtmlStreamEventReceiver receiver,
+      @Nullable final AttributeFilter attributeFilter,
+      @Nullable TextFilter textFilter,
+      Executor executor, int chunkLength, int parallelism) {
+    // Chunk k starts at starts[k].
+    final int[] starts = chunkStarts(html, chunkLength);
+    final int nChunks = starts.length;
+    // Nonzero once some thread has started lexing the chunk, or it need not
+    // be lexed.
+    final AtomicIntegerArray claimed = new AtomicIntegerArray(nChunks);
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    final CompletableFuture<RecordedChunk>[] recorded =
+        new CompletableFuture[nChunks];
+    for (int k = 1; k < nChunks; ++k) {
+      recorded[k] = new CompletableFuture<>();
+    }
+
+    // Workers lex chunks ahead of this thread and record their events.
+    final AtomicInteger nextChunk = new AtomicInteger(1);
+    Runnable worker = new Runnable() {
+      public void run() {
+        for (int k; (k = nextChunk.getAndIncrement()) < nChunks;) {
+          if (claimed.compareAndSet(k, 0, 1)) {
+            try {
+              recorded[k].complete(record(html, starts, k, attributeFilter));
+            } catch (RuntimeException | Error ex) {
+              recorded[k].completeExceptionally(ex);
+            }
+          }
+        }
+      }
+    };
+    CompletableFuture<?>[] workers = new CompletableFuture<?>[
+        Math.max(0, Math.min(nChunks - 1, parallelism - 1))];
+    for (int i = 0; i < workers.length; ++i) {
+      workers[i] = CompletableFuture.runAsync(worker, executor);
+    }
+
+    receiver.openDocument();
+    AttributeList attrs = new AttributeList();
+    try {
+      for (int k = 0; k < nChunks;) {
+        int next;
+        if (claimed.compareAndSet(k, 0, 1)) {
+          // No worker has got to it yet, so lex it straight into receiver.
+          HtmlLexer lexer = new HtmlLexer(html, true);
+          lexer.setRange(starts[k], starts, k + 1);
+          HtmlSanitizer.emitEvents(
+              html, lexer, receiver, attributeFilter, textFilter, attrs,
+              null);
+          next = lexer.boundaryReached();
+        } else {
+          RecordedChunk chunk;
+          try {
+            chunk = recorded[k].join();
+          } catch (CompletionException ex) {
+            throw BatchSanitizer.rethrowCause(ex);
+          }
+          chunk.replay(receiver, attrs);
+          next = chunk.boundaryReached;
+        }
+        // Lexing did not stop at the starts of the chunks in between, so
+        // they were lexed from the wrong state.
+        for (int i = k + 1; i < next; ++i) {
+          claimed.set(i, 1);
+        }
+        k = next;
+      }
+    } finally {
+      // Wait for workers to finish the chunks they are on so that none reads
+      // html after this returns.
+      nextChunk.set(nChunks);
+      CompletableFuture.allOf(workers).join();
+    }
+    receiver.closeDocument();
+  }
+
+  /**
+   * The indices at which chunks start: 0, and then the first {@code <}
+   * followed by an ASCII letter at least chunkLength after the last.
+   */
+  static int[] chunkStarts(CharSequence html, int chunkLength) {
+    int n = html.length();
+    int[] starts = new int[Math.min(16, n / chunkLength + 1)];
+    int nStarts = 1;
+    for (int pos = chunkLength; pos + 1 < n;) {
+      if (html.charAt(pos) == '<' && isAsciiLetter(html.charAt(pos + 1))) {
+        if (nStarts == starts.length) {
+          starts = Arrays.copyOf(starts, nStarts * 2);
+        }
+        starts[nStarts++] = pos;
+        pos += chunkLength;
+      } else {
+        ++pos;
+      }
+    }
+    return Arrays.copyOf(starts, nStarts);
+  }
+
+  private static boolean isAsciiLetter(char ch) {
+    return ('a' <= ch && ch <= 'z') || ('A' <= ch && ch <= 'Z');
+  }
+
+  private static RecordedChunk record(
+      CharSequence html, int[] starts, int k,
+      @Nullable AttributeFilter attributeFilter) {
+    HtmlLexer lexer = new HtmlLexer(html, true);
+    lexer.setRange(starts[k], starts, k + 1);
+    RecordedChunk chunk = new RecordedChunk();
+    // Whether the policy discards text depends on the elements open at the
+    // start of the chunk which are not known yet, so no text is skipped.
+    HtmlSanitizer.emitEvents(
+        html, lexer, chunk, attributeFilter, null, new AttributeList(),
+        null);
+    chunk.boundaryReached = lexer.boundaryReached();
+    return chunk;
+  }
+
+  /** The events for one chunk so that they can be dispatched later. */
+  private static final class RecordedChunk
+      implements HtmlStreamEventReceiver {
+    private static final int TEXT = -1;
+    private static final int CLOSE_TAG = -2;
+
+    /**
+     * For each event, {@link #TEXT}, {@link #CLOSE_TAG}, or for an open tag,
+     * the number of attribute names and values.
+     */
+    private final IntVector shapes = new IntVector();
+    /**
+     * The text, element names, and attribute names and values of the events
+     * in order.
+     */
+    private final List<String> strings = new ArrayList<>();
+    /** The index of the chunk at whose start lexing stopped. */
+    int boundaryReached;
+
+    public void openDocument() {
+      // Bracketed by the caller.
+    }
+
+    public void closeDocument() {
+      // Bracketed by the caller.
+    }
+
+    public void openTag(String elementName, List<String> attrs) {
+      shapes.add(attrs.size());
+      strings.add(elementName);
+      strings.addAll(attrs);
+    }
+
+    public void closeTag(String elementName) {
+      shapes.add(CLOSE_TAG);
+      strings.add(elementName);
+    }
+
+    public void text(String text) {
+      shapes.add(TEXT);
+      strings.add(text);
+    }
+
+    void replay(HtmlStreamEventReceiver receiver, AttributeList attrs) {
+      for (int i = 0, j = 0, n = shapes.size(); i < n; ++i) {
+        int shape = shapes.get(i);
+        switch (shape) {
+          case TEXT:
+            receiver.text(strings.get(j++));
+            break;
+          case CLOSE_TAG:
+            receiver.closeTag(strings.get(j++));
+            break;
+          default:
+            String elementName = strings.get(j++);
+            attrs.clear();
+            attrs.addAll(strings.subList(j, j + shape));
+            j += shape;
+            receiver.openTag(elementName, attrs);
+            break;
+        }
+      }
+    }
+  }
+
+  private ParallelHtmlSanitizer() { /* uninstantiable */ }
+}
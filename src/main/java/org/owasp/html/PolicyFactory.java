@@ -28,12 +28,20 @@
 
 package org.owasp.html;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -59,24 +67,93 @@ public final class PolicyFactory
   private final Set<String> textContainers;
   private final HtmlStreamEventProcessor preprocessor;
   private final HtmlStreamEventProcessor postprocessor;
+  /** Compiled from policies and textContainers. */
+  private final ElementAndAttributePolicyTable policyTable;
+  private final SanitizerBudget budget;
+  private final long maxCachedAttributeChars;
 
   PolicyFactory(
       Map<String, ElementAndAttributePolicies> policies,
       Set<String> textContainers,
       Map<String, AttributePolicy> globalAttrPolicies,
       HtmlStreamEventProcessor preprocessor,
-      HtmlStreamEventProcessor postprocessor) {
-    this.policies = policies;
-    this.textContainers = textContainers;
-    this.globalAttrPolicies = globalAttrPolicies;
+      HtmlStreamEventProcessor postprocessor,
+      SanitizerBudget budget) {
+    this(policies, textContainers, globalAttrPolicies, preprocessor,
+         postprocessor, budget, 0);
+  }
+
+  private PolicyFactory(
+      Map<String, ElementAndAttributePolicies> policies,
+      Set<String> textContainers,
+      Map<String, AttributePolicy> globalAttrPolicies,
+      HtmlStreamEventProcessor preprocessor,
+      HtmlStreamEventProcessor postprocessor,
+      SanitizerBudget budget,
+      long maxCachedAttributeChars) {
+    this.policies = Map.copyOf(policies);
+    this.textContainers = Set.copyOf(textContainers);
+    this.globalAttrPolicies = Map.copyOf(globalAttrPolicies);
     this.preprocessor = preprocessor;
     this.postprocessor = postprocessor;
+    // Compile once here so that the policies created by apply can share it.
+    this.policyTable = new ElementAndAttributePolicyTable(
+        this.policies, this.textContainers, maxCachedAttributeChars);
+    this.budget = budget;
+    this.maxCachedAttributeChars = maxCachedAttributeChars;
+  }
+
+  private PolicyFactory(PolicyFactory f, SanitizerBudget budget) {
+    this.policies = f.policies;
+    this.textContainers = f.textContainers;
+    this.globalAttrPolicies = f.globalAttrPolicies;
+    this.preprocessor = f.preprocessor;
+    this.postprocessor = f.postprocessor;
+    this.policyTable = f.policyTable;
+    this.budget = budget;
+    this.maxCachedAttributeChars = f.maxCachedAttributeChars;
+  }
+
+  /**
+   * A factory with the same policy whose convenience methods, like
+   * {@link #sanitize(String)}, limit each call to the given budget.
+   * Policies produced by {@link #apply} are not limited since the budget
+   * is enforced by the lexer that feeds them.
+   */
+  public PolicyFactory withBudget(SanitizerBudget newBudget) {
+    if (newBudget == null) { throw new NullPointerException(); }
+    return new PolicyFactory(this, newBudget);
+  }
+
+  /**
+   * A factory with the same policy whose attribute policies remember their
+   * results for values that repeat, like common {@code class} or
+   * {@code href} values.
+   * Only {@link AttributePolicy#isPure pure} attribute policies are
+   * memoized.
+   * The cache is shared by all sanitizers this factory produces.
+   *
+   * @param maxCachedChars a bound on the total length of the attribute
+   *     values and results remembered, or zero to not remember any.
+   */
+  public PolicyFactory withAttributeCache(long maxCachedChars) {
+    if (maxCachedChars < 0) {
+      throw new IllegalArgumentException("maxCachedChars=" + maxCachedChars);
+    }
+    return new PolicyFactory(
+        policies, textContainers, globalAttrPolicies, preprocessor,
+        postprocessor, budget, maxCachedChars);
+  }
+
+  /** The limits on each call to this factory's convenience methods. */
+  public SanitizerBudget getBudget() {
+    return budget;
   }
 
   /** Produces a sanitizer that emits tokens to {@code out}. */
   public HtmlSanitizer.Policy apply(@Nonnull HtmlStreamEventReceiver out) {
     return new ElementAndAttributePolicyBasedSanitizerPolicy(
-        postprocessor.wrap(out), policies, textContainers);
+        postprocessor.wrap(out), policyTable);
   }
 
   /**
@@ -124,17 +201,387 @@ public final class PolicyFactory
       @Nullable String html,
       @Nullable HtmlChangeListener<CTX> listener, @Nullable CTX context) {
     if (html == null) { return ""; }
-    StringBuilder out = new StringBuilder(html.length());
+    // Already clean content comes back as the same instance without being
+    // copied.
+    InputMatchingOutput out = new InputMatchingOutput(html, false);
+    sanitizeOnto(html, out, listener, context);
+    return out.toString();
+  }
+
+  /**
+   * True if {@link #sanitize(String)} would return html unchanged.
+   * This stops sanitizing at the first difference, so it is cheaper than
+   * comparing the result of sanitize to html.
+   *
+   * @throws BudgetExceededException if this factory's budget fails rather
+   *     than truncates.
+   */
+  public boolean isClean(String html) {
+    InputMatchingOutput out = new InputMatchingOutput(html, true);
+    try {
+      sanitizeOnto(html, out, null, null);
+    } catch (InputMatchingOutput.Mismatch ex) {
+      return false;
+    }
+    return out.matchesInput();
+  }
+
+  private <CTX> void sanitizeOnto(
+      String html, InputMatchingOutput out,
+      @Nullable HtmlChangeListener<CTX> listener, @Nullable CTX context) {
+    if (isMarkupFree(html)) {
+      // Without tags there is nothing for the policy to reject, and the
+      // lexer yields one text token, so skip straight to the renderer's
+      // encoding of that token.
+      out.append(Encoding.encodePcdata(Encoding.decodeHtml(html, false)));
+      return;
+    }
+    BudgetTracker tracker = BudgetTracker.start(budget);
+    CharSequence input = tracker != null ? tracker.admitInput(html) : html;
     HtmlSanitizer.sanitize(
-        html,
+        input,
         apply(
-            HtmlStreamRenderer.create(out, Handler.DO_NOTHING),
+            // InputMatchingOutput does not throw IOExceptions.
+            render(out, Handler.PROPAGATE, tracker),
             listener,
             context),
-        preprocessor);
+        preprocessor, tracker);
+  }
+
+  /**
+   * True if html has no {@code <} so sanitizing it only re-encodes text,
+   * and this factory has no processors or budget that could see the text.
+   */
+  boolean isMarkupFree(String html) {
+    if (preprocessor != HtmlStreamEventProcessor.Processors.IDENTITY
+        || postprocessor != HtmlStreamEventProcessor.Processors.IDENTITY
+        || !budget.isUnlimited()) {
+      return false;
+    }
+    return html.indexOf('<') < 0;
+  }
+
+  /**
+   * A convenience function that sanitizes HTML without first copying it into
+   * a string.
+   * Callers that hold HTML in a {@code char[]} can wrap the range that holds
+   * it using {@link java.nio.CharBuffer#wrap(char[], int, int)}.
+   *
+   * @param html the HTML to sanitize.  Must not change during this call.
+   * @param out receives HTML that complies with this factory's policy.
+   * @throws IOException if appending to out fails.
+   */
+  public void sanitize(CharSequence html, Appendable out) throws IOException {
+    sanitize(html, out, null, null);
+  }
+
+  /**
+   * A convenience function that sanitizes HTML without first copying it into
+   * a string, and reports the names of rejected element and attributes to
+   * listener.
+   * @param html the HTML to sanitize.  Must not change during this call.
+   * @param out receives HTML that complies with this factory's policy.
+   * @param listener if non-null, receives notifications of tags and attributes
+   *     that were rejected by the policy.  This may tie into intrusion
+   *     detection systems.
+   * @param context if {@code (listener != null)} then the context value passed
+   *     with notifications.  This can be used to let the listener know from
+   *     which connection or request the questionable HTML was received.
+   * @throws IOException if appending to out fails.
+   */
+  public <CTX> void sanitize(
+      CharSequence html, Appendable out,
+      @Nullable HtmlChangeListener<CTX> listener, @Nullable CTX context)
+      throws IOException {
+    BudgetTracker tracker = BudgetTracker.start(budget);
+    if (tracker != null) {
+      html = tracker.admitInput(html);
+    }
+    try {
+      HtmlSanitizer.sanitize(
+          html,
+          apply(
+              render(out, RETHROW_UNCHECKED, tracker),
+              listener,
+              context),
+          preprocessor, tracker);
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * A convenience function that sanitizes HTML read from a stream.
+   * Unlike {@link #sanitize(String)}, this holds only a bounded window of the
+   * input in memory, so is suitable for very large documents.
+   *
+   * @param html read until exhausted, but not closed.
+   * @param out receives HTML that complies with this factory's policy.
+   * @throws IOException if reading html or appending to out fails.
+   */
+  public void sanitize(Reader html, Appendable out) throws IOException {
+    sanitize(html, out, null, null);
+  }
+
+  /**
+   * A convenience function that sanitizes HTML read from a stream and reports
+   * the names of rejected element and attributes to listener.
+   * @param html read until exhausted, but not closed.
+   * @param out receives HTML that complies with this factory's policy.
+   * @param listener if non-null, receives notifications of tags and attributes
+   *     that were rejected by the policy.  This may tie into intrusion
+   *     detection systems.
+   * @param context if {@code (listener != null)} then the context value passed
+   *     with notifications.  This can be used to let the listener know from
+   *     which connection or request the questionable HTML was received.
+   * @throws IOException if reading html or appending to out fails.
+   */
+  public <CTX> void sanitize(
+      Reader html, Appendable out,
+      @Nullable HtmlChangeListener<CTX> listener, @Nullable CTX context)
+      throws IOException {
+    BudgetTracker tracker = BudgetTracker.start(budget);
+    try {
+      HtmlSanitizer.sanitize(
+          html,
+          apply(
+              render(out, RETHROW_UNCHECKED, tracker),
+              listener,
+              context),
+          preprocessor,
+          new HtmlInputWindow(HtmlSanitizer.DEFAULT_INPUT_WINDOW_SIZE),
+          tracker);
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  /**
+   * Produces a sanitizer that accepts HTML in chunks and appends the sanitized
+   * form of each chunk to out as soon as possible.
+   * <p>
+   * Any IOException raised by out is rethrown as an
+   * {@link UncheckedIOException}.
+   *
+   * @param out receives HTML that complies with this factory's policy.
+   */
+  public IncrementalHtmlSanitizer incrementalSanitizer(Appendable out) {
+    return incrementalSanitizer(out, null, null);
+  }
+
+  /**
+   * Produces a sanitizer that accepts HTML in chunks, appends the sanitized
+   * form of each chunk to out as soon as possible, and reports the names of
+   * rejected element and attributes to listener.
+   * <p>
+   * Any IOException raised by out is rethrown as an
+   * {@link UncheckedIOException}.
+   *
+   * @param out receives HTML that complies with this factory's policy.
+   * @param listener if non-null, receives notifications of tags and attributes
+   *     that were rejected by the policy.  This may tie into intrusion
+   *     detection systems.
+   * @param context if {@code (listener != null)} then the context value passed
+   *     with notifications.  This can be used to let the listener know from
+   *     which connection or request the questionable HTML was received.
+   */
+  public <CTX> IncrementalHtmlSanitizer incrementalSanitizer(
+      Appendable out,
+      @Nullable HtmlChangeListener<CTX> listener, @Nullable CTX context) {
+    BudgetTracker tracker = BudgetTracker.start(budget);
+    return IncrementalHtmlSanitizer.create(
+        apply(
+            render(out, RETHROW_UNCHECKED, tracker),
+            listener,
+            context),
+        preprocessor, tracker);
+  }
+
+  /**
+   * Produces a session that sanitizes documents one after another with this
+   * factory's policy, reusing buffers between calls.
+   * Sessions are not thread-safe, so hold one per thread.
+   * This is worthwhile when sanitizing many short inputs since then the cost
+   * of setting up a sanitizer for each dominates.
+   */
+  public SanitizerSession newSession() {
+    return new SanitizerSession(this, preprocessor);
+  }
+
+  /**
+   * Produces a sanitizer that remembers the output for recently sanitized
+   * inputs.
+   * This pays off when the same content, like signatures or templated
+   * notifications, is sanitized over and over.
+   *
+   * @param maxCachedChars a bound on the total length of the inputs and
+   *     outputs held by the cache.
+   */
+  public CachingSanitizer cachingSanitizer(long maxCachedChars) {
+    return new CachingSanitizer(this, maxCachedChars);
+  }
+
+  /**
+   * The count of style attribute values whose sanitized form was found among
+   * those remembered by this factory's styling policy.
+   *
+   * @see HtmlPolicyBuilder#withStyleCache
+   */
+  public long styleCacheHitCount() {
+    long n = 0;
+    for (StylingPolicy p : stylingPolicies()) { n += p.hitCount(); }
+    return n;
+  }
+
+  /**
+   * The count of style attribute values that were looked for among those
+   * remembered by this factory's styling policy but not found.
+   *
+   * @see HtmlPolicyBuilder#withStyleCache
+   */
+  public long styleCacheMissCount() {
+    long n = 0;
+    for (StylingPolicy p : stylingPolicies()) { n += p.missCount(); }
+    return n;
+  }
+
+  private Set<StylingPolicy> stylingPolicies() {
+    // StylingPolicy.equals ignores the cache so compare by identity.
+    Set<StylingPolicy> found = Collections.newSetFromMap(
+        new IdentityHashMap<StylingPolicy, Boolean>());
+    for (ElementAndAttributePolicies p : policies.values()) {
+      for (AttributePolicy a : p.attrPolicies.values()) {
+        addStylingPolicies(a, found);
+      }
+    }
+    for (AttributePolicy a : globalAttrPolicies.values()) {
+      addStylingPolicies(a, found);
+    }
+    return found;
+  }
+
+  private static void addStylingPolicies(
+      AttributePolicy p, Set<StylingPolicy> found) {
+    if (p instanceof StylingPolicy) {
+      found.add((StylingPolicy) p);
+    } else if (p instanceof JoinedAttributePolicy) {
+      for (AttributePolicy q : ((JoinedAttributePolicy) p).policies) {
+        addStylingPolicies(q, found);
+      }
+    }
+  }
+
+  /**
+   * True if the output of {@link #sanitize(String)} depends only on its
+   * input, so it may be cached.
+   */
+  boolean isDeterministic() {
+    return preprocessor.isDeterministic() && postprocessor.isDeterministic()
+        // Whether a time limit is reached depends on how busy the machine is.
+        && budget.timeLimitNanos == Long.MAX_VALUE;
+  }
+
+  /**
+   * Sanitizes each of a batch of strings of HTML, spreading the work across
+   * the {@link ForkJoinPool#commonPool() common pool}.
+   *
+   * @param html the strings to sanitize.  Null elements sanitize to the
+   *     empty string as with {@link #sanitize(String)}.
+   * @return an unmodifiable list of the sanitized strings in the same order.
+   */
+  public List<String> sanitizeAll(List<? extends String> html) {
+    return sanitizeAll(html, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sanitizes each of a batch of strings of HTML, spreading the work across
+   * threads provided by executor.
+   * The calling thread also does some of the work and returns once all is
+   * done.
+   *
+   * @param html the strings to sanitize.  Null elements sanitize to the
+   *     empty string as with {@link #sanitize(String)}.
+   * @param executor runs workers, each of which sanitizes a share of html.
+   * @return an unmodifiable list of the sanitized strings in the same order.
+   */
+  public List<String> sanitizeAll(
+      List<? extends String> html, Executor executor) {
+    return BatchSanitizer.sanitizeAll(this, html, executor);
+  }
+
+  /**
+   * Lazily sanitizes each string of HTML in a stream.
+   * The result is parallel, and ordered, exactly when html is, so for
+   * example {@code sanitizeAll(rows.parallel())} spreads work across the
+   * common pool while keeping the order of rows.
+   * Threads reuse sessions so that they need not set up a sanitizer for each
+   * string.
+   *
+   * @param html the strings to sanitize.  Null elements sanitize to the
+   *     empty string as with {@link #sanitize(String)}.
+   */
+  public Stream<String> sanitizeAll(Stream<? extends String> html) {
+    return BatchSanitizer.sanitizeAll(this, html);
+  }
+
+  /**
+   * Sanitizes one long string of HTML, lexing parts of it on threads in the
+   * {@link ForkJoinPool#commonPool() common pool}.
+   *
+   * @return the same as {@link #sanitize(String)}.
+   */
+  public String sanitizeInParallel(@Nullable String html) {
+    return sanitizeInParallel(html, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Sanitizes one long string of HTML, lexing parts of it on threads that
+   * executor provides.
+   * This only pays off for documents of hundreds of kilobytes or more.
+   *
+   * @return the same as {@link #sanitize(String)}.
+   */
+  public String sanitizeInParallel(@Nullable String html, Executor executor) {
+    if (html == null) { return ""; }
+    if (!budget.isUnlimited()) {
+      // The budget is checked as events are dispatched in order, which
+      // parallel lexing would get ahead of.
+      return sanitize(html);
+    }
+    StringBuilder out = new StringBuilder(html.length());
+    HtmlSanitizer.sanitizeInParallel(
+        html,
+        apply(HtmlStreamRenderer.create(out, Handler.DO_NOTHING)),
+        preprocessor, executor);
     return out.toString();
   }
 
+  /**
+   * A renderer that writes to out and, given a tracker, counts what it
+   * renders against the budget.
+   */
+  private static HtmlStreamEventReceiver render(
+      Appendable out, Handler<? super IOException> ioExHandler,
+      @Nullable BudgetTracker tracker) {
+    if (tracker == null) {
+      return HtmlStreamRenderer.create(out, ioExHandler, Handler.DO_NOTHING);
+    }
+    return tracker.countText(tracker.limitOutput(
+        HtmlStreamRenderer.create(
+            tracker.countOutput(out), ioExHandler, Handler.DO_NOTHING)));
+  }
+
+  /**
+   * Lets IOExceptions from the output escape the renderer so they can be
+   * rethrown as checked exceptions.
+   */
+  static final Handler<IOException> RETHROW_UNCHECKED =
+      new Handler<IOException>() {
+        public void handle(IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      };
+
   /**
    * Produces a factory that allows the union of the grants, and intersects
    * policies where they overlap on a particular granted attribute or element
@@ -211,6 +658,8 @@ public final class PolicyFactory
             this.postprocessor, f.postprocessor);
     return new PolicyFactory(
         Collections.unmodifiableMap(builder), allTextContainers, allGlobalAttrPolicies,
-        compositionOfPreprocessors, compositionOfPostprocessors);
+        compositionOfPreprocessors, compositionOfPostprocessors,
+        this.budget.and(f.budget),
+        Math.max(this.maxCachedAttributeChars, f.maxCachedAttributeChars));
   }
 }
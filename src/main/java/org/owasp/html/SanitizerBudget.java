@@ -0,0 +1,251 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Limits on the resources that one sanitize call may use so that callers can
+ * bound latency on untrusted input without running each call on a thread
+ * with a timeout.
+ * <p>
+ * Budgets are immutable.  Start from {@link #UNLIMITED} and tighten:
+ * <pre>
+ * SanitizerBudget budget = SanitizerBudget.UNLIMITED
+ *     .withMaxInputLength(1 &lt;&lt; 20)
+ *     .withTimeLimit(50, TimeUnit.MILLISECONDS);
+ * PolicyFactory policy = Sanitizers.FORMATTING.withBudget(budget);
+ * </pre>
+ * <p>
+ * When a limit is exceeded, the {@link Outcome} decides what happens.
+ * By default the sanitizer {@linkplain Outcome#TRUNCATE truncates}: it stops
+ * consuming input and closes any open elements so the output is still
+ * well-formed.  Limits on single attributes drop just those attributes.
+ * With {@link Outcome#FAIL} a {@link BudgetExceededException} is thrown
+ * instead.
+ *
+ * @see PolicyFactory#withBudget
+ * @see HtmlPolicyBuilder#withBudget
+ */
+@Immutable
+public final class SanitizerBudget {
+
+  /** The resources that a budget limits. */
+  public enum Limit {
+    /** The number of chars of input. */
+    INPUT_LENGTH,
+    /**
+     * The number of chars of output, including the end tags that balance it.
+     */
+    OUTPUT_LENGTH,
+    /**
+     * The number of chars of text content output, not counting markup.
+     */
+    TEXT_LENGTH,
+    /** The number of attributes on a tag that reach the policy. */
+    ATTRIBUTES_PER_TAG,
+    /**
+     * The length of an attribute value in the input, before HTML entities
+     * are decoded.
+     */
+    ATTRIBUTE_VALUE_LENGTH,
+    /**
+     * The number of tokens lexed.  Text runs, tags, and each attribute name
+     * and value are tokens.
+     */
+    TOKENS,
+    /** The wall-clock time since the sanitize call started. */
+    TIME,
+  }
+
+  /** What happens when a limit is exceeded. */
+  public enum Outcome {
+    /**
+     * Stop consuming input, or for the per-attribute limits drop the
+     * attribute, and produce balanced output from what was consumed.
+     */
+    TRUNCATE,
+    /** Throw a {@link BudgetExceededException}. */
+    FAIL,
+  }
+
+  /** A budget with no limits. */
+  public static final SanitizerBudget UNLIMITED = new SanitizerBudget(
+      Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+      Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Outcome.TRUNCATE);
+
+  final int maxInputLength;
+  final long maxOutputLength;
+  final int maxTextLength;
+  final int maxAttributesPerTag;
+  final int maxAttributeValueLength;
+  final long maxTokens;
+  final long timeLimitNanos;
+  final Outcome outcome;
+
+  private SanitizerBudget(
+      int maxInputLength, long maxOutputLength, int maxTextLength,
+      int maxAttributesPerTag, int maxAttributeValueLength, long maxTokens,
+      long timeLimitNanos, Outcome outcome) {
+    this.maxInputLength = maxInputLength;
+    this.maxOutputLength = maxOutputLength;
+    this.maxTextLength = maxTextLength;
+    this.maxAttributesPerTag = maxAttributesPerTag;
+    this.maxAttributeValueLength = maxAttributeValueLength;
+    this.maxTokens = maxTokens;
+    this.timeLimitNanos = timeLimitNanos;
+    this.outcome = outcome;
+  }
+
+  /** A budget like this but allowing at most n chars of input. */
+  public SanitizerBudget withMaxInputLength(int n) {
+    return new SanitizerBudget(
+        nonNegative(n), maxOutputLength, maxTextLength, maxAttributesPerTag,
+        maxAttributeValueLength, maxTokens, timeLimitNanos, outcome);
+  }
+
+  /**
+   * A budget like this but that outputs at most n chars.
+   * When truncating, text that would not fit is cut short, and tags that
+   * would not fit along with the end tags of open elements are dropped.
+   */
+  public SanitizerBudget withMaxOutputLength(long n) {
+    return new SanitizerBudget(
+        maxInputLength, nonNegative(n), maxTextLength, maxAttributesPerTag,
+        maxAttributeValueLength, maxTokens, timeLimitNanos, outcome);
+  }
+
+  /**
+   * A budget like this but that outputs at most n chars of text content.
+   * When truncating, the text that reaches the limit is cut short, and no
+   * further input is consumed, so this suits rendering a preview of a long
+   * document at a cost that scales with the preview rather than the document.
+   */
+  public SanitizerBudget withMaxTextLength(int n) {
+    return new SanitizerBudget(
+        maxInputLength, maxOutputLength, nonNegative(n), maxAttributesPerTag,
+        maxAttributeValueLength, maxTokens, timeLimitNanos, outcome);
+  }
+
+  /** A budget like this but allowing at most n attributes per tag. */
+  public SanitizerBudget withMaxAttributesPerTag(int n) {
+    return new SanitizerBudget(
+        maxInputLength, maxOutputLength, maxTextLength, nonNegative(n),
+        maxAttributeValueLength, maxTokens, timeLimitNanos, outcome);
+  }
+
+  /**
+   * A budget like this but allowing only attribute values of at most n chars
+   * in the input.
+   */
+  public SanitizerBudget withMaxAttributeValueLength(int n) {
+    return new SanitizerBudget(
+        maxInputLength, maxOutputLength, maxTextLength, maxAttributesPerTag,
+        nonNegative(n), maxTokens, timeLimitNanos, outcome);
+  }
+
+  /** A budget like this but that lexes at most n tokens. */
+  public SanitizerBudget withMaxTokens(long n) {
+    return new SanitizerBudget(
+        maxInputLength, maxOutputLength, maxTextLength, maxAttributesPerTag,
+        maxAttributeValueLength, nonNegative(n), timeLimitNanos, outcome);
+  }
+
+  /**
+   * A budget like this but that stops once the given wall-clock time has
+   * passed since the sanitize call started.
+   * The clock is checked every few tokens, so a call may overrun slightly.
+   */
+  public SanitizerBudget withTimeLimit(long duration, TimeUnit unit) {
+    return new SanitizerBudget(
+        maxInputLength, maxOutputLength, maxTextLength, maxAttributesPerTag,
+        maxAttributeValueLength, maxTokens, unit.toNanos(nonNegative(duration)),
+        outcome);
+  }
+
+  /** A budget like this but with the given outcome when exceeded. */
+  public SanitizerBudget withOutcome(Outcome newOutcome) {
+    if (newOutcome == null) { throw new NullPointerException(); }
+    return new SanitizerBudget(
+        maxInputLength, maxOutputLength, maxTextLength, maxAttributesPerTag,
+        maxAttributeValueLength, maxTokens, timeLimitNanos, newOutcome);
+  }
+
+  /**
+   * A budget with the lesser of each limit, that fails if either would.
+   */
+  public SanitizerBudget and(SanitizerBudget b) {
+    if (b == UNLIMITED) { return this; }
+    if (this == UNLIMITED) { return b; }
+    return new SanitizerBudget(
+        Math.min(maxInputLength, b.maxInputLength),
+        Math.min(maxOutputLength, b.maxOutputLength),
+        Math.min(maxTextLength, b.maxTextLength),
+        Math.min(maxAttributesPerTag, b.maxAttributesPerTag),
+        Math.min(maxAttributeValueLength, b.maxAttributeValueLength),
+        Math.min(maxTokens, b.maxTokens),
+        Math.min(timeLimitNanos, b.timeLimitNanos),
+        outcome == Outcome.FAIL ? outcome : b.outcome);
+  }
+
+  /** True if no limit applies. */
+  boolean isUnlimited() {
+    return maxInputLength == Integer.MAX_VALUE
+        && maxOutputLength == Long.MAX_VALUE
+        && maxTextLength == Integer.MAX_VALUE
+        && maxAttributesPerTag == Integer.MAX_VALUE
+        && maxAttributeValueLength == Integer.MAX_VALUE
+        && maxTokens == Long.MAX_VALUE
+        && timeLimitNanos == Long.MAX_VALUE;
+  }
+
+  private static int nonNegative(int n) {
+    if (n < 0) { throw new IllegalArgumentException(Integer.toString(n)); }
+    return n;
+  }
+
+  private static long nonNegative(long n) {
+    if (n < 0) { throw new IllegalArgumentException(Long.toString(n)); }
+    return n;
+  }
+
+  @Override
+  public String toString() {
+    return "SanitizerBudget{maxInputLength=" + maxInputLength
+        + ", maxOutputLength=" + maxOutputLength
+        + ", maxTextLength=" + maxTextLength
+        + ", maxAttributesPerTag=" + maxAttributesPerTag
+        + ", maxAttributeValueLength=" + maxAttributeValueLength
+        + ", maxTokens=" + maxTokens
+        + ", timeLimitNanos=" + timeLimitNanos
+        + ", outcome=" + outcome + "}";
+  }
+}
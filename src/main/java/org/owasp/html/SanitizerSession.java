@@ -0,0 +1,209 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Sanitizes documents one after another with a {@link PolicyFactory}'s
+ * policy, reusing the lexer, tag balancer, policy, renderer and buffers
+ * across calls instead of building them anew for each document.
+ * <p>
+ * For short inputs, like comments, building that pipeline can cost more than
+ * the sanitizing itself.
+ * <p>
+ * A session is not thread-safe.  Hold one per thread, for example in a
+ * {@link ThreadLocal}.  State is reset between documents, so output does not
+ * depend on what was sanitized before.
+ *
+ * @see PolicyFactory#newSession()
+ */
+@NotThreadSafe
+public final class SanitizerSession {
+  /**
+   * Output buffers larger than this are not kept between calls so that a
+   * session does not pin a large buffer after one large document.
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 16;
+
+  private final PolicyFactory factory;
+  private final HtmlStreamEventProcessor preprocessor;
+  private final Output output = new Output();
+  private StringBuilder buffer = new StringBuilder();
+  private final HtmlLexer lexer = new HtmlLexer("", true);
+  private final AttributeList attrs = new AttributeList();
+
+  private HtmlSanitizer.Policy policy;
+  private HtmlStreamEventReceiver receiver;
+  private @Nullable AttributeFilter attributeFilter;
+  private @Nullable TextFilter textFilter;
+  /** Counts text against each call's budget if it limits text. */
+  private @Nullable BudgetTracker.TextCounter textCounter;
+  /** Keeps output within each call's budget if it limits output. */
+  private @Nullable BudgetTracker.OutputLimiter outputLimiter;
+  /**
+   * True if a call did not complete normally so the pipeline may be in the
+   * middle of a document.
+   */
+  private boolean needsRebuild = true;
+
+  SanitizerSession(
+      PolicyFactory factory, HtmlStreamEventProcessor preprocessor) {
+    this.factory = factory;
+    this.preprocessor = preprocessor;
+  }
+
+  /** Like {@link PolicyFactory#sanitize(String)}. */
+  public String sanitize(@Nullable String html) {
+    if (html == null) { return ""; }
+    StringBuilder sb = buffer;
+    sb.setLength(0);
+    output.target = sb;
+    run(html);
+    String result = sb.toString();
+    if (sb.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      buffer = new StringBuilder();
+    }
+    return result;
+  }
+
+  /**
+   * Like {@link PolicyFactory#sanitize(CharSequence, Appendable)}.
+   *
+   * @throws IOException if out raises one.
+   */
+  public void sanitize(CharSequence html, Appendable out) throws IOException {
+    output.target = out;
+    try {
+      run(html);
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  private void run(CharSequence html) {
+    if (needsRebuild) {
+      build();
+    }
+    needsRebuild = true;
+    try {
+      BudgetTracker budget = BudgetTracker.start(factory.getBudget());
+      if (budget != null) {
+        html = budget.admitInput(html);
+        output.target = budget.countOutput(output.target);
+      }
+      if (textCounter != null) {
+        textCounter.budget = budget;
+      }
+      if (outputLimiter != null) {
+        outputLimiter.budget = budget;
+      }
+      if (html.length() > HtmlToken.MAX_INPUT_LENGTH) {
+        HtmlSanitizer.sanitize(html, policy, preprocessor, budget);
+      } else {
+        receiver.openDocument();
+        lexer.restart(html, true);
+        HtmlSanitizer.emitEvents(
+            html, lexer, receiver, attributeFilter, textFilter, attrs,
+            budget);
+        receiver.closeDocument();
+      }
+    } finally {
+      // Do not hold onto the caller's input or output.
+      lexer.restart("", true);
+      attrs.clear();
+      output.target = null;
+      if (textCounter != null) {
+        textCounter.budget = null;
+      }
+      if (outputLimiter != null) {
+        outputLimiter.budget = null;
+      }
+    }
+    needsRebuild = false;
+  }
+
+  private void build() {
+    HtmlStreamEventReceiver renderer = HtmlStreamRenderer.create(
+        output, PolicyFactory.RETHROW_UNCHECKED, Handler.DO_NOTHING);
+    SanitizerBudget budget = factory.getBudget();
+    if (budget.maxOutputLength != Long.MAX_VALUE
+        && budget.outcome == SanitizerBudget.Outcome.TRUNCATE) {
+      outputLimiter = new BudgetTracker.OutputLimiter(renderer);
+      renderer = outputLimiter;
+    }
+    if (budget.maxTextLength != Integer.MAX_VALUE) {
+      textCounter = new BudgetTracker.TextCounter(renderer);
+      renderer = textCounter;
+    }
+    policy = factory.apply(renderer);
+    receiver = HtmlSanitizer.initializePolicy(policy, preprocessor);
+    attributeFilter = HtmlSanitizer.attributeFilter(policy, preprocessor);
+    textFilter = HtmlSanitizer.textFilter(policy, preprocessor);
+  }
+
+  /**
+   * Lets the renderer, which is built once, write to a different Appendable
+   * on each call.
+   */
+  private static final class Output
+      implements Appendable, Flushable, TrimmableOutput {
+    Appendable target;
+
+    public Appendable append(CharSequence csq) throws IOException {
+      target.append(csq);
+      return this;
+    }
+
+    public Appendable append(CharSequence csq, int start, int end)
+        throws IOException {
+      target.append(csq, start, end);
+      return this;
+    }
+
+    public Appendable append(char c) throws IOException {
+      target.append(c);
+      return this;
+    }
+
+    public boolean dropLastIf(char ch) {
+      return TrimmableOutput.dropLastIf(target, ch);
+    }
+
+    public void flush() throws IOException {
+      if (target instanceof Flushable) {
+        ((Flushable) target).flush();
+      }
+    }
+  }
+}
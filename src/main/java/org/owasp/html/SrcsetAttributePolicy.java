@@ -131,4 +131,8 @@ final class SrcsetAttributePolicy implements AttributePolicy {
     return sb.toString();
   }
 
+  @Override
+  public boolean isPure() {
+    return srcPolicy.isPure();
+  }
 }
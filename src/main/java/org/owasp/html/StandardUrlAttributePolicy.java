@@ -73,4 +73,9 @@ final class StandardUrlAttributePolicy implements AttributePolicy {
     return FilterUrlByProtocolAttributePolicy.normalizeUri(url);
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
 }
\ No newline at end of file
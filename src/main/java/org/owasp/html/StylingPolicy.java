@@ -44,17 +44,78 @@ import org.owasp.html.AttributePolicy.JoinableAttributePolicy;
 @TCB
 final class StylingPolicy implements JoinableAttributePolicy {
 
+  /**
+   * The default bound on the chars in style values and their sanitized forms
+   * that each policy remembers.
+   */
+  static final long DEFAULT_MAX_CACHED_CHARS = 1 << 16;
+
+  /** Stands in for a null result in the cache. */
+  private static final String NO_STYLE = new String("");
+
+  private static final LruCache.Weigher<String, String> WEIGHER =
+      new LruCache.Weigher<String, String>() {
+        public long weigh(String style, String sanitized) {
+          return (long) style.length() + sanitized.length();
+        }
+      };
+
   final CssSchema cssSchema;
   final Function<String, String> urlRewriter;
+  /**
+   * Maps raw style values to their sanitized form since the same few values
+   * tend to repeat many times within a document and across documents.
+   * The cache is only as long-lived as this policy so it never outlives the
+   * schema and URL rewriter that produced its values.
+   * Null if this policy remembers nothing.
+   */
+  private final @Nullable LruCache<String, String> cache;
+  final long maxCachedChars;
 
   StylingPolicy(CssSchema cssSchema, Function<String, String> urlRewriter) {
+    this(cssSchema, urlRewriter, DEFAULT_MAX_CACHED_CHARS);
+  }
+
+  /**
+   * @param maxCachedChars bounds the chars in style values and their
+   *     sanitized forms that this policy remembers, or zero to not remember
+   *     any.
+   */
+  StylingPolicy(
+      CssSchema cssSchema, Function<String, String> urlRewriter,
+      long maxCachedChars) {
     this.cssSchema = cssSchema;
     this.urlRewriter = urlRewriter;
+    this.maxCachedChars = maxCachedChars;
+    this.cache = maxCachedChars != 0
+        ? new LruCache<>(maxCachedChars, WEIGHER)
+        : null;
   }
 
   public @Nullable String apply(
       String elementName, String attributeName, String value) {
-    return value != null ? sanitizeCssProperties(value) : null;
+    if (value == null) { return null; }
+    if (cache == null) { return sanitizeCssProperties(value); }
+    String sanitized = cache.get(value);
+    if (sanitized == null) {
+      sanitized = sanitizeCssProperties(value);
+      if (sanitized == null) { sanitized = NO_STYLE; }
+      cache.put(value, sanitized);
+    }
+    return sanitized != NO_STYLE ? sanitized : null;
+  }
+
+  /** The count of style values found among those remembered. */
+  long hitCount() {
+    return cache != null ? cache.hitCount() : 0;
+  }
+
+  /**
+   * The count of style values looked for among those remembered but not
+   * found.
+   */
+  long missCount() {
+    return cache != null ? cache.missCount() : 0;
   }
 
   /**
@@ -274,8 +335,10 @@ final class StylingPolicy implements JoinableAttributePolicy {
       Function<String, String> identity = Function.<String>identity();
       CssSchema cssSchema = null;
       Function<String, String> urlRewriter = identity;
+      long maxCachedChars = 0;
       for (JoinableAttributePolicy p : toJoin) {
         StylingPolicy sp = (StylingPolicy) p;
+        maxCachedChars = Math.max(maxCachedChars, sp.maxCachedChars);
         cssSchema = cssSchema == null
             ? sp.cssSchema : CssSchema.union(cssSchema, sp.cssSchema);
         urlRewriter = urlRewriter.equals(identity)
@@ -283,7 +346,7 @@ final class StylingPolicy implements JoinableAttributePolicy {
             ? sp.urlRewriter
             : urlRewriter.compose(sp.urlRewriter);
       }
-      return new StylingPolicy(cssSchema, urlRewriter);
+      return new StylingPolicy(cssSchema, urlRewriter, maxCachedChars);
     }
 
   }
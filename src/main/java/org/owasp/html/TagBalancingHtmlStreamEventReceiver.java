@@ -29,9 +29,12 @@
 package org.owasp.html;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.owasp.html.HtmlElementTables.HtmlElementNames;
 
 /**
@@ -45,14 +48,34 @@ import org.owasp.html.HtmlElementTables.HtmlElementNames;
 public class TagBalancingHtmlStreamEventReceiver
     implements HtmlStreamEventReceiver {
   private final HtmlStreamEventReceiver underlying;
+  /** underlying if it can use the element indices we compute. */
+  private final @Nullable ElementIndexReceiver indexedUnderlying;
   private int nestingLimit = Integer.MAX_VALUE;
   private final IntVector openElements = new IntVector();
   private final IntVector toResumeInReverse = new IntVector();
   private static final HtmlElementTables METADATA = HtmlElementTables.get();
+  /**
+   * For each entry in openElements, the index of the nearest entry below it
+   * for the same element, or -1.
+   */
+  private final IntVector openElementsBelowSame = new IntVector();
+  /**
+   * By element index, the index in openElements of the innermost such element
+   * or -1 so that looking for an open element need not scan openElements.
+   */
+  private final int[] innermostOpenElements = new int[METADATA.nElementTypes()];
+  /** The indices in openElements of open header elements, innermost last. */
+  private final IntVector openHeaderElements = new IntVector();
+  /**
+   * By scope bit number, the indices in openElements of elements in that
+   * scope, innermost last.
+   */
+  private final IntVector[] openScopeElements = new IntVector[N_SCOPES];
   private static final int UNRECOGNIZED_TAG =
       METADATA.indexForName(HtmlElementNames.CUSTOM_ELEMENT_NAME);
   private static final int A_TAG = METADATA.indexForName("a");
   private static final int BODY_TAG = METADATA.indexForName("body");
+  private static final int SELECT_TAG = METADATA.indexForName("select");
 
   private static final boolean DEBUG = false;
 
@@ -64,6 +87,12 @@ public class TagBalancingHtmlStreamEventReceiver
   public TagBalancingHtmlStreamEventReceiver(
       HtmlStreamEventReceiver underlying) {
     this.underlying = underlying;
+    this.indexedUnderlying = underlying instanceof ElementIndexReceiver
+        ? (ElementIndexReceiver) underlying : null;
+    for (int i = 0; i < N_SCOPES; ++i) {
+      openScopeElements[i] = new IntVector();
+    }
+    Arrays.fill(innermostOpenElements, -1);
   }
 
   /**
@@ -77,16 +106,17 @@ public class TagBalancingHtmlStreamEventReceiver
   }
 
   public void openDocument() {
+    clearOpenElements();
+    toResumeInReverse.clear();
     underlying.openDocument();
   }
 
   public void closeDocument() {
     for (int i = Math.min(nestingLimit, openElements.size()); --i >= 0;) {
       int elIndex = openElements.get(i);
-      String elname = METADATA.canonNameForIndex(elIndex);
-      underlying.closeTag(elname);
+      closeUnderlying(elIndex, METADATA.canonNameForIndex(elIndex));
     }
-    openElements.clear();
+    clearOpenElements();
     toResumeInReverse.clear();
     underlying.closeDocument();
   }
@@ -101,7 +131,7 @@ public class TagBalancingHtmlStreamEventReceiver
     // Treat unrecognized tags as void, but emit closing tags in closeTag().
     if (elIndex == UNRECOGNIZED_TAG) {
       if (openElements.size() < nestingLimit) {
-        underlying.openTag(elementName, attrs);
+        openUnderlying(UNRECOGNIZED_TAG, elementName, attrs);
       }
       return;
     }
@@ -109,10 +139,10 @@ public class TagBalancingHtmlStreamEventReceiver
     prepareForContent(elIndex);
 
     if (openElements.size() < nestingLimit) {
-      underlying.openTag(METADATA.canonNameForIndex(elIndex), attrs);
+      openUnderlying(elIndex, METADATA.canonNameForIndex(elIndex), attrs);
     }
     if (!HtmlTextEscapingMode.isVoidElement(canonElementName)) {
-      openElements.add(elIndex);
+      pushOpenElement(elIndex);
     }
   }
 
@@ -139,8 +169,8 @@ public class TagBalancingHtmlStreamEventReceiver
           String impliedElName = METADATA.canonNameForIndex(
               impliedElIndex);
           attrs.clear();
-          underlying.openTag(impliedElName, attrs);
-          openElements.add(impliedElIndex);
+          openUnderlying(impliedElIndex, impliedElName, attrs);
+          pushOpenElement(impliedElIndex);
           top = impliedElIndex;
           ++nOpen;
         }
@@ -152,15 +182,15 @@ public class TagBalancingHtmlStreamEventReceiver
       // Close all the elements that cannot contain the content to open.
       while (true) {
         boolean canContain = canContain(elIndex, top, nOpen - 1)
-            && !(elIndex == A_TAG
-                 && openElements.lastIndexOf(A_TAG) >= 0);
+            && !(elIndex == A_TAG && innermostOpenElements[A_TAG] >= 0);
         if (canContain) {
           break;
         }
         if (openElements.size() < nestingLimit) {
-          underlying.closeTag(METADATA.canonNameForIndex(top));
+          closeUnderlying(top, METADATA.canonNameForIndex(top));
         }
-        openElements.remove(--nOpen);
+        popOpenElement();
+        --nOpen;
         if (METADATA.resumable(top) && top != elIndex) {
           toResumeInReverse.add(top);
         }
@@ -179,11 +209,11 @@ public class TagBalancingHtmlStreamEventReceiver
           && canContain(elIndex, toResume, nOpen)) {
         toResumeInReverse.removeLast();
         if (openElements.size() < nestingLimit) {
-          underlying.openTag(
-              METADATA.canonNameForIndex(toResume),
+          openUnderlying(
+              toResume, METADATA.canonNameForIndex(toResume),
               new ArrayList<>());
         }
-        openElements.add(toResume);
+        pushOpenElement(toResume);
       } else {
         break;
       }
@@ -219,9 +249,9 @@ public class TagBalancingHtmlStreamEventReceiver
     }
     if (child == HtmlElementTables.TEXT_NODE && hasSpecialTextMode(container)) {
       // If there's a select element on the stack, then we need to be extra careful.
-      int selectElementIndex = METADATA.indexForName("select");
-      for (int i = containerIndexOnStack; --i >= 0;) {
-        if (selectElementIndex == openElements.get(i)) {
+      for (int i = innermostOpenElements[SELECT_TAG]; i >= 0;
+           i = openElementsBelowSame.get(i)) {
+        if (i < containerIndexOnStack) {
           return false;
         }
       }
@@ -252,7 +282,7 @@ public class TagBalancingHtmlStreamEventReceiver
     int elIndex = METADATA.indexForName(canonElementName);
     if (elIndex == UNRECOGNIZED_TAG) {  // Allow unrecognized end tags through.
       if (openElements.size() < nestingLimit) {
-        underlying.closeTag(elementName);
+        closeUnderlying(UNRECOGNIZED_TAG, elementName);
       }
       return;
     }
@@ -263,57 +293,90 @@ public class TagBalancingHtmlStreamEventReceiver
     // #has-an-element-in-the-specific-scope
     int blockingScopes = SCOPE_FOR_END_TAG[elIndex];
 
-    int index = -1;
-    {
-      if (isHeaderElementName(canonElementName)) {
-        // Let any of </h1>, </h2>, ... close other header tags.
-        for (int i = openElements.size(); -- i >= 0;) {
-          int openElementIndex = openElements.get(i);
-          if (isHeaderElement(openElementIndex)) {
-            elIndex = openElementIndex;
-            index = i;
-            // This is a dead store, but not setting is a maintenance hazard.
-            canonElementName = METADATA.canonNameForIndex(openElementIndex);
-            break;
-          }
-          int openElementScope = SCOPES_BY_ELEMENT[openElementIndex];
-          if ((openElementScope & blockingScopes) != 0) {
-            break;
-          }
-        }
-      } else {
-        for (int i = openElements.size(); -- i >= 0;) {
-          int openElementIndex = openElements.get(i);
-          if (openElementIndex == elIndex) {
-            index = i;
-            break;
-          }
-          int openElementScope = SCOPES_BY_ELEMENT[openElementIndex];
-          if ((openElementScope & blockingScopes) != 0) {
-            break;
-          }
-        }
-      }
+    int index;
+    if (isHeaderElementName(canonElementName)) {
+      // Let any of </h1>, </h2>, ... close other header tags.
+      index = openHeaderElements.isEmpty() ? -1 : openHeaderElements.getLast();
+    } else {
+      index = innermostOpenElements[elIndex];
     }
-    if (index < 0) {
+    if (index < 0 || innermostInScopes(blockingScopes) > index) {
       return;  // Don't close unopened tags.
     }
+    elIndex = openElements.get(index);
+    // This is a dead store, but not setting is a maintenance hazard.
+    canonElementName = METADATA.canonNameForIndex(elIndex);
 
     int last = openElements.size();
     // Close all the elements that cannot contain the element to open.
     while (--last > index) {
-      int unclosed = openElements.remove(last);
+      int unclosed = popOpenElement();
       if (last + 1 < nestingLimit) {
-        underlying.closeTag(METADATA.canonNameForIndex(unclosed));
+        closeUnderlying(unclosed, METADATA.canonNameForIndex(unclosed));
       }
       if (METADATA.resumable(unclosed)) {
         toResumeInReverse.add(unclosed);
       }
     }
     if (openElements.size() < nestingLimit) {
-      underlying.closeTag(METADATA.canonNameForIndex(elIndex));
+      closeUnderlying(elIndex, METADATA.canonNameForIndex(elIndex));
+    }
+    popOpenElement();
+  }
+
+  private void pushOpenElement(int elIndex) {
+    int index = openElements.size();
+    openElements.add(elIndex);
+    openElementsBelowSame.add(innermostOpenElements[elIndex]);
+    innermostOpenElements[elIndex] = index;
+    if (isHeaderElement(elIndex)) {
+      openHeaderElements.add(index);
+    }
+    for (int scopes = SCOPES_BY_ELEMENT[elIndex], i = 0; scopes != 0;
+         scopes >>>= 1, ++i) {
+      if ((scopes & 1) != 0) {
+        openScopeElements[i].add(index);
+      }
+    }
+  }
+
+  private int popOpenElement() {
+    int elIndex = openElements.removeLast();
+    innermostOpenElements[elIndex] = openElementsBelowSame.removeLast();
+    if (isHeaderElement(elIndex)) {
+      openHeaderElements.removeLast();
+    }
+    for (int scopes = SCOPES_BY_ELEMENT[elIndex], i = 0; scopes != 0;
+         scopes >>>= 1, ++i) {
+      if ((scopes & 1) != 0) {
+        openScopeElements[i].removeLast();
+      }
+    }
+    return elIndex;
+  }
+
+  private void clearOpenElements() {
+    openElements.clear();
+    openElementsBelowSame.clear();
+    Arrays.fill(innermostOpenElements, -1);
+    openHeaderElements.clear();
+    for (IntVector openScopeElement : openScopeElements) {
+      openScopeElement.clear();
     }
-    openElements.remove(index);
+  }
+
+  /**
+   * The index in openElements of the innermost element in any of the given
+   * scopes or -1 if there is none.
+   */
+  private int innermostInScopes(int scopes) {
+    int innermost = -1;
+    for (int i = 0; scopes != 0; scopes >>>= 1, ++i) {
+      if ((scopes & 1) != 0 && !openScopeElements[i].isEmpty()) {
+        innermost = Math.max(innermost, openScopeElements[i].getLast());
+      }
+    }
+    return innermost;
   }
 
   /**
@@ -361,6 +424,23 @@ public class TagBalancingHtmlStreamEventReceiver
     }
   }
 
+  private void openUnderlying(
+      int elIndex, String elementName, List<String> attrs) {
+    if (indexedUnderlying != null) {
+      indexedUnderlying.openTag(elIndex, elementName, attrs);
+    } else {
+      underlying.openTag(elementName, attrs);
+    }
+  }
+
+  private void closeUnderlying(int elIndex, String elementName) {
+    if (indexedUnderlying != null) {
+      indexedUnderlying.closeTag(elIndex, elementName);
+    } else {
+      underlying.closeTag(elementName);
+    }
+  }
+
   private static boolean isHeaderElement(int elIndex) {
     String canonElementName = METADATA.canonNameForIndex(elIndex);
     return isHeaderElementName(canonElementName);
@@ -383,6 +463,8 @@ public class TagBalancingHtmlStreamEventReceiver
     throw new IllegalArgumentException(name);
   }
 
+  /** The number of scope bits in {@link #SCOPES_BY_ELEMENT}. */
+  private static final int N_SCOPES = 5;
   private static final byte ALL_SCOPES;
   private static final byte[] SCOPES_BY_ELEMENT;
   private static final byte[] SCOPE_FOR_END_TAG;
@@ -29,6 +29,7 @@
 package org.owasp.html;
 
 interface TokenStream {
-  HtmlToken next();
+  /** A token packed as described in {@link HtmlToken}. */
+  long next();
   boolean hasNext();
 }
@@ -0,0 +1,65 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+/**
+ * An output from which {@link Encoding} can retract the last char it wrote,
+ * as when a ZWNJ turns out to precede a vowel that it must not precede.
+ */
+interface TrimmableOutput {
+  /**
+   * Removes the last char of output if it is ch.
+   * @return true if a char was removed.
+   */
+  boolean dropLastIf(char ch);
+
+  /**
+   * Removes the last char of output if it is ch and output is a
+   * {@link StringBuilder} or {@link TrimmableOutput}.
+   * Other outputs are left alone.
+   * @return true if a char was removed.
+   */
+  static boolean dropLastIf(Appendable output, char ch) {
+    if (output instanceof TrimmableOutput) {
+      return ((TrimmableOutput) output).dropLastIf(ch);
+    } else if (output instanceof StringBuilder) {
+      return trim((StringBuilder) output, ch);
+    }
+    return false;
+  }
+
+  private static boolean trim(StringBuilder sb, char ch) {
+    int len = sb.length();
+    if (len != 0 && sb.charAt(len - 1) == ch) {
+      sb.setLength(len - 1);
+      return true;
+    }
+    return false;
+  }
+}
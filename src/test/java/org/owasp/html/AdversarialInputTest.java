@@ -0,0 +1,210 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+/**
+ * Pathological inputs that once made sanitizing take time quadratic in the
+ * input length.
+ * Each shape is sanitized at two sizes and the time per input char compared
+ * so that a regression to O(n**2) fails here rather than in production.
+ */
+@SuppressWarnings("javadoc")
+public final class AdversarialInputTest extends TestCase {
+
+  private static final int SMALL = 1 << 10;
+  private static final int LARGE = 1 << 14;
+
+  private static final PolicyFactory POLICY;
+  static {
+    String[] attributeNames = new String[LARGE];
+    for (int i = 0; i < attributeNames.length; ++i) {
+      attributeNames[i] = attributeName(i);
+    }
+    POLICY = Sanitizers.FORMATTING.and(Sanitizers.BLOCKS)
+        .and(Sanitizers.LINKS).and(Sanitizers.TABLES)
+        .and(new HtmlPolicyBuilder()
+            .allowElements("select", "option", "my-element")
+            .allowAttributes(attributeNames).globally()
+            .allowAttributes("title").globally()
+            .toFactory());
+  }
+
+  /** Makes an input whose size is proportional to n. */
+  private interface Shape {
+    String generate(int n);
+  }
+
+  @Test
+  public static final void testUnclosedFormattingElements() {
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return repeat("<b>", n) + "Hello";
+      }
+    });
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return repeat("<b><i><u>", n) + repeat("<p>Hello", n);
+      }
+    });
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return repeat("<b>", n) + repeat("<a href=\"/\">Hello</a>", n);
+      }
+    });
+  }
+
+  @Test
+  public static final void testStrayCloseTags() {
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return repeat("<b>", n) + repeat("</i>", n);
+      }
+    });
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return repeat("<b>", n) + repeat("</h1>", n);
+      }
+    });
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        // The table cell keeps </b> from closing the outer <b>.
+        return "<b><table><tr><td>" + repeat("<i>", n) + repeat("</b>", n);
+      }
+    });
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return repeat("<my-element>", n) + repeat("</my-elephant>", n);
+      }
+    });
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        // Disallowed elements are not output but are still tracked.
+        return repeat("<span>", n) + repeat("</i>", n);
+      }
+    });
+  }
+
+  @Test
+  public static final void testManyAttributes() {
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        StringBuilder sb = new StringBuilder("<p");
+        for (int i = 0; i < n; ++i) {
+          sb.append(' ').append(attributeName(i)).append("=x");
+        }
+        return sb.append(">Hello</p>").toString();
+      }
+    });
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return "<p" + repeat(" title=x", n) + ">Hello</p>";
+      }
+    });
+  }
+
+  @Test
+  public static final void testManyDuplicateAttributesKeepsFirst() {
+    StringBuilder sb = new StringBuilder("<p");
+    for (int i = 0; i < 10000; ++i) {
+      sb.append(' ').append(attributeName(i % 100)).append("=v").append(i);
+    }
+    String sanitized = POLICY.sanitize(sb.append(">").toString());
+    assertTrue(sanitized, sanitized.contains(" data-00000=\"v0\" "));
+    assertTrue(sanitized, sanitized.contains(" data-00099=\"v99\">"));
+    assertFalse(sanitized, sanitized.contains("\"v100\""));
+  }
+
+  @Test
+  public static final void testSelectOptions() {
+    assertLinear(new Shape() {
+      public String generate(int n) {
+        return "<select>" + repeat("<option>Hello", n);
+      }
+    });
+  }
+
+  /**
+   * Checks that the time per input char at a size is less than 4 times that
+   * at a size 16 times smaller, which a quadratic algorithm would exceed.
+   */
+  private static void assertLinear(Shape shape) {
+    String small = shape.generate(SMALL);
+    String large = shape.generate(LARGE);
+    // Warm up so that the small input does not pay for class loading and
+    // interpretation, which would hide super-linear growth.
+    POLICY.sanitize(large);
+    for (int i = 0; i < 10; ++i) {
+      POLICY.sanitize(small);
+    }
+    double smallPerChar = nanosToSanitize(small) / (double) small.length();
+    double largePerChar = nanosToSanitize(large) / (double) large.length();
+    assertTrue(
+        small.substring(0, Math.min(40, small.length()))
+        + " : " + smallPerChar + " vs " + largePerChar + " ns/char",
+        largePerChar < 4 * smallPerChar);
+  }
+
+  /** The least CPU time, or wall time if unavailable, over a few runs. */
+  private static long nanosToSanitize(String html) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    boolean useCpuTime = threads.isCurrentThreadCpuTimeSupported();
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < 3; ++i) {
+      long t0 = useCpuTime
+          ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+      POLICY.sanitize(html);
+      long t1 = useCpuTime
+          ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+      best = Math.min(best, t1 - t0);
+    }
+    // Clocks are coarse on some platforms.
+    return Math.max(best, 1);
+  }
+
+  /** Same length names so that comparing them is not trivially fast. */
+  private static String attributeName(int i) {
+    String digits = Integer.toString(i);
+    return "data-" + "00000".substring(digits.length()) + digits;
+  }
+
+  private static String repeat(String s, int n) {
+    StringBuilder sb = new StringBuilder(s.length() * n);
+    for (int i = 0; i < n; ++i) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,161 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class AttributeListTest extends TestCase {
+
+  @Test
+  public static final void testAgainstArrayList() {
+    Random r = new Random(0xa771157);
+    AttributeList attrs = new AttributeList();
+    List<String> want = new ArrayList<>();
+    for (int step = 0; step < 2000; ++step) {
+      String value = "v" + step;
+      int n = want.size();
+      switch (r.nextInt(8)) {
+        case 0: case 1:
+          attrs.add(value);
+          want.add(value);
+          break;
+        case 2: {
+          int i = r.nextInt(n + 1);
+          attrs.add(i, value);
+          want.add(i, value);
+          break;
+        }
+        case 3:
+          if (n != 0) {
+            int i = r.nextInt(n);
+            assertEquals(want.remove(i), attrs.remove(i));
+          }
+          break;
+        case 4:
+          if (n != 0) {
+            int i = r.nextInt(n);
+            assertEquals(want.set(i, value), attrs.set(i, value));
+          }
+          break;
+        case 5: {
+          int from = r.nextInt(n + 1);
+          int to = from + r.nextInt(n - from + 1);
+          attrs.subList(from, to).clear();
+          want.subList(from, to).clear();
+          break;
+        }
+        case 6:
+          walk(r, attrs.listIterator(), want.listIterator(), value);
+          break;
+        case 7:
+          if (r.nextInt(20) == 0) {
+            attrs.clear();
+            want.clear();
+          }
+          break;
+      }
+      assertEquals(want, attrs);
+    }
+  }
+
+  /** Applies the same random iterator operations to both iterators. */
+  private static void walk(
+      Random r, ListIterator<String> it, ListIterator<String> wantIt,
+      String value) {
+    boolean canModify = false;
+    for (int i = r.nextInt(20); --i >= 0;) {
+      switch (r.nextInt(5)) {
+        case 0: case 1:
+          assertEquals(wantIt.hasNext(), it.hasNext());
+          if (wantIt.hasNext()) {
+            assertEquals(wantIt.next(), it.next());
+            canModify = true;
+          }
+          break;
+        case 2:
+          assertEquals(wantIt.hasPrevious(), it.hasPrevious());
+          if (wantIt.hasPrevious()) {
+            assertEquals(wantIt.previous(), it.previous());
+            canModify = true;
+          }
+          break;
+        case 3:
+          if (canModify) {
+            wantIt.remove();
+            it.remove();
+            canModify = false;
+          }
+          break;
+        case 4:
+          if (canModify) {
+            wantIt.set(value);
+            it.set(value);
+          } else {
+            wantIt.add(value);
+            it.add(value);
+          }
+          break;
+      }
+      assertEquals(wantIt.nextIndex(), it.nextIndex());
+    }
+  }
+
+  @Test
+  public static final void testRemoveWhileIterating() {
+    AttributeList attrs = new AttributeList();
+    for (int i = 0; i < 1000; ++i) {
+      attrs.add("n" + i);
+      attrs.add("v" + i);
+    }
+    // Remove every other pair the way applyPolicies does.
+    for (ListIterator<String> it = attrs.listIterator(); it.hasNext();) {
+      String name = it.next();
+      if (Integer.parseInt(name.substring(1)) % 2 == 0) {
+        it.remove();
+        it.next();
+        it.remove();
+      } else {
+        it.next();
+        it.set("kept");
+      }
+    }
+    assertEquals(1000, attrs.size());
+    assertEquals("n1", attrs.get(0));
+    assertEquals("kept", attrs.get(1));
+    assertEquals("n999", attrs.get(998));
+    assertEquals("kept", attrs.getLast());
+  }
+}
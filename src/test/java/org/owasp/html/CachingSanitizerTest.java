@@ -0,0 +1,190 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class CachingSanitizerTest extends TestCase {
+
+  private static final PolicyFactory POLICY =
+      Sanitizers.FORMATTING.and(Sanitizers.LINKS);
+
+  @Test
+  public static void testHitsAndMisses() {
+    CachingSanitizer c = POLICY.cachingSanitizer(1 << 16);
+    String html = "<b onclick=evil()>Hello</b>, <a href=foo>World</a>!";
+    String want = POLICY.sanitize(html);
+
+    assertEquals(want, c.sanitize(html));
+    assertEquals(0, c.hitCount());
+    assertEquals(1, c.missCount());
+
+    // An equal input that is a different instance still hits.
+    assertSame(c.sanitize(html), c.sanitize(new String(html)));
+    assertEquals(2, c.hitCount());
+    assertEquals(1, c.missCount());
+    assertEquals(html.length() + want.length(), c.cachedChars());
+
+    assertEquals("", c.sanitize(null));
+    assertEquals(1, c.missCount());
+
+    c.clear();
+    assertEquals(0, c.cachedChars());
+    assertEquals(want, c.sanitize(html));
+    assertEquals(2, c.missCount());
+  }
+
+  @Test
+  public static void testCleanInputCountedOnce() {
+    CachingSanitizer c = POLICY.cachingSanitizer(1 << 16);
+    String html = "<b>Hello</b>";
+    assertSame(html, c.sanitize(html));
+    assertEquals(html.length(), c.cachedChars());
+  }
+
+  @Test
+  public static void testSizeBound() {
+    long maxChars = 1 << 12;
+    CachingSanitizer c = POLICY.cachingSanitizer(maxChars);
+    for (int i = 0; i < 1000; ++i) {
+      String html = "<i>" + i + "</i><script>x</script>";
+      assertEquals(POLICY.sanitize(html), c.sanitize(html));
+      assertTrue(c.cachedChars() <= maxChars);
+    }
+    assertTrue(c.evictionCount() > 0);
+    assertEquals(0, c.hitCount());
+
+    // Inputs too big for a stripe are sanitized but not cached.
+    StringBuilder big = new StringBuilder();
+    for (int i = 0; i < maxChars; ++i) {
+      big.append('x');
+    }
+    String html = big.toString();
+    assertEquals(POLICY.sanitize(html), c.sanitize(html));
+    assertEquals(POLICY.sanitize(html), c.sanitize(html));
+    assertEquals(0, c.hitCount());
+  }
+
+  @Test
+  public static void testListenerBypassesCache() {
+    CachingSanitizer c = POLICY.cachingSanitizer(1 << 16);
+    String html = "<blink>Hello</blink>";
+    final List<String> discarded = new ArrayList<>();
+    HtmlChangeListener<Void> listener = new HtmlChangeListener<>() {
+      public void discardedTag(Void context, String elementName) {
+        discarded.add(elementName);
+      }
+
+      public void discardedAttributes(
+          Void context, String tagName, String... attributeNames) {
+        // Not tested.
+      }
+    };
+    assertEquals("Hello", c.sanitize(html));
+    assertEquals("Hello", c.sanitize(html, listener, null));
+    assertEquals("Hello", c.sanitize(html, listener, null));
+    assertEquals(List.of("blink", "blink"), discarded);
+    assertEquals(0, c.hitCount());
+    assertEquals(1, c.missCount());
+  }
+
+  @Test
+  public static void testNonDeterministicProcessorBypassesCache() {
+    final int[] count = new int[1];
+    PolicyFactory f = new HtmlPolicyBuilder()
+        .allowElements("b")
+        .withPostprocessor(new HtmlStreamEventProcessor() {
+          public HtmlStreamEventReceiver wrap(HtmlStreamEventReceiver sink) {
+            return new HtmlStreamEventReceiverWrapper(sink) {
+              @Override
+              public void text(String text) {
+                underlying.text(text + (count[0]++));
+              }
+            };
+          }
+
+          @Override
+          public boolean isDeterministic() {
+            return false;
+          }
+        })
+        .toFactory()
+        .and(Sanitizers.LINKS);
+    CachingSanitizer c = f.cachingSanitizer(1 << 16);
+    assertEquals("<b>x0</b>", c.sanitize("<b>x</b>"));
+    assertEquals("<b>x1</b>", c.sanitize("<b>x</b>"));
+    assertEquals(0, c.missCount());
+    assertEquals(0, c.cachedChars());
+  }
+
+  @Test
+  public static void testConcurrentUse() throws Exception {
+    final CachingSanitizer c = POLICY.cachingSanitizer(1 << 10);
+    final String[] inputs = new String[50];
+    final String[] wants = new String[inputs.length];
+    for (int i = 0; i < inputs.length; ++i) {
+      inputs[i] = "<b>" + i + "</b><p onclick=x>" + i;
+      wants[i] = POLICY.sanitize(inputs[i]);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 8; ++t) {
+        final int seed = t;
+        results.add(executor.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            for (int i = 0; i < 2000; ++i) {
+              int j = (i * 7 + seed) % inputs.length;
+              if (!wants[j].equals(c.sanitize(inputs[j]))) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(8 * 2000, c.hitCount() + c.missCount());
+    assertTrue(c.cachedChars() <= 1 << 10);
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class CanonicalNameTableTest extends TestCase {
+
+  @Test
+  public static final void testCanonicalNamesOfKnownElements() {
+    assertCanonicalizesLikeLowerCasing(CanonicalNameTable.ELEMENT_NAMES);
+  }
+
+  @Test
+  public static final void testCanonicalNamesOfKnownAttributes() {
+    assertCanonicalizesLikeLowerCasing(CanonicalNameTable.ATTRIBUTE_NAMES);
+  }
+
+  @Test
+  public static final void testMixedCaseForeignNames() {
+    CanonicalNameTable t = CanonicalNameTable.ELEMENT_NAMES;
+    assertEquals("textArea", canonicalName(t, "textArea"));
+    assertEquals("textarea", canonicalName(t, "textarea"));
+    assertEquals("textarea", canonicalName(t, "TextArea"));
+    assertEquals("clipPath", canonicalName(t, "clipPath"));
+    assertEquals("clippath", canonicalName(t, "CLIPPATH"));
+    assertEquals(
+        t.indexOf("textArea", 0, 8), t.indexOf("TEXTAREA", 0, 8));
+  }
+
+  @Test
+  public static final void testUnknownNames() {
+    CanonicalNameTable t = CanonicalNameTable.ELEMENT_NAMES;
+    assertNull(canonicalName(t, "x-foo"));
+    assertNull(canonicalName(t, "svg:rect"));
+    assertNull(canonicalName(t, "di"));
+    assertNull(canonicalName(t, "divv"));
+    assertNull(canonicalName(t, ""));
+    // Only ASCII letters fold.
+    assertNull(canonicalName(t, "d\u0130v"));
+    assertNull(canonicalName(t, "\u212abd"));  // Kelvin sign
+    assertEquals(-1, t.indexOf("x-foo", 0, 5));
+  }
+
+  @Test
+  public static final void testRangesAndInterning() {
+    CanonicalNameTable t = CanonicalNameTable.ELEMENT_NAMES;
+    String input = "<DIV class=x><Span>";
+    String div = t.canonicalName(input, 1, 4);
+    assertEquals("div", div);
+    assertSame("div", div);
+    assertSame("span", t.canonicalName(input, 14, 18));
+    assertSame(
+        "class",
+        CanonicalNameTable.ATTRIBUTE_NAMES.canonicalName(input, 5, 10));
+    assertSame("div", HtmlLexer.canonicalElementName(input, 1, 4));
+    assertSame("div", HtmlLexer.canonicalElementName(new String("Div")));
+    assertEquals("div", t.name(t.indexOf(input, 1, 4)));
+  }
+
+  private static void assertCanonicalizesLikeLowerCasing(
+      CanonicalNameTable t) {
+    Random r = new Random(0x5eed);
+    for (int id = 0, n = t.size(); id < n; ++id) {
+      String name = t.name(id);
+      assertEquals(name, Strings.toLowerCase(name));
+      assertEquals(id, t.indexOf(name, 0, name.length()));
+      for (int i = 0; i < 4; ++i) {
+        String variant = randomCase(r, name);
+        assertEquals(variant, id, t.indexOf(variant, 0, variant.length()));
+        String canon = canonicalName(t, variant);
+        // Mixed-case foreign names are canonical only when exactly so.
+        String want =
+            CanonicalNameTable.MIXED_CASE_FOREIGN_ELEMENT_NAMES.contains(
+                variant)
+            || CanonicalNameTable.MIXED_CASE_FOREIGN_ATTRIBUTE_NAMES
+               .contains(variant)
+            ? variant : name;
+        assertEquals(variant, want, canon);
+      }
+    }
+  }
+
+  private static String randomCase(Random r, String s) {
+    char[] chars = s.toCharArray();
+    for (int i = 0; i < chars.length; ++i) {
+      char c = chars[i];
+      if (r.nextBoolean() && c >= 'a' && c <= 'z') {
+        chars[i] = (char) (c & ~0x20);
+      }
+    }
+    return new String(chars);
+  }
+
+  private static String canonicalName(CanonicalNameTable t, String s) {
+    String result = t.canonicalName(s, 0, s.length());
+    // Look it up from within a larger string to exercise ranges.
+    assertEquals(result, t.canonicalName("<" + s + ">", 1, s.length() + 1));
+    return result;
+  }
+}
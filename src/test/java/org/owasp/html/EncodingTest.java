@@ -147,6 +147,19 @@ public final class EncodingTest extends TestCase {
     );
   }
 
+  @Test
+  public static final void testDecodeHtmlRange() {
+    StringBuilder html = new StringBuilder("xx&para;&amp;\u0000&ltyy");
+    // The range ends inside "&amp;" so it is not decoded.
+    assertEquals("\u00b6&am", Encoding.decodeHtml(html, 2, 11, false));
+    // A range that needs no decoding is copied as-is.
+    assertEquals("xx", Encoding.decodeHtml(html, 0, 2, false));
+    // Banned code-units are stripped even without an entity, and the entity
+    // name is cut off at the end of the range.
+    assertEquals("&amp;<", Encoding.stripBannedCodeunits(html, 8, 14)
+        + Encoding.decodeHtml(html, 14, 17, false));
+  }
+
   @Test
   public static final void testAppendNumericEntityAndEncodeOnto()
       throws Exception {
@@ -188,6 +201,61 @@ public final class EncodingTest extends TestCase {
     assertEquals("{<!-- -->{angularVariable}}", sb.toString());
   }
 
+  @Test
+  public static final void testEncodePcdataMatchesEncodePcdataOnto()
+      throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i <= 0xFFFF; ++i) {
+      char ch = (char) i;
+      String[] inputs = {
+        String.valueOf(ch),
+        "x" + ch + "x",
+        "\u200C" + ch,
+        ch + "{",
+      };
+      for (String input : inputs) {
+        sb.setLength(0);
+        Encoding.encodePcdataOnto(input, sb);
+        String expected = sb.toString();
+        String actual = Encoding.encodePcdata(input);
+        String msg = Integer.toHexString(i);
+        assertEquals(msg, expected, actual);
+        if (actual == input) {
+          assertEquals(msg, input, expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  public static final void testZwnjDroppedFromEarlierOutput()
+      throws Exception {
+    // The input is clean but for the ZWNJ, which the encoder only sees is
+    // followed by a vowel once it has already been written.
+    String[] chunks = { "\u0915\u094D\u0930\u200C", "\u093E" };
+    String input = chunks[0] + chunks[1];
+    String want = "\u0915\u094D\u0930\u093E";
+
+    StringBuilder sb = new StringBuilder();
+    InputMatchingOutput out = new InputMatchingOutput(input, false);
+    for (String chunk : chunks) {
+      Encoding.encodePcdataOnto(chunk, sb);
+      Encoding.encodePcdataOnto(chunk, out);
+    }
+    assertEquals(want, sb.toString());
+    assertFalse(out.matchesInput());
+    assertEquals(want, out.toString());
+
+    InputMatchingOutput check = new InputMatchingOutput(input, true);
+    Encoding.encodePcdataOnto(chunks[0], check);
+    try {
+      Encoding.encodePcdataOnto(chunks[1], check);
+      fail("ZWNJ not dropped");
+    } catch (InputMatchingOutput.Mismatch ex) {
+      // Expected
+    }
+  }
+
   private static final void assertStripped(String stripped, String orig) {
     String actual = Encoding.stripBannedCodeunits(orig);
     assertEquals(orig, stripped, actual);
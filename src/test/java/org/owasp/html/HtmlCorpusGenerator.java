@@ -0,0 +1,385 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates HTML documents of a chosen size and shape for benchmarks and
+ * scaling tests.
+ * <p>
+ * Output depends only on the seed and the knobs, so a document that shows a
+ * problem can be regenerated from them.  The knobs are set by chaining:
+ * <pre>
+ * String html = new HtmlCorpusGenerator(seed)
+ *     .length(1 &lt;&lt; 20).maxDepth(40).malformedness(0.1).generate();
+ * </pre>
+ */
+final class HtmlCorpusGenerator {
+
+  /** Elements to choose from by default, repeated to weight the choice. */
+  static final List<String> DEFAULT_TAG_MIX = Arrays.asList(
+      "p", "p", "p", "div", "div", "span", "span", "b", "i", "em", "strong",
+      "a", "a", "a", "ul", "ol", "li", "li", "li", "table", "tr", "td", "td",
+      "h1", "h2", "blockquote", "code", "pre", "br", "br", "img", "hr",
+      "font", "u", "iframe", "form", "input", "object", "center", "x-custom",
+      "svg", "math");
+
+  private static final List<String> VOID_ELEMENTS = Arrays.asList(
+      "br", "img", "hr", "input", "col", "wbr");
+
+  private static final String[] WORDS = {
+      "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog",
+      "lorem", "ipsum", "dolor", "sit", "amet", "sanitizer", "policy",
+      "caf\u00e9", "na\u00efve", "\u65e5\u672c", "\ud83d\ude00", "1 < 2",
+      "a & b", "\"quoted\"", "it's",
+  };
+
+  private static final String[] ATTRIBUTE_NAMES = {
+      "href", "src", "title", "class", "id", "alt", "width", "height",
+      "target", "rel", "dir", "lang", "onclick", "onerror", "data-x",
+      "align", "border", "name",
+  };
+
+  private static final String[] URLS = {
+      "https://example.com/", "http://example.com/a/b?c=d&e=f#g",
+      "/relative/path.html", "mailto:someone@example.com",
+      "javascript:alert(1)",
+      "data:text/html,<script>alert(1)</script>", "//example.org/x.png",
+      "  JaVaScRiPt:alert(2)", "#top",
+  };
+
+  private static final String[] NAMED_REFERENCES = {
+      "&amp;", "&lt;", "&gt;", "&quot;", "&nbsp;", "&copy;", "&mdash;",
+      "&eacute;", "&hellip;", "&para", "&CounterClockwiseContourIntegral;",
+  };
+
+  private static final String[] CSS_DECLARATIONS = {
+      "color: #%06x", "background-color: rgb(%d, 20, 30)", "font-size: %dpx",
+      "margin: %dpx 4px", "padding: 0 %dem", "font-weight: bold",
+      "text-align: center", "border: %dpx solid #ccc", "line-height: 1.%d",
+      "font-family: 'Helvetica Neue', Arial, sans-serif",
+      "background: url(http://example.com/%d.png)",
+      "position: absolute; top: %dpx", "width: expression(alert(%d))",
+      "-moz-binding: url(x.xml#%d)", "z-index: %d",
+  };
+
+  private final Random rnd;
+  private int length = 1 << 16;
+  private int maxDepth = 12;
+  private List<String> tagMix = DEFAULT_TAG_MIX;
+  private double attributesPerTag = 1.5;
+  private double entityDensity = 0.02;
+  private double styleDensity = 0.1;
+  private double scriptStyleRatio = 0.02;
+  private double malformedness = 0;
+
+  /** @param seed determines the output given the same knobs. */
+  HtmlCorpusGenerator(long seed) {
+    this.rnd = new Random(seed);
+  }
+
+  /**
+   * The approximate length in chars of documents to generate.
+   * Generated documents are at least this long and overshoot it by at most
+   * one construct and the end tags that close the document.
+   */
+  HtmlCorpusGenerator length(int newLength) {
+    this.length = newLength;
+    return this;
+  }
+
+  /** The maximum number of elements open at once. */
+  HtmlCorpusGenerator maxDepth(int newMaxDepth) {
+    this.maxDepth = newMaxDepth;
+    return this;
+  }
+
+  /**
+   * The elements to choose from when opening one.
+   * Repeating a name makes it proportionally more likely.
+   */
+  HtmlCorpusGenerator tagMix(String... elementNames) {
+    this.tagMix = Arrays.asList(elementNames.clone());
+    return this;
+  }
+
+  /** The mean number of attributes on each tag, not counting style. */
+  HtmlCorpusGenerator attributesPerTag(double mean) {
+    this.attributesPerTag = mean;
+    return this;
+  }
+
+  /**
+   * The fraction of text and attribute value characters that are written
+   * as character references.
+   */
+  HtmlCorpusGenerator entityDensity(double fraction) {
+    this.entityDensity = fraction;
+    return this;
+  }
+
+  /** The fraction of tags that have a style attribute. */
+  HtmlCorpusGenerator styleDensity(double fraction) {
+    this.styleDensity = fraction;
+    return this;
+  }
+
+  /** The fraction of elements that are script or style elements. */
+  HtmlCorpusGenerator scriptStyleRatio(double fraction) {
+    this.scriptStyleRatio = fraction;
+    return this;
+  }
+
+  /**
+   * The probability that any construct is damaged: end tags dropped or
+   * misnested, quotes unbalanced, stray {@code <}, names in odd case, and
+   * the like.
+   */
+  HtmlCorpusGenerator malformedness(double probability) {
+    this.malformedness = probability;
+    return this;
+  }
+
+  /**
+   * A new document.  Successive calls continue the same pseudo-random
+   * sequence, so yield different documents.
+   */
+  String generate() {
+    StringBuilder sb = new StringBuilder(length + (length >> 3));
+    List<String> open = new ArrayList<>();
+    while (sb.length() < length) {
+      double r = rnd.nextDouble();
+      if (!open.isEmpty() && (open.size() >= maxDepth || r < 0.3)) {
+        closeElement(sb, open);
+      } else if (r < 0.65) {
+        text(sb);
+      } else if (r < 0.67) {
+        comment(sb);
+      } else if (rnd.nextDouble() < scriptStyleRatio) {
+        rawTextElement(sb);
+      } else {
+        openElement(sb, open);
+      }
+    }
+    while (!open.isEmpty()) {
+      closeElement(sb, open);
+    }
+    return sb.toString();
+  }
+
+  private boolean malformed() {
+    return malformedness != 0 && rnd.nextDouble() < malformedness;
+  }
+
+  private <T> T pick(List<T> items) {
+    return items.get(rnd.nextInt(items.size()));
+  }
+
+  private String pick(String[] items) {
+    return items[rnd.nextInt(items.length)];
+  }
+
+  private void openElement(StringBuilder sb, List<String> open) {
+    String name = pick(tagMix);
+    sb.append('<').append(malformed() ? name.toUpperCase(Locale.ROOT) : name);
+    // Uniform over [0, 2 * attributesPerTag] so that the mean is about right.
+    int nAttributes = (int) (rnd.nextDouble() * (2 * attributesPerTag + 1));
+    for (int i = 0; i < nAttributes; ++i) {
+      String attributeName = pick(ATTRIBUTE_NAMES);
+      String value;
+      switch (attributeName) {
+        case "href": case "src":
+          value = pick(URLS);
+          break;
+        case "width": case "height": case "border":
+          value = Integer.toString(rnd.nextInt(1000));
+          break;
+        case "onclick": case "onerror":
+          value = "alert(" + rnd.nextInt(100) + ")";
+          break;
+        default:
+          value = pick(WORDS);
+          break;
+      }
+      attribute(sb, attributeName, value);
+    }
+    if (rnd.nextDouble() < styleDensity) {
+      attribute(sb, "style", css(1 + rnd.nextInt(5), "; "));
+    }
+    if (malformed()) {
+      // Duplicate the last attribute, or add a stray one.
+      attribute(sb, nAttributes != 0 ? "title" : "=", pick(WORDS));
+    }
+    boolean isVoid = VOID_ELEMENTS.contains(name);
+    sb.append(isVoid && rnd.nextBoolean() ? " />" : ">");
+    if (!isVoid) {
+      open.add(name);
+    }
+  }
+
+  private void attribute(StringBuilder sb, String name, String value) {
+    sb.append(' ').append(name);
+    if (value.isEmpty() && rnd.nextBoolean()) {
+      return;
+    }
+    sb.append('=');
+    char quote = rnd.nextInt(4) == 0 ? '\'' : '"';
+    boolean quoted = !isUnquotable(value) || rnd.nextInt(4) != 0;
+    if (quoted) { sb.append(quote); }
+    int start = sb.length();
+    encode(sb, value, true);
+    if (quoted) {
+      // Escape the quote character.
+      for (int i = start; i < sb.length(); ++i) {
+        if (sb.charAt(i) == quote) {
+          sb.replace(i, i + 1, quote == '"' ? "&#34;" : "&#39;");
+        }
+      }
+      if (!malformed()) { sb.append(quote); }
+    }
+  }
+
+  private static boolean isUnquotable(String value) {
+    if (value.isEmpty()) { return false; }
+    for (int i = 0, n = value.length(); i < n; ++i) {
+      char ch = value.charAt(i);
+      if (ch <= ' ' || ch == '"' || ch == '\'' || ch == '=' || ch == '<'
+          || ch == '>' || ch == '`' || ch == '&') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void closeElement(StringBuilder sb, List<String> open) {
+    int index = open.size() - 1;
+    if (malformed()) {
+      switch (rnd.nextInt(3)) {
+        case 0:
+          // Leave the end tag out.
+          open.remove(index);
+          return;
+        case 1:
+          // Close an ancestor, or something that is not open.
+          index = rnd.nextInt(open.size());
+          break;
+        default:
+          sb.append("</").append(pick(tagMix)).append('>');
+          return;
+      }
+    }
+    String name = open.remove(index);
+    sb.append("</").append(name).append('>');
+  }
+
+  private void text(StringBuilder sb) {
+    for (int n = 1 + rnd.nextInt(12); --n >= 0;) {
+      if (malformed()) {
+        sb.append(rnd.nextBoolean() ? "<" : "</ ");
+      }
+      encode(sb, pick(WORDS), false);
+      sb.append(n != 0 ? " " : rnd.nextInt(4) == 0 ? "\n" : " ");
+    }
+  }
+
+  /** Appends s encoded as HTML with entityDensity of it as references. */
+  private void encode(StringBuilder sb, String s, boolean inAttribute) {
+    for (int i = 0, n = s.length(); i < n; ++i) {
+      char ch = s.charAt(i);
+      boolean mustEncode = ch == '<' || ch == '&' || (inAttribute && ch == '"');
+      if (mustEncode && malformed()) {
+        sb.append(ch);
+      } else if (mustEncode || rnd.nextDouble() < entityDensity) {
+        switch (rnd.nextInt(3)) {
+          case 0:
+            sb.append("&#").append((int) ch).append(';');
+            break;
+          case 1:
+            sb.append("&#x").append(Integer.toHexString(ch)).append(';');
+            break;
+          default:
+            if (ch == '&') {
+              sb.append("&amp;");
+            } else if (ch == '<') {
+              sb.append("&lt;");
+            } else if (ch == '"') {
+              sb.append("&quot;");
+            } else {
+              // Keep the character and add a reference after it.
+              sb.append(ch).append(pick(NAMED_REFERENCES));
+            }
+            break;
+        }
+      } else {
+        sb.append(ch);
+      }
+    }
+  }
+
+  private void comment(StringBuilder sb) {
+    sb.append("<!-- ").append(pick(WORDS)).append(' ').append(pick(WORDS));
+    // An unclosed comment would swallow the rest of the document, so
+    // damage comments less drastically.
+    sb.append(malformed() ? " --!>" : " -->");
+  }
+
+  private void rawTextElement(StringBuilder sb) {
+    boolean isScript = rnd.nextBoolean();
+    String name = isScript ? "script" : "style";
+    sb.append('<').append(name).append('>');
+    for (int n = 1 + rnd.nextInt(8); --n >= 0;) {
+      if (isScript) {
+        sb.append("if (a < b && c > d) { document.write('<b>")
+            .append(pick(WORDS).replace("'", "\\'"))
+            .append("</' + 'b>'); }\n");
+      } else {
+        sb.append("p.c").append(rnd.nextInt(100)).append(" { ")
+            .append(css(1 + rnd.nextInt(4), "; ")).append(" }\n");
+      }
+    }
+    if (!malformed()) {
+      sb.append("</").append(name).append('>');
+    }
+  }
+
+  private String css(int nDeclarations, String separator) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < nDeclarations; ++i) {
+      if (i != 0) { sb.append(separator); }
+      sb.append(String.format(
+          Locale.ROOT, pick(CSS_DECLARATIONS), rnd.nextInt(1 << 16)));
+    }
+    return sb.toString();
+  }
+}
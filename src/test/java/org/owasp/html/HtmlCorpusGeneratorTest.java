@@ -0,0 +1,168 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class HtmlCorpusGeneratorTest extends TestCase {
+
+  @Test
+  public static final void testSameSeedSameDocument() {
+    String a = new HtmlCorpusGenerator(42).malformedness(0.1).generate();
+    String b = new HtmlCorpusGenerator(42).malformedness(0.1).generate();
+    String c = new HtmlCorpusGenerator(43).malformedness(0.1).generate();
+    assertEquals(a, b);
+    assertFalse(a.equals(c));
+  }
+
+  @Test
+  public static final void testLength() {
+    for (int length : new int[] { 1, 100, 10000, 100000 }) {
+      String html = new HtmlCorpusGenerator(length).length(length).generate();
+      assertTrue(html.length() >= length);
+      assertTrue(html.length() < length + 2000);
+    }
+  }
+
+  @Test
+  public static final void testMaxDepth() {
+    String html = new HtmlCorpusGenerator(1)
+        .tagMix("div").maxDepth(5).scriptStyleRatio(0).generate();
+    int depth = 0;
+    int maxDepth = 0;
+    for (int i = html.indexOf('<'); i >= 0; i = html.indexOf('<', i + 1)) {
+      if (html.startsWith("<div", i)) {
+        maxDepth = Math.max(maxDepth, ++depth);
+      } else if (html.startsWith("</div", i)) {
+        --depth;
+      }
+    }
+    assertEquals(0, depth);
+    assertEquals(5, maxDepth);
+  }
+
+  @Test
+  public static final void testDensities() {
+    String plain = new HtmlCorpusGenerator(7)
+        .entityDensity(0).styleDensity(0).scriptStyleRatio(0).generate();
+    assertEquals(-1, plain.indexOf(" style="));
+    assertEquals(-1, plain.indexOf("<script"));
+    assertEquals(-1, plain.indexOf("<style"));
+
+    String dense = new HtmlCorpusGenerator(7)
+        .entityDensity(0.5).styleDensity(1).scriptStyleRatio(0.5).generate();
+    assertTrue(count(dense, " style=") > 20);
+    assertTrue(count(dense, "<script>") + count(dense, "<style>") > 20);
+    assertTrue(count(dense, "&") > 4 * count(plain, "&"));
+  }
+
+  @Test
+  public static final void testSanitizeMalformed() {
+    PolicyFactory factory = Sanitizers.FORMATTING.and(Sanitizers.BLOCKS)
+        .and(Sanitizers.LINKS).and(Sanitizers.STYLES);
+    HtmlCorpusGenerator generator =
+        new HtmlCorpusGenerator(3).length(8192).malformedness(0.3);
+    for (int i = 0; i < 20; ++i) {
+      String html = generator.generate();
+      String sanitized = factory.sanitize(html);
+      HtmlLexer lexer = new HtmlLexer(sanitized);
+      while (lexer.hasNext()) {
+        long token = lexer.next();
+        String text = sanitized.substring(
+            HtmlToken.start(token), HtmlToken.end(token))
+            .toLowerCase(Locale.ROOT);
+        switch (HtmlToken.type(token)) {
+          case TAGBEGIN:
+            assertFalse(html, text.matches("</?(script|iframe|object)"));
+            break;
+          case ATTRNAME:
+            assertFalse(html, text.startsWith("on"));
+            break;
+          case ATTRVALUE:
+            assertFalse(html, text.contains("javascript:"));
+            assertFalse(html, text.contains("expression("));
+            break;
+          default:
+            break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Catches regressions that make sanitizing allocate more than linearly in
+   * the input size.
+   * Allocation is tracked instead of time since it is less noisy.
+   */
+  @Test
+  public static final void testSanitizeAllocationIsLinear() {
+    java.lang.management.ThreadMXBean bean =
+        ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return;  // Allocation is not tracked on this JVM.
+    }
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) bean;
+    PolicyFactory factory = Sanitizers.FORMATTING.and(Sanitizers.BLOCKS)
+        .and(Sanitizers.LINKS).and(Sanitizers.TABLES)
+        .and(Sanitizers.STYLES);
+    String small = new HtmlCorpusGenerator(5).length(1 << 15)
+        .maxDepth(64).malformedness(0.05).generate();
+    String large = new HtmlCorpusGenerator(5).length(1 << 19)
+        .maxDepth(64).malformedness(0.05).generate();
+    factory.sanitize(small);  // Load classes.
+
+    long threadId = Thread.currentThread().getId();
+    long a0 = threads.getThreadAllocatedBytes(threadId);
+    factory.sanitize(small);
+    long a1 = threads.getThreadAllocatedBytes(threadId);
+    factory.sanitize(large);
+    long a2 = threads.getThreadAllocatedBytes(threadId);
+
+    double smallPerChar = (a1 - a0) / (double) small.length();
+    double largePerChar = (a2 - a1) / (double) large.length();
+    assertTrue(
+        smallPerChar + " vs " + largePerChar,
+        largePerChar < 2 * smallPerChar);
+  }
+
+  private static int count(String s, String sub) {
+    int n = 0;
+    for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i + 1)) {
+      ++n;
+    }
+    return n;
+  }
+}
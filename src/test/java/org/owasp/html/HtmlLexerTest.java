@@ -125,18 +125,20 @@ public class HtmlLexerTest extends TestCase {
     }
 
     while (lexer.hasNext()) {
-      HtmlToken t = lexer.next();
+      long t = lexer.next();
+      int start = HtmlToken.start(t);
+      int end = HtmlToken.end(t);
       // Do C style escaping of the token text so that each token in the golden
       // file can fit on one line.
-      String escaped = input.substring(t.start, t.end)
+      String escaped = input.substring(start, end)
           .replace("\\", "\\\\").replace("\n", "\\n");
-      String type = t.type.toString();
+      String type = HtmlToken.type(t).toString();
       int nPadding = maxTypeLength - type.length();
       out.append(type);
       while (--nPadding >= 0) { out.append(' '); }
       out.append(" [").append(escaped).append("]  :  ")
-          .append(String.valueOf(t.start)).append('-')
-          .append(String.valueOf(t.end))
+          .append(String.valueOf(start)).append('-')
+          .append(String.valueOf(end))
           .append("\n");
     }
   }
@@ -145,8 +147,9 @@ public class HtmlLexerTest extends TestCase {
     HtmlLexer lexer = new HtmlLexer(markup);
     List<String> actual = new ArrayList<>();
     while (lexer.hasNext()) {
-      HtmlToken t = lexer.next();
-      actual.add(t.type + ": " + markup.substring(t.start, t.end));
+      long t = lexer.next();
+      actual.add(HtmlToken.type(t) + ": "
+          + markup.substring(HtmlToken.start(t), HtmlToken.end(t)));
     }
     assertEquals(Arrays.asList(golden), actual);
   }
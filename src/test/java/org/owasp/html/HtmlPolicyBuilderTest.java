@@ -362,6 +362,50 @@ public class HtmlPolicyBuilderTest extends TestCase {
             .allowElements("div"),
             "<body>foo</body>"));
   }
+  @Test
+  public static final void testCustomAndRenamedElements() {
+    PolicyFactory f = new HtmlPolicyBuilder()
+        .allowElements("x-box", "b", "p")
+        .allowElements(
+            new ElementPolicy() {
+              public String apply(String elementName, List<String> attrs) {
+                return "x-section";
+              }
+            }, "section")
+        .allowElements(
+            new ElementPolicy() {
+              public String apply(String elementName, List<String> attrs) {
+                return "b";
+              }
+            }, "x-bold")
+        .allowTextIn("x-box")
+        .toFactory();
+    String input =
+        "<x-box>1<section>2<x-bold>3</section>4</x-box>5<b><x-box>6</b>7"
+        + "<x-other>8</x-other><x-bold>9</x-bold><section><p>10";
+    String want =
+        "<x-box>1<x-section><b>3</b></x-section>4</x-box>"
+        + "5<b><x-box>6</x-box></b>78<b>9</b><x-section><p>10</p></x-section>";
+    assertEquals(want, f.sanitize(input));
+
+    // The same without the element indices computed by the tag balancer.
+    StringBuilder sb = new StringBuilder();
+    final HtmlSanitizer.Policy delegate = f.apply(
+        HtmlStreamRenderer.create(sb, Handler.DO_NOTHING));
+    HtmlSanitizer.sanitize(input, new HtmlSanitizer.Policy() {
+      public void openDocument() { delegate.openDocument(); }
+      public void closeDocument() { delegate.closeDocument(); }
+      public void text(String textChunk) { delegate.text(textChunk); }
+      public void openTag(String elementName, List<String> attrs) {
+        delegate.openTag(elementName, attrs);
+      }
+      public void closeTag(String elementName) {
+        delegate.closeTag(elementName);
+      }
+    });
+    assertEquals(want, sb.toString());
+  }
+
   @Test
   public static final void testAllowUrlProtocols() {
     assertEquals(
@@ -1285,6 +1329,61 @@ public class HtmlPolicyBuilderTest extends TestCase {
     new HtmlPolicyBuilder().allowElements().allowAttributes().globally().toFactory();
   }
 
+  @Test
+  public static final void testStyleCache() {
+    String html = "<p style='color: red'>1</p><p style='color: red'>2</p>"
+        + "<p style='position: fixed'>3</p>";
+    String want = "<p style=\"color:red\">1</p><p style=\"color:red\">2</p>"
+        + "<p>3</p>";
+
+    PolicyFactory cached = new HtmlPolicyBuilder()
+        .allowElements("p")
+        .allowStyling()
+        .toFactory();
+    assertEquals(want, cached.sanitize(html));
+    assertEquals(want, cached.sanitize(html));
+    assertEquals(2, cached.styleCacheMissCount());
+    assertEquals(4, cached.styleCacheHitCount());
+
+    PolicyFactory uncached = new HtmlPolicyBuilder()
+        .allowElements("p")
+        .allowStyling()
+        .withStyleCache(0)
+        .toFactory();
+    assertEquals(want, uncached.sanitize(html));
+    assertEquals(0, uncached.styleCacheMissCount());
+    assertEquals(0, uncached.styleCacheHitCount());
+
+    // The output of an impure style URL policy is not remembered.
+    final int[] urlCount = new int[1];
+    PolicyFactory impure = new HtmlPolicyBuilder()
+        .allowElements("p")
+        .allowStyling()
+        .allowStandardUrlProtocols()
+        .allowUrlsInStyles(new AttributePolicy() {
+          public String apply(String elementName, String attributeName,
+                              String value) {
+            return value + "#" + (++urlCount[0]);
+          }
+        })
+        .toFactory();
+    String bg = "<p style='background: url(a.png)'>x</p>";
+    assertEquals(
+        "<p style=\"background:url(&#39;a.png#1&#39;)\">x</p>",
+        impure.sanitize(bg));
+    assertEquals(
+        "<p style=\"background:url(&#39;a.png#2&#39;)\">x</p>",
+        impure.sanitize(bg));
+    assertEquals(0, impure.styleCacheMissCount());
+
+    try {
+      new HtmlPolicyBuilder().withStyleCache(-1);
+      fail("negative bound");
+    } catch (IllegalArgumentException ex) {
+      // Expected
+    }
+  }
+
   @Test
   public static final void testCSSFontSize() {
 	 HtmlPolicyBuilder builder = new HtmlPolicyBuilder();
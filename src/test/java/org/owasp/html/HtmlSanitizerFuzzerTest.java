@@ -31,7 +31,11 @@ package org.owasp.html;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -65,10 +69,6 @@ public class HtmlSanitizerFuzzerTest extends FuzzyTestCase {
     String html = new BufferedReader(new InputStreamReader(
         Resources.getInputStream("benchmark-data/Yahoo!.html"),
         StandardCharsets.UTF_8)).lines().collect(Collectors.joining()); 
-    int length = html.length();
-
-    char[] fuzzyHtml0 = new char[length];
-    char[] fuzzyHtml1 = new char[length];
 
     final LinkedBlockingQueue<Throwable> failures
         = new LinkedBlockingQueue<>();
@@ -80,55 +80,7 @@ public class HtmlSanitizerFuzzerTest extends FuzzyTestCase {
         10, 10, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
     for (int run = runCount; --run >= 0;) {
-      for (int i = length; --i >= 0;) { fuzzyHtml0[i] = html.charAt(i); }
-      for (int fuzz = 1 + rnd.nextInt(25); --fuzz >= 0;) {
-        if (rnd.nextBoolean()) {
-          fuzzyHtml0[rnd.nextInt(length)] = (char) rnd.nextInt(0x10000);
-          continue;
-        }
-        int s0 = rnd.nextInt(length - 1);
-        double d = Math.abs(rnd.nextGaussian()) / 3.0d;
-        int e0 = s0 + (int) (rnd.nextInt(length - s0) * d);
-        if (e0 >= length) { e0 = s0 + 1; }
-
-        int s1 = rnd.nextInt(length - 1);
-        d = Math.abs(rnd.nextGaussian()) / 3.0d;
-        int e1 = s1 + (int) (rnd.nextInt(length - s1) * d);
-        if (e1 >= length) { e1 = s1 + 1; }
-
-        if (s0 > s1) {
-          int st = s0, et = e0;
-          s0 = s1;
-          e0 = e1;
-          s1 = st;
-          e1 = et;
-        }
-
-        if (e0 > s1) { e0 = s1; }
-
-        // Swap the ranges [s0, e0) and [s1, e1) into fuzzyHtml1.
-        int i0, i1 = 0;
-        for (i0 = 0; i0 < s0; ++i0, ++i1) {
-          fuzzyHtml1[i1] = fuzzyHtml0[i0];
-        }
-        for (i0 = s1; i0 < e1; ++i0, ++i1) {
-          fuzzyHtml1[i1] = fuzzyHtml0[i0];
-        }
-        for (i0 = e0; i0 < s1; ++i0, ++i1) {
-          fuzzyHtml1[i1] = fuzzyHtml0[i0];
-        }
-        for (i0 = s0; i0 < e0; ++i0, ++i1) {
-          fuzzyHtml1[i1] = fuzzyHtml0[i0];
-        }
-        for (i0 = e1; i0 < length; ++i0, ++i1) {
-          fuzzyHtml1[i1] = fuzzyHtml0[i0];
-        }
-        // Swap the two buffers.
-        char[] swap = fuzzyHtml0;
-        fuzzyHtml0 = fuzzyHtml1;
-        fuzzyHtml1 = swap;
-      }
-      final String fuzzyHtml = new String(fuzzyHtml0);
+      final String fuzzyHtml = fuzz(html);
       executor.execute(new Runnable() {
         public void run() {
           try {
@@ -155,4 +107,95 @@ public class HtmlSanitizerFuzzerTest extends FuzzyTestCase {
     }
   }
 
+  public final void testParallelSanitizerMatchesSerial() throws Exception {
+    String html = new String(
+        Files.readAllBytes(Paths.get(
+            getClass().getResource("/benchmark-data/Yahoo!.html").toURI())),
+        StandardCharsets.UTF_8);
+    PolicyFactory factory = Sanitizers.BLOCKS
+        .and(Sanitizers.FORMATTING)
+        .and(Sanitizers.IMAGES)
+        .and(Sanitizers.LINKS)
+        .and(Sanitizers.STYLES)
+        .and(Sanitizers.TABLES);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      for (int run = 50; --run >= 0;) {
+        String fuzzyHtml = run == 0 ? html : fuzz(html);
+        int chunkLength = 1 + rnd.nextInt(1 << (4 + rnd.nextInt(10)));
+        StringBuilder sb = new StringBuilder();
+        HtmlSanitizer.sanitizeInParallel(
+            fuzzyHtml,
+            factory.apply(HtmlStreamRenderer.create(sb, Handler.DO_NOTHING)),
+            HtmlStreamEventProcessor.Processors.IDENTITY, executor,
+            chunkLength, 4);
+        assertEquals(
+            "seed=" + seed + ", chunkLength=" + chunkLength,
+            factory.sanitize(fuzzyHtml), sb.toString());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Overwrites random characters of html and swaps random ranges of it
+   * around.
+   */
+  private String fuzz(String html) {
+    int length = html.length();
+    char[] fuzzyHtml0 = new char[length];
+    char[] fuzzyHtml1 = new char[length];
+    for (int i = length; --i >= 0;) { fuzzyHtml0[i] = html.charAt(i); }
+    for (int fuzz = 1 + rnd.nextInt(25); --fuzz >= 0;) {
+      if (rnd.nextBoolean()) {
+        fuzzyHtml0[rnd.nextInt(length)] = (char) rnd.nextInt(0x10000);
+        continue;
+      }
+      int s0 = rnd.nextInt(length - 1);
+      double d = Math.abs(rnd.nextGaussian()) / 3.0d;
+      int e0 = s0 + (int) (rnd.nextInt(length - s0) * d);
+      if (e0 >= length) { e0 = s0 + 1; }
+
+      int s1 = rnd.nextInt(length - 1);
+      d = Math.abs(rnd.nextGaussian()) / 3.0d;
+      int e1 = s1 + (int) (rnd.nextInt(length - s1) * d);
+      if (e1 >= length) { e1 = s1 + 1; }
+
+      if (s0 > s1) {
+        int st = s0, et = e0;
+        s0 = s1;
+        e0 = e1;
+        s1 = st;
+        e1 = et;
+      }
+
+      if (e0 > s1) { e0 = s1; }
+
+      // Swap the ranges [s0, e0) and [s1, e1) into fuzzyHtml1.
+      int i0, i1 = 0;
+      for (i0 = 0; i0 < s0; ++i0, ++i1) {
+        fuzzyHtml1[i1] = fuzzyHtml0[i0];
+      }
+      for (i0 = s1; i0 < e1; ++i0, ++i1) {
+        fuzzyHtml1[i1] = fuzzyHtml0[i0];
+      }
+      for (i0 = e0; i0 < s1; ++i0, ++i1) {
+        fuzzyHtml1[i1] = fuzzyHtml0[i0];
+      }
+      for (i0 = s0; i0 < e0; ++i0, ++i1) {
+        fuzzyHtml1[i1] = fuzzyHtml0[i0];
+      }
+      for (i0 = e1; i0 < length; ++i0, ++i1) {
+        fuzzyHtml1[i1] = fuzzyHtml0[i0];
+      }
+      // Swap the two buffers.
+      char[] swap = fuzzyHtml0;
+      fuzzyHtml0 = fuzzyHtml1;
+      fuzzyHtml1 = swap;
+    }
+    return new String(fuzzyHtml0);
+  }
+
 }
@@ -30,7 +30,17 @@ package org.owasp.html;
 
 import junit.framework.TestCase;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.annotation.Nullable;
 
@@ -454,8 +464,246 @@ public class HtmlSanitizerTest extends TestCase {
     assertEquals(want, sanitize(input));
   }
 
+  @Test
+  public final void testSanitizeReaderMatchesSanitizeString()
+      throws Exception {
+    for (String input : streamingTestInputs()) {
+      String want = sanitize(input);
+      for (int readSize : new int[] { 1, 2, 3, 5, 16, 4096 }) {
+        for (int windowSize : new int[] { 1, 4, 32 }) {
+          HtmlInputWindow window = new HtmlInputWindow(windowSize);
+          assertEquals(
+              input + " @ " + readSize + "/" + windowSize,
+              want,
+              sanitize(new ChunkedReader(input, readSize), window));
+        }
+      }
+    }
+  }
+
+  @Test
+  public final void testSanitizeCharSequenceMatchesSanitizeString()
+      throws Exception {
+    for (String input : streamingTestInputs()) {
+      String want = sanitize(input);
+
+      StringBuilder sb = new StringBuilder();
+      HtmlSanitizer.sanitize(new StringBuilder(input), makePolicy(sb));
+      assertEquals(input, want, sb.toString());
+
+      // Surround the input with junk that must not be read.
+      char[] chars = ("<script>" + input + "</script>").toCharArray();
+      sb.setLength(0);
+      HtmlSanitizer.sanitize(
+          chars, 8, input.length(), makePolicy(sb),
+          HtmlStreamEventProcessor.Processors.IDENTITY);
+      assertEquals(input, want, sb.toString());
+    }
+  }
+
+  @Test
+  public final void testSanitizeInParallelMatchesSanitizeString()
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      for (String input : streamingTestInputs()) {
+        String want = sanitize(input);
+        // Short chunks put cuts in comments, scripts, and attribute values.
+        for (int chunkLength : new int[] { 1, 2, 7, 64 }) {
+          StringBuilder sb = new StringBuilder();
+          HtmlSanitizer.sanitizeInParallel(
+              input, makePolicy(sb),
+              HtmlStreamEventProcessor.Processors.IDENTITY, executor,
+              chunkLength, 4);
+          assertEquals(input + " @ " + chunkLength, want, sb.toString());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public final void testAttributeFilterDoesNotChangeOutput()
+      throws Exception {
+    PolicyFactory f = Sanitizers.FORMATTING.and(Sanitizers.LINKS)
+        .and(Sanitizers.IMAGES).and(Sanitizers.STYLES);
+    List<String> inputs = new ArrayList<>(
+        Arrays.asList(streamingTestInputs()));
+    inputs.add(
+        "<a onclick=x href=/ checked title=t href=/dup>1</a>"
+        + "<img alt=\"&lt;\" ismap src=x.png data-x=&amp;&para>"
+        + "<b style=\"color: red\" checked>2</b><i checked>3</i>");
+    for (String input : inputs) {
+      // PolicyFactory's policy lets the sanitizer skip attributes.
+      StringBuilder want = new StringBuilder();
+      HtmlSanitizer.Policy policy = f.apply(
+          HtmlStreamRenderer.create(want, Handler.DO_NOTHING));
+      assertNotNull(HtmlSanitizer.attributeFilter(
+          policy, HtmlStreamEventProcessor.Processors.IDENTITY));
+      HtmlSanitizer.sanitize(input, policy);
+
+      // Hiding it behind a delegating policy turns that off.
+      StringBuilder got = new StringBuilder();
+      final HtmlSanitizer.Policy delegate = f.apply(
+          HtmlStreamRenderer.create(got, Handler.DO_NOTHING));
+      HtmlSanitizer.sanitize(input, new HtmlSanitizer.Policy() {
+        public void openDocument() { delegate.openDocument(); }
+        public void closeDocument() { delegate.closeDocument(); }
+        public void text(String textChunk) { delegate.text(textChunk); }
+        public void openTag(String elementName, List<String> attrs) {
+          delegate.openTag(elementName, attrs);
+        }
+        public void closeTag(String elementName) {
+          delegate.closeTag(elementName);
+        }
+      });
+
+      assertEquals(input, want.toString(), got.toString());
+    }
+  }
+
+  @Test
+  public static final void testAttributeFilterSkipsAttributes() {
+    final List<String> seen = new ArrayList<>();
+    class FilteringPolicy implements HtmlSanitizer.Policy, AttributeFilter {
+      public boolean mayKeepAttribute(String elementName, String attrName) {
+        return "a".equals(elementName) && !attrName.startsWith("on");
+      }
+      public void openDocument() { /* Nothing to do. */ }
+      public void closeDocument() { /* Nothing to do. */ }
+      public void text(String textChunk) { /* Nothing to do. */ }
+      public void openTag(String elementName, List<String> attrs) {
+        seen.add(elementName + attrs);
+      }
+      public void closeTag(String elementName) { /* Nothing to do. */ }
+    }
+    HtmlSanitizer.sanitize(
+        "<a onclick=x href=\"/\" onload checked title=t>"
+        + "<p title=\"&amp;\" checked>",
+        new FilteringPolicy());
+    assertEquals(
+        Arrays.asList(
+            "a[href, /, checked, checked, title, t]", "p[]"),
+        seen);
+  }
+
+  @Test
+  public static final void testTextFilterSkipsRawTextContent() {
+    final List<String> seen = new ArrayList<>();
+    class DiscardingPolicy implements HtmlSanitizer.Policy, TextFilter {
+      boolean discarding;
+      public boolean isDiscardingText() { return discarding; }
+      public void openDocument() { /* Nothing to do. */ }
+      public void closeDocument() { /* Nothing to do. */ }
+      public void text(String textChunk) { seen.add(textChunk); }
+      public void openTag(String elementName, List<String> attrs) {
+        discarding = "script".equals(elementName);
+        seen.add("<" + elementName + ">");
+      }
+      public void closeTag(String elementName) {
+        discarding = false;
+        seen.add("</" + elementName + ">");
+      }
+    }
+    HtmlSanitizer.sanitize(
+        "<script>a <b> c</SCRIPT><style>d</style>e<script>f",
+        new DiscardingPolicy());
+    assertEquals(
+        Arrays.asList(
+            "<script>", "</script>", "<style>", "d", "</style>", "e",
+            "<script>", "</script>"),
+        seen);
+  }
+
+  private String[] streamingTestInputs() throws Exception {
+    String lexerInput = new String(
+        Files.readAllBytes(Paths.get(
+            getClass().getResource("htmllexerinput1.html").toURI())),
+        StandardCharsets.UTF_8);
+    return new String[] {
+        "",
+        "hello world",
+        "<b>hello <i>world<</i></b> & tomorrow the universe",
+        "<b id=\"foo\" / -->hello <i>world<</i></b>",
+        "<div id=\"foo\">Bar<br>Baz",
+        "<a href=http://foo.com/>Clicky</a>",
+        "<input type=checkbox checked=>",
+        "<a title=foo bar onclick=this.clicked=true>x</a>",
+        "<p<a href=\"/\">first part of the text</> second part",
+        "<script>w('</b')</script>after<style>p{}</style>",
+        "<textarea>a &amp; b</textarea><title>&lt;x&gt;</title>",
+        "Fish &amp chips &#x3c;&#60; &CounterClockwiseContourIntegral; \ud83d\ude00",
+        "<ul>  <li>one  <li>two </ul> <table>  <tr>  <td> x </td> </table>",
+        "<!-- a comment --> <!DOCTYPE html> <?pi?> <% server %> <!-- unclosed",
+        "<div title=\"unclosed",
+        "<script>a<% </script> %>b</Script >c</script>d",
+        "<STYLE>p { x: '</styles>' }</style/><b>e</b>",
+        "<iframe src=x><b>f</b></iframe><title>g<i></TITLE\n>h",
+        "<table><script>i</script><tr><style>j</style><td>k</table>",
+        "<ul><li><script>l</script></li></ul><textArea>m</textarea>",
+        "<noscript><script>n</script>o</noscript><noframes>p</noframes>",
+        "<xmp>q</xmp><script><!-- </script> --> r",
+        "<script>s</scrip</scriptx></script",
+        "<script>unclosed </scr",
+        "<plaintext>t</plaintext><script>u",
+        lexerInput,
+    };
+  }
+
+  @Test
+  public static final void testSanitizeReaderUsesBoundedWindow()
+      throws Exception {
+    String paragraph =
+        "<p class=\"x\" onclick=\"evil()\">Lorem &amp; ipsum <b>dolor</b> sit"
+        + " amet, consectetur adipiscing elit.</p>\n";
+    String text = "Lorem ipsum dolor sit amet &lt; consectetur. ";
+    String html =
+        stringRepeatedTimes(paragraph, 2000)
+        + "<div>" + stringRepeatedTimes(text, 2000) + "</div>"
+        + "<script>" + stringRepeatedTimes("var x = 1 < 2;\n", 2000)
+        + "</script>";
+
+    HtmlInputWindow window = new HtmlInputWindow(256);
+    assertEquals(
+        sanitize(html),
+        sanitize(new ChunkedReader(html, 1000), window));
+    assertTrue(
+        "window grew to " + window.capacity(), window.capacity() <= 1024);
+  }
+
+  @Test
+  public static final void testSanitizeReaderSplitsTextWithoutSpaces()
+      throws Exception {
+    // 4M chars of text with character references and no spaces.
+    String html =
+        "<p>" + stringRepeatedTimes("Lorem&amp;ipsum&lt;dolor&#x2d;", 140000)
+        + "</p>";
+
+    HtmlInputWindow window = new HtmlInputWindow(256);
+    assertEquals(
+        sanitize(html),
+        sanitize(new ChunkedReader(html, 1000), window));
+    assertTrue(
+        "window grew to " + window.capacity(), window.capacity() <= 1024);
+  }
+
   private static String sanitize(@Nullable String html) {
     StringBuilder sb = new StringBuilder();
+    HtmlSanitizer.sanitize(html, makePolicy(sb));
+    return sb.toString();
+  }
+
+  private static String sanitize(Reader html, HtmlInputWindow window)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    HtmlSanitizer.sanitize(
+        html, makePolicy(sb), HtmlStreamEventProcessor.Processors.IDENTITY,
+        window);
+    return sb.toString();
+  }
+
+  private static HtmlSanitizer.Policy makePolicy(StringBuilder sb) {
     HtmlStreamRenderer renderer = HtmlStreamRenderer.create(
         sb,
         new Handler<String>() {
@@ -491,9 +739,22 @@ public class HtmlSanitizerTest extends TestCase {
        .allowWithoutAttributes("img", "input")
        .build(renderer);
 
-    HtmlSanitizer.sanitize(html, policy);
+    return policy;
+  }
 
-    return sb.toString();
+  /** A reader that returns at most readSize characters per read. */
+  private static final class ChunkedReader extends StringReader {
+    private final int readSize;
+
+    ChunkedReader(String s, int readSize) {
+      super(s);
+      this.readSize = readSize;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      return super.read(cbuf, off, Math.min(len, readSize));
+    }
   }
 
   private static final String stringRepeatedTimes(String s, int n) {
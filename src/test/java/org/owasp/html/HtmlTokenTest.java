@@ -0,0 +1,81 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class HtmlTokenTest extends TestCase {
+
+  @Test
+  public static final void testPacking() {
+    int max = HtmlToken.MAX_INPUT_LENGTH;
+    int[][] ranges = {
+        { 0, 0 }, { 0, 1 }, { 3, 17 }, { 1 << 29, (1 << 29) + 1 },
+        { max - 1, max }, { max, max }, { 0, max },
+    };
+    for (int[] range : ranges) {
+      for (HtmlTokenType type : HtmlTokenType.values()) {
+        long token = HtmlToken.instance(range[0], range[1], type);
+        String msg = range[0] + "-" + range[1] + " " + type;
+        assertTrue(msg, token != HtmlToken.NONE);
+        assertEquals(msg, range[0], HtmlToken.start(token));
+        assertEquals(msg, range[1], HtmlToken.end(token));
+        assertEquals(msg, type, HtmlToken.type(token));
+      }
+    }
+  }
+
+  @Test
+  public static final void testReclassifyAndShift() {
+    long token = HtmlToken.instance(10, 20, HtmlTokenType.TEXT);
+
+    long attrName = HtmlToken.reclassify(token, HtmlTokenType.ATTRNAME);
+    assertEquals(HtmlTokenType.ATTRNAME, HtmlToken.type(attrName));
+    assertEquals(10, HtmlToken.start(attrName));
+    assertEquals(20, HtmlToken.end(attrName));
+
+    long shifted = HtmlToken.shift(token, 10);
+    assertEquals(HtmlTokenType.TEXT, HtmlToken.type(shifted));
+    assertEquals(0, HtmlToken.start(shifted));
+    assertEquals(10, HtmlToken.end(shifted));
+  }
+
+  @Test
+  public static final void testTokenInContextMatches() {
+    String html = "<a b=c>";
+    assertTrue(HtmlToken.tokenInContextMatches(
+        HtmlToken.instance(4, 5, HtmlTokenType.TEXT), html, "="));
+    assertFalse(HtmlToken.tokenInContextMatches(
+        HtmlToken.instance(3, 5, HtmlTokenType.TEXT), html, "="));
+    assertFalse(HtmlToken.tokenInContextMatches(
+        HtmlToken.instance(5, 6, HtmlTokenType.TEXT), html, "="));
+  }
+}
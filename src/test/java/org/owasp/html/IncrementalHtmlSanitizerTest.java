@@ -0,0 +1,114 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class IncrementalHtmlSanitizerTest extends TestCase {
+
+  private static final PolicyFactory POLICY = Sanitizers.FORMATTING
+      .and(Sanitizers.BLOCKS)
+      .and(Sanitizers.LINKS)
+      .and(Sanitizers.STYLES)
+      .and(Sanitizers.TABLES);
+
+  @Test
+  public static final void testOutputBeforeFinish() {
+    StringBuilder out = new StringBuilder();
+    IncrementalHtmlSanitizer s = POLICY.incrementalSanitizer(out);
+    s.feed("<p>Hello, <b onclick=\"evil()\">World</b>");
+    assertEquals("<p>Hello, <b>World</b>", out.toString());
+    s.feed("</p><p title=\"unfinis");
+    assertEquals("<p>Hello, <b>World</b></p>", out.toString());
+    s.feed("hed\">Bye");
+    // The last char of text is held back in case more text continues it.
+    assertEquals("<p>Hello, <b>World</b></p><p>By", out.toString());
+    s.finish();
+    assertEquals("<p>Hello, <b>World</b></p><p>Bye</p>", out.toString());
+  }
+
+  @Test
+  public static final void testTagBalancingAcrossChunks() {
+    StringBuilder out = new StringBuilder();
+    IncrementalHtmlSanitizer s = POLICY.incrementalSanitizer(out);
+    s.feed("<ul><li>One");
+    s.feed("<li>Two</u");
+    s.feed("l><table><tr><td>Three");
+    s.finish();
+    assertEquals(
+        POLICY.sanitize("<ul><li>One<li>Two</ul><table><tr><td>Three"),
+        out.toString());
+  }
+
+  @Test
+  public static final void testFeedAfterFinish() {
+    IncrementalHtmlSanitizer s =
+        POLICY.incrementalSanitizer(new StringBuilder());
+    s.feed("foo");
+    s.finish();
+    s.finish();
+    try {
+      s.feed("bar");
+      fail("feed after finish");
+    } catch (IllegalStateException ex) {
+      // pass
+    }
+  }
+
+  @Test
+  public static final void testArbitraryChunkBoundaries() {
+    String html =
+        "<div style=\"color: red; position: absolute\">Fish &amp chips"
+        + " &#x3c;&#60; &CounterClockwiseContourIntegral; \ud83d\ude00"
+        + "<a href=http://example.com/ title=foo bar>link</a>"
+        + "<script>if (a < b) { document.write('</div>') }</script>"
+        + "<!-- comment --><textarea>a &lt; b</textarea>"
+        + "<table>  <tr>  <td> x </td> </tr> </table>"
+        + "<input type=checkbox checked=><p<b>odd</p></div>"
+        + "<style>p { color: red }</style>   trailing  text \n";
+    String want = POLICY.sanitize(html);
+    Random rnd = new Random(html.hashCode());
+    for (int run = 0; run < 200; ++run) {
+      StringBuilder out = new StringBuilder();
+      IncrementalHtmlSanitizer s = POLICY.incrementalSanitizer(out);
+      for (int pos = 0, n = html.length(); pos < n;) {
+        int end = Math.min(n, pos + rnd.nextInt(run < 100 ? 4 : 40));
+        s.feed(html.substring(pos, end));
+        pos = end;
+      }
+      s.finish();
+      assertEquals(want, out.toString());
+    }
+  }
+}
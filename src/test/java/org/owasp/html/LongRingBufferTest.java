@@ -0,0 +1,108 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class LongRingBufferTest extends TestCase {
+
+  @Test
+  public static final void testAgainstArrayDeque() {
+    Random r = new Random(0x5eed);
+    LongRingBuffer buf = new LongRingBuffer(4);
+    ArrayDeque<Long> deque = new ArrayDeque<>();
+    for (int step = 0; step < 10000; ++step) {
+      long value = r.nextLong();
+      switch (r.nextInt(5)) {
+        case 0:
+          buf.addLast(value);
+          deque.addLast(value);
+          break;
+        case 1:
+          buf.addFirst(value);
+          deque.addFirst(value);
+          break;
+        case 2: case 3:
+          if (deque.isEmpty()) {
+            assertTrue(buf.isEmpty());
+          } else {
+            assertEquals(deque.removeFirst().longValue(), buf.removeFirst());
+          }
+          break;
+        case 4:
+          if (r.nextInt(50) == 0) {
+            buf.clear();
+            deque.clear();
+          }
+          break;
+      }
+      assertEquals(deque.size(), buf.size());
+    }
+    List<Long> contents = new ArrayList<>();
+    for (int i = 0; i < buf.size(); ++i) {
+      contents.add(buf.get(i));
+    }
+    assertEquals(new ArrayList<>(deque), contents);
+    assertEquals(deque.toString(), buf.toString());
+  }
+
+  @Test
+  public static final void testWrapAroundAndCopy() {
+    LongRingBuffer buf = new LongRingBuffer(4);
+    buf.addLast(2);
+    buf.addLast(3);
+    buf.addFirst(1);
+    buf.addFirst(0);  // Full and wrapped.
+    assertEquals("[0, 1, 2, 3]", buf.toString());
+    buf.addLast(4);  // Grows.
+    assertEquals("[0, 1, 2, 3, 4]", buf.toString());
+    buf.set(4, 5);
+    assertEquals(5, buf.get(4));
+
+    LongRingBuffer copy = new LongRingBuffer(1);
+    copy.copyFrom(buf);
+    assertEquals("[0, 1, 2, 3, 5]", copy.toString());
+    copy.removeFirst();
+    assertEquals("[0, 1, 2, 3, 5]", buf.toString());
+
+    try {
+      buf.get(5);
+      fail();
+    } catch (IndexOutOfBoundsException ex) {
+      // pass
+    }
+  }
+}
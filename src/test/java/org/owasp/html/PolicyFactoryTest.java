@@ -29,9 +29,18 @@
 package org.owasp.html;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.junit.Test;
@@ -602,6 +611,385 @@ public final class PolicyFactoryTest extends TestCase {
     assertEquals("Hi", resultString);
   }
 
+  @Test
+  public static void testSanitizeReader() throws IOException {
+    PolicyFactory f = Sanitizers.FORMATTING.and(Sanitizers.LINKS);
+    String html =
+        "<b onclick=evil()>Hello</b>, <a href=\"javascript:alert(1)\">World</a>"
+        + "<script>alert(1)</script><a href=\"http://example.com/\">!";
+
+    StringBuilder out = new StringBuilder();
+    List<String> discarded = new ArrayList<>();
+    f.sanitize(
+        new StringReader(html), out,
+        new HtmlChangeListener<List<String>>() {
+          public void discardedTag(List<String> ctx, String elementName) {
+            ctx.add(elementName);
+          }
+
+          public void discardedAttributes(
+              List<String> ctx, String tagName, String... attributeNames) {
+            ctx.addAll(Arrays.asList(attributeNames));
+          }
+        },
+        discarded);
+
+    assertEquals(f.sanitize(html), out.toString());
+    assertEquals(Arrays.asList("onclick", "a", "script"), discarded);
+  }
+
+  @Test
+  public static void testSanitizeCharSequence() throws IOException {
+    PolicyFactory f = Sanitizers.FORMATTING.and(Sanitizers.LINKS);
+    String html =
+        "<b onclick=evil()>Hello</b>, <a href=\"javascript:alert(1)\">World</a>"
+        + "<script>alert(1)</script><a href=\"http://example.com/\">!";
+
+    StringBuilder out = new StringBuilder();
+    f.sanitize(CharBuffer.wrap(html.toCharArray()), out);
+    assertEquals(f.sanitize(html), out.toString());
+  }
+
+  @Test
+  public static void testSanitizeReaderPropagatesOutputErrors() {
+    final IOException failure = new IOException("disk full");
+    Writer out = new Writer() {
+      @Override
+      public void write(char[] cbuf, int off, int len) throws IOException {
+        throw failure;
+      }
+
+      @Override
+      public void flush() {
+        // Nothing buffered.
+      }
+
+      @Override
+      public void close() {
+        // Nothing to release.
+      }
+    };
+    try {
+      Sanitizers.FORMATTING.sanitize(new StringReader("<b>Hello</b>"), out);
+      fail("expected exception");
+    } catch (IOException ex) {
+      assertSame(failure, ex);
+    }
+  }
+
+  @Test
+  public static void testAppliedPoliciesShareTables() {
+    PolicyFactory f = Sanitizers.FORMATTING.and(Sanitizers.LINKS);
+    ElementAndAttributePolicyBasedSanitizerPolicy p =
+        (ElementAndAttributePolicyBasedSanitizerPolicy)
+        f.apply(HtmlStreamRenderer.create(
+            new StringBuilder(), Handler.DO_NOTHING));
+    ElementAndAttributePolicyBasedSanitizerPolicy q =
+        (ElementAndAttributePolicyBasedSanitizerPolicy)
+        f.apply(HtmlStreamRenderer.create(
+            new StringBuilder(), Handler.DO_NOTHING));
+    assertNotSame(p, q);
+    assertSame(p.policyTable, q.policyTable);
+  }
+
+  @Test
+  public static void testMarkupFreeInputMatchesFullPipeline() {
+    String[] parts = {
+        "Hello", " ", "\n", "\r\n", "\t", "\0", "\u0008", "&", "&amp;", "&lt;",
+        "&#60;", "&#x1F600;", "&bogus;", "&", ">", "\"", "'", "+", "=", "@",
+        "`", "{", "{{", "}}", "\u200C", "\u0915\u094D\u0930", "\u093E",
+        "\u09BE", "\u0C3E", "\u1FEF", "\uD83D\uDE00", "\uD83D", "\uDE00",
+        "\uFEFF", "\uFFFE", "\uFF1C", "\u00E9", "\u4E2D",
+    };
+    PolicyFactory f = Sanitizers.FORMATTING.and(Sanitizers.LINKS);
+    Random r = new Random(0x5eed);
+    for (int i = 0; i < 5000; ++i) {
+      StringBuilder sb = new StringBuilder();
+      for (int j = r.nextInt(12); --j >= 0;) {
+        sb.append(parts[r.nextInt(parts.length)]);
+      }
+      String html = sb.toString();
+      assertTrue(html, f.isMarkupFree(html));
+
+      StringBuilder want = new StringBuilder();
+      HtmlSanitizer.sanitize(
+          html,
+          f.apply(HtmlStreamRenderer.create(want, Handler.DO_NOTHING)));
+      assertEquals(html, want.toString(), f.sanitize(html));
+    }
+  }
+
+  @Test
+  public static void testMarkupFreeInputReturnedAsIs() {
+    PolicyFactory f = Sanitizers.FORMATTING;
+    String html = new String("Hello, World! \u00E9\u4E2D.\n");
+    assertSame(html, f.sanitize(html));
+    assertEquals("1 &#43; 1 &gt; 1", f.sanitize("1 + 1 > 1"));
+    assertEquals("a &amp; b", f.sanitize("a &amp; b"));
+    assertFalse(f.isMarkupFree("a <b>c</b>"));
+    assertFalse(
+        f.withBudget(SanitizerBudget.UNLIMITED.withMaxTokens(10))
+        .isMarkupFree("Hello"));
+  }
+
+  @Test
+  public static void testCleanInputReturnedAsIs() {
+    PolicyFactory f = Sanitizers.FORMATTING.and(Sanitizers.LINKS)
+        .and(Sanitizers.BLOCKS).and(Sanitizers.TABLES);
+    List<String> inputs = batchOfInputs(500);
+    // Text that loses a ZWNJ only once the tag between is dropped.
+    inputs.add("<b>x\u200C<foo>\u093E</b>");
+    inputs.add("<b>x\u200C</b>\u093E");
+    int nRoundTripped = 0;
+    for (String input : inputs) {
+      if (input == null) { continue; }
+      StringBuilder want = new StringBuilder();
+      HtmlSanitizer.sanitize(
+          input,
+          f.apply(HtmlStreamRenderer.create(want, Handler.DO_NOTHING)));
+      String got = f.sanitize(input);
+      assertEquals(input, want.toString(), got);
+      assertEquals(input, got.equals(input), f.isClean(input));
+
+      // Output that survives another pass comes back as the same instance.
+      String copy = new String(got);
+      String again = f.sanitize(copy);
+      assertEquals(copy, again.equals(copy), f.isClean(copy));
+      if (again.equals(copy)) {
+        assertSame(copy, again);
+        ++nRoundTripped;
+      }
+    }
+    assertTrue(nRoundTripped > inputs.size() / 2);
+  }
+
+  @Test
+  public static void testAttributeCache() {
+    final int[] calls = new int[2];
+    AttributePolicy pure = new AttributePolicy() {
+      public String apply(String elementName, String attrName, String value) {
+        ++calls[0];
+        return value.startsWith("x") ? null : value.toUpperCase(Locale.ROOT);
+      }
+
+      @Override
+      public boolean isPure() {
+        return true;
+      }
+    };
+    AttributePolicy impure = new AttributePolicy() {
+      public String apply(String elementName, String attrName, String value) {
+        ++calls[1];
+        return value;
+      }
+    };
+    PolicyFactory uncached = new HtmlPolicyBuilder()
+        .allowElements("span", "a")
+        .allowAttributes("class").matching(pure).globally()
+        .allowAttributes("title").matching(impure).globally()
+        .allowAttributes("href").onElements("a")
+        .allowStandardUrlProtocols()
+        .toFactory();
+    PolicyFactory cached = uncached.withAttributeCache(1 << 16)
+        .and(Sanitizers.FORMATTING);
+
+    String html = "<span class=foo title=bar>1</span>"
+        + "<span class=xfoo title=bar>2</span>"
+        + "<a href='HTTP://example.com/(x)' class=foo>3</a>"
+        + "<a href='javascript:evil()'>4</a>";
+    String want = uncached.and(Sanitizers.FORMATTING).sanitize(html);
+    assertEquals(
+        "<span class=\"FOO\" title=\"bar\">1</span>"
+        + "<span title=\"bar\">2</span>"
+        + "<a href=\"HTTP://example.com/%28x%29\" class=\"FOO\">3</a>"
+        + "4",
+        want);
+    Arrays.fill(calls, 0);
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(want, cached.sanitize(html));
+    }
+    // Only the first sanitize called the pure policy for each of
+    // (span, foo), (span, xfoo) and (a, foo).
+    assertEquals(3, calls[0]);
+    assertEquals(6, calls[1]);
+  }
+
+  @Test
+  public static void testBuiltInAttributePoliciesArePure() {
+    AttributePolicy urls = new FilterUrlByProtocolAttributePolicy(
+        List.of("http", "https"));
+    assertTrue(urls.isPure());
+    assertTrue(StandardUrlAttributePolicy.INSTANCE.isPure());
+    assertTrue(new SrcsetAttributePolicy(urls).isPure());
+    AttributePolicy impure = new AttributePolicy() {
+      public String apply(String elementName, String attrName, String value) {
+        return value;
+      }
+    };
+    assertFalse(impure.isPure());
+    assertFalse(new SrcsetAttributePolicy(impure).isPure());
+    assertTrue(AttributePolicy.Util.join(
+        urls, StandardUrlAttributePolicy.INSTANCE).isPure());
+    assertFalse(AttributePolicy.Util.join(urls, impure).isPure());
+    // A subclass might consult other state.
+    AttributePolicy sub = new FilterUrlByProtocolAttributePolicy(
+        List.of("http")) {
+      @Override
+      public String apply(String elementName, String attrName, String value) {
+        return super.apply(elementName, attrName, value);
+      }
+    };
+    assertFalse(sub.isPure());
+  }
+
+  @Test
+  public static void testMatchingPure() {
+    final int[] calls = new int[1];
+    AttributePolicy upper = new AttributePolicy() {
+      public String apply(String elementName, String attrName, String value) {
+        ++calls[0];
+        return value.toUpperCase(Locale.ROOT);
+      }
+    };
+    String html = "<span class=a>1</span><span class=a>2</span>";
+    String want = "<span class=\"A\">1</span><span class=\"A\">2</span>";
+
+    PolicyFactory impure = new HtmlPolicyBuilder()
+        .allowElements("span")
+        .allowAttributes("class").matching(upper).globally()
+        .toFactory()
+        .withAttributeCache(1 << 10);
+    assertEquals(want, impure.sanitize(html));
+    assertEquals(want, impure.sanitize(html));
+    assertEquals(4, calls[0]);
+
+    calls[0] = 0;
+    PolicyFactory pure = new HtmlPolicyBuilder()
+        .allowElements("span")
+        .allowAttributes("class").matchingPure(upper).globally()
+        .toFactory()
+        .withAttributeCache(1 << 10);
+    assertEquals(want, pure.sanitize(html));
+    assertEquals(want, pure.sanitize(html));
+    assertEquals(1, calls[0]);
+  }
+
+  private static List<String> batchOfInputs(int n) {
+    String[] parts = {
+        "<b>", "bold", "</b>", "<a href='http://x/' onclick='y()'>", "</a>",
+        "<script>evil()</script>", "<p>", "1 < 2", "&amp;", "<textarea>",
+        "{{x}}", "<table><tr><td>", "<i",
+    };
+    Random r = new Random(0x5eed);
+    List<String> inputs = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      if (i % 97 == 0) {
+        inputs.add(null);
+        continue;
+      }
+      StringBuilder sb = new StringBuilder();
+      for (int j = r.nextInt(20); --j >= 0;) {
+        sb.append(parts[r.nextInt(parts.length)]);
+      }
+      inputs.add(sb.toString());
+    }
+    return inputs;
+  }
+
+  @Test
+  public static void testSanitizeAll() throws Exception {
+    PolicyFactory f = Sanitizers.FORMATTING.and(Sanitizers.LINKS)
+        .and(Sanitizers.BLOCKS).and(Sanitizers.TABLES);
+    for (int n : new int[] { 0, 1, BatchSanitizer.CHUNK_SIZE + 1, 5000 }) {
+      List<String> inputs = batchOfInputs(n);
+      List<String> want = new ArrayList<>();
+      for (String input : inputs) {
+        want.add(f.sanitize(input));
+      }
+
+      assertEquals(want, f.sanitizeAll(inputs));
+
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      try {
+        assertEquals(want, f.sanitizeAll(new LinkedList<>(inputs), executor));
+      } finally {
+        executor.shutdown();
+      }
+
+      assertEquals(
+          want,
+          f.sanitizeAll(inputs.parallelStream())
+          .collect(Collectors.toList()));
+      assertEquals(
+          want,
+          f.sanitizeAll(inputs.stream()).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public static void testSanitizeAllPropagatesFailures() {
+    final RuntimeException failure = new IllegalStateException("boom");
+    PolicyFactory f = new HtmlPolicyBuilder()
+        .allowElements(
+            new ElementPolicy() {
+              public String apply(String elementName, List<String> attrs) {
+                throw failure;
+              }
+            }, "blink")
+        .toFactory();
+    List<String> inputs = new ArrayList<>(batchOfInputs(1000));
+    inputs.set(900, "<blink>");
+    try {
+      f.sanitizeAll(inputs);
+      fail("expected exception");
+    } catch (IllegalStateException ex) {
+      assertSame(failure, ex);
+    }
+  }
+
+  @Test
+  public static void testSanitizeAllStopsWorkersOnFailure()
+      throws Exception {
+    final Thread caller = Thread.currentThread();
+    final RuntimeException failure = new IllegalStateException("boom");
+    final AtomicInteger calls = new AtomicInteger();
+    PolicyFactory f = new HtmlPolicyBuilder()
+        .allowElements(
+            new ElementPolicy() {
+              public String apply(String elementName, List<String> attrs) {
+                if (Thread.currentThread() == caller) { throw failure; }
+                calls.incrementAndGet();
+                try {
+                  Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                  Thread.currentThread().interrupt();
+                }
+                return elementName;
+              }
+            }, "blink")
+        .toFactory();
+    List<String> inputs = new ArrayList<>();
+    for (int i = 0; i < 2000; ++i) {
+      inputs.add("<blink>" + i + "</blink>");
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      try {
+        f.sanitizeAll(inputs, executor);
+        fail("expected exception");
+      } catch (IllegalStateException ex) {
+        assertSame(failure, ex);
+      }
+      // No worker is still sanitizing.
+      int nCalls = calls.get();
+      Thread.sleep(50);
+      assertEquals(nCalls, calls.get());
+      assertTrue(nCalls < inputs.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   static final class SubstringFilter implements AttributePolicy {
     final String substr;
 
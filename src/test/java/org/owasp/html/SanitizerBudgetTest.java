@@ -0,0 +1,318 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+
+package org.owasp.html;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class SanitizerBudgetTest extends TestCase {
+
+  private static final PolicyFactory POLICY = Sanitizers.FORMATTING
+      .and(Sanitizers.LINKS).and(Sanitizers.BLOCKS).and(Sanitizers.IMAGES);
+
+  private static final SanitizerBudget FAIL =
+      SanitizerBudget.UNLIMITED.withOutcome(SanitizerBudget.Outcome.FAIL);
+
+  @Test
+  public static final void testUnlimited() {
+    String html = "<p>Hello, <b>World</b>!<script>alert(1)</script>";
+    assertSame(SanitizerBudget.UNLIMITED, POLICY.getBudget());
+    assertEquals(
+        POLICY.sanitize(html),
+        POLICY.withBudget(SanitizerBudget.UNLIMITED).sanitize(html));
+  }
+
+  @Test
+  public static final void testMaxInputLength() {
+    SanitizerBudget budget = SanitizerBudget.UNLIMITED.withMaxInputLength(8);
+    assertEquals(
+        "<b>Hello</b>",
+        POLICY.withBudget(budget).sanitize("<b>Hello, World</b>"));
+    // Reaching the limit exactly is fine.
+    assertEquals(
+        "<b>Hello</b>",
+        POLICY.withBudget(budget.and(FAIL)).sanitize("<b>Hello"));
+    assertExceeded(
+        SanitizerBudget.Limit.INPUT_LENGTH, POLICY.withBudget(budget.and(FAIL)),
+        "<b>Hello, World</b>");
+  }
+
+  @Test
+  public static final void testMaxOutputLength() {
+    String html = "<p>Hello</p><p>World</p><p>!</p>";
+    SanitizerBudget budget =
+        SanitizerBudget.UNLIMITED.withMaxOutputLength(10);
+    // Text is cut short to leave room for the end tags.
+    assertEquals(
+        "<p>Hel</p>", POLICY.withBudget(budget).sanitize(html));
+    assertEquals(
+        "<p>Hel</p>", POLICY.withBudget(budget).newSession().sanitize(html));
+    // Tags that do not fit are dropped.
+    assertEquals(
+        "<p></p>",
+        POLICY.withBudget(budget).sanitize("<p><b><i>Hello</i></b></p>"));
+    assertExceeded(
+        SanitizerBudget.Limit.OUTPUT_LENGTH,
+        POLICY.withBudget(budget.and(FAIL)), html);
+    // Reaching the limit exactly is fine.
+    assertEquals(
+        "<p>Hello</p>",
+        POLICY.withBudget(
+            SanitizerBudget.UNLIMITED.withMaxOutputLength(12).and(FAIL))
+        .sanitize("<p>Hello</p>"));
+  }
+
+  @Test
+  public static final void testMaxOutputLengthOfOneToken() {
+    SanitizerBudget budget = SanitizerBudget.UNLIMITED.withMaxOutputLength(3);
+    assertEquals("hel", POLICY.withBudget(budget).sanitize("hello world"));
+    assertEquals(
+        "hel", POLICY.withBudget(budget).newSession().sanitize("hello world"));
+    // Text is measured encoded, and a supplementary code-point is not split.
+    assertEquals(
+        "&lt;",
+        POLICY.withBudget(SanitizerBudget.UNLIMITED.withMaxOutputLength(7))
+        .sanitize("&lt;&lt;"));
+    assertEquals(
+        "a",
+        POLICY.withBudget(SanitizerBudget.UNLIMITED.withMaxOutputLength(2))
+        .sanitize("a\uD83D\uDE00b"));
+    assertExceeded(
+        SanitizerBudget.Limit.OUTPUT_LENGTH,
+        POLICY.withBudget(budget.and(FAIL)), "hello world");
+    try {
+      POLICY.withBudget(budget.and(FAIL)).newSession().sanitize("hello world");
+      fail();
+    } catch (BudgetExceededException ex) {
+      assertEquals(SanitizerBudget.Limit.OUTPUT_LENGTH, ex.getLimit());
+    }
+  }
+
+  @Test
+  public static final void testOutputCountingRetractsZwnj() {
+    // A ZWNJ that turns out to precede a vowel is removed from the output
+    // through the counter, and the count goes down with it.
+    SanitizerBudget budget =
+        SanitizerBudget.UNLIMITED.withMaxOutputLength(1000);
+    assertEquals(
+        "x\u093E",
+        POLICY.withBudget(budget).sanitize("x\u200C<foo></foo>\u093E"));
+    assertEquals(
+        "x\u093E",
+        POLICY.withBudget(budget).newSession()
+        .sanitize("x\u200C<foo></foo>\u093E"));
+  }
+
+  @Test
+  public static final void testMaxTextLength() {
+    String html = "<p>Hello, <b>World</b>!</p><p>More</p>";
+    SanitizerBudget budget = SanitizerBudget.UNLIMITED.withMaxTextLength(9);
+    assertEquals(
+        "<p>Hello, <b>Wo</b></p>", POLICY.withBudget(budget).sanitize(html));
+    // Markup does not count, and text that fits exactly is not cut.
+    assertEquals(
+        "<p>Hello, <b>World</b></p>",
+        POLICY.withBudget(SanitizerBudget.UNLIMITED.withMaxTextLength(12))
+        .sanitize(html));
+    // A supplementary code-point is not split.
+    assertEquals(
+        "a",
+        POLICY.withBudget(SanitizerBudget.UNLIMITED.withMaxTextLength(2))
+        .sanitize("a\uD83D\uDE00b"));
+    assertExceeded(
+        SanitizerBudget.Limit.TEXT_LENGTH,
+        POLICY.withBudget(budget.and(FAIL)), html);
+    assertEquals(
+        "<p>Hello, <b>World</b>!</p><p>More</p>",
+        POLICY.withBudget(
+            SanitizerBudget.UNLIMITED.withMaxTextLength(17).and(FAIL))
+        .sanitize(html));
+
+    SanitizerSession session = POLICY.withBudget(budget).newSession();
+    assertEquals("<p>Hello, <b>Wo</b></p>", session.sanitize(html));
+    assertEquals("<p>Hello, <b>Wo</b></p>", session.sanitize(html));
+  }
+
+  @Test
+  public static final void testPreviewStopsLexing() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100000; ++i) {
+      sb.append("<p>Paragraph ").append(i).append("</p>");
+    }
+    final int[] openTagCount = new int[1];
+    PolicyFactory counting = POLICY.and(new HtmlPolicyBuilder()
+        .withPreprocessor(new HtmlStreamEventProcessor() {
+          public HtmlStreamEventReceiver wrap(HtmlStreamEventReceiver r) {
+            return new HtmlStreamEventReceiverWrapper(r) {
+              @Override
+              public void openTag(String elementName, List<String> attrs) {
+                ++openTagCount[0];
+                underlying.openTag(elementName, attrs);
+              }
+            };
+          }
+        })
+        .toFactory());
+    String preview = counting
+        .withBudget(SanitizerBudget.UNLIMITED.withMaxTextLength(30))
+        .sanitize(sb.toString());
+    assertEquals(
+        "<p>Paragraph 0</p><p>Paragraph 1</p><p>Paragrap</p>", preview);
+    assertEquals(3, openTagCount[0]);
+  }
+
+  @Test
+  public static final void testMaxAttributesPerTag() {
+    String html =
+        "<img src=\"x.png\" alt=\"x\" title=\"x\" width=\"1\" height=\"1\">"
+        + "<img src=\"y.png\">";
+    SanitizerBudget budget =
+        SanitizerBudget.UNLIMITED.withMaxAttributesPerTag(2);
+    assertEquals(
+        "<img src=\"x.png\" alt=\"x\" /><img src=\"y.png\" />",
+        POLICY.withBudget(budget).sanitize(html));
+    assertExceeded(
+        SanitizerBudget.Limit.ATTRIBUTES_PER_TAG,
+        POLICY.withBudget(budget.and(FAIL)), html);
+  }
+
+  @Test
+  public static final void testMaxAttributeValueLength() {
+    String html = "<img src=\"a.png\" alt=\"long text\">"
+        + "<img src=\"b.png\" alt=\"&amp;\">";
+    SanitizerBudget budget =
+        SanitizerBudget.UNLIMITED.withMaxAttributeValueLength(5);
+    // The length in the input counts, so &amp; is 5 chars.
+    assertEquals(
+        "<img src=\"a.png\" /><img src=\"b.png\" alt=\"&amp;\" />",
+        POLICY.withBudget(budget).sanitize(html));
+    assertExceeded(
+        SanitizerBudget.Limit.ATTRIBUTE_VALUE_LENGTH,
+        POLICY.withBudget(budget.and(FAIL)), html);
+  }
+
+  @Test
+  public static final void testMaxTokens() {
+    String html = "<b>Hello</b> <i title=x>World</i>";
+    // <b, >, Hello, </b, >, the space, <i, title, and then x is one too many.
+    SanitizerBudget budget = SanitizerBudget.UNLIMITED.withMaxTokens(8);
+    // The <i> tag is unfinished when the limit is reached so is dropped.
+    assertEquals("<b>Hello</b> ", POLICY.withBudget(budget).sanitize(html));
+    assertExceeded(
+        SanitizerBudget.Limit.TOKENS, POLICY.withBudget(budget.and(FAIL)),
+        html);
+  }
+
+  @Test
+  public static final void testTimeLimit() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      sb.append("<b>").append(i).append("</b>");
+    }
+    String html = sb.toString();
+    SanitizerBudget budget =
+        SanitizerBudget.UNLIMITED.withTimeLimit(0, TimeUnit.NANOSECONDS);
+    String truncated = POLICY.withBudget(budget).sanitize(html);
+    assertTrue(truncated, truncated.length() < html.length() / 10);
+    assertTrue(truncated, truncated.endsWith("</b>"));
+    assertExceeded(
+        SanitizerBudget.Limit.TIME, POLICY.withBudget(budget.and(FAIL)),
+        html);
+  }
+
+  @Test
+  public static final void testAnd() {
+    SanitizerBudget a = SanitizerBudget.UNLIMITED.withMaxInputLength(10);
+    SanitizerBudget b = SanitizerBudget.UNLIMITED.withMaxInputLength(5)
+        .withMaxTokens(100);
+    SanitizerBudget ab = a.and(b);
+    assertEquals(5, ab.maxInputLength);
+    assertEquals(100, ab.maxTokens);
+    assertEquals(SanitizerBudget.Outcome.TRUNCATE, ab.outcome);
+    assertEquals(SanitizerBudget.Outcome.FAIL, ab.and(FAIL).outcome);
+    assertSame(a, a.and(SanitizerBudget.UNLIMITED));
+
+    PolicyFactory f = POLICY.withBudget(a).and(Sanitizers.TABLES.withBudget(b));
+    assertEquals("<b>He</b>", f.sanitize("<b>Hello</b>"));
+
+    PolicyFactory built = new HtmlPolicyBuilder()
+        .allowElements("b")
+        .withBudget(a)
+        .withBudget(b)
+        .toFactory();
+    assertEquals("<b>He</b>", built.sanitize("<b>Hello</b>"));
+  }
+
+  @Test
+  public static final void testOtherEntryPoints() throws IOException {
+    String html = "<b>Hello, World</b>";
+    PolicyFactory f = POLICY.withBudget(
+        SanitizerBudget.UNLIMITED.withMaxInputLength(8));
+
+    StringBuilder sb = new StringBuilder();
+    f.sanitize(html, sb);
+    assertEquals("<b>Hello</b>", sb.toString());
+
+    sb.setLength(0);
+    f.sanitize(new StringReader(html), sb);
+    assertEquals("<b>Hello</b>", sb.toString());
+
+    sb.setLength(0);
+    IncrementalHtmlSanitizer incremental = f.incrementalSanitizer(sb);
+    incremental.feed("<b>Hel");
+    incremental.feed("lo, World</b>");
+    incremental.finish();
+    assertEquals("<b>Hello</b>", sb.toString());
+
+    SanitizerSession session = f.newSession();
+    // Each call gets the whole budget.
+    assertEquals("<b>Hello</b>", session.sanitize(html));
+    assertEquals("<b>Hello</b>", session.sanitize(html));
+
+    assertEquals("<b>Hello</b>", f.sanitizeInParallel(html));
+  }
+
+  private static void assertExceeded(
+      SanitizerBudget.Limit limit, PolicyFactory f, String html) {
+    try {
+      f.sanitize(html);
+    } catch (BudgetExceededException ex) {
+      assertEquals(limit, ex.getLimit());
+      return;
+    }
+    fail(html);
+  }
+}
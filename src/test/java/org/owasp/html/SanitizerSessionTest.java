@@ -0,0 +1,170 @@
+// Copyright (c) 2026, Mike Samuel
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+//
+// Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+// Redistributions in binary form must reproduce the above copyright
+// notice, this list of conditions and the following disclaimer in the
+// documentation and/or other materials provided with the distribution.
+// Neither the name of the OWASP nor the names of its contributors may
+// be used to endorse or promote products derived from this software
+// without specific prior written permission.
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+// FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+// COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+// INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+// BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+// LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+// CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+// LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+// ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+// POSSIBILITY OF SUCH DAMAGE.
+package org.owasp.html;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings("javadoc")
+public final class SanitizerSessionTest extends TestCase {
+
+  /** Inputs that leave various parts of the pipeline in odd states. */
+  private static final List<String> INPUTS = Arrays.asList(
+      "",
+      "Hello, <b>World</b>!",
+      "<a href=\"http://example.com/\" onclick=\"evil()\">link</a>",
+      "<textarea>unclosed",
+      "<title>unclosed",
+      "<svg><foreignObject><p>foreign",
+      "<math><mi>x",
+      "<script>unclosed",
+      "<plaintext><b>plain",
+      "<xmp>x</xmp><listing>",
+      "<table><tr><td>1<td>2",
+      "<ul><li>1<li>2<ol><li>3",
+      "<b><i>misnested</b></i>",
+      "<p title=\"unclosed",
+      "<!-- unclosed",
+      deeplyNested(300),
+      "1 < 2 &amp;& 3 > 2",
+      "</b></i></p>stray closes",
+      "{{template}} text");
+
+  private static final PolicyFactory[] POLICIES = {
+      Sanitizers.FORMATTING.and(Sanitizers.LINKS).and(Sanitizers.BLOCKS)
+          .and(Sanitizers.TABLES).and(Sanitizers.STYLES),
+      new HtmlPolicyBuilder()
+          .allowElements("b", "p", "textarea", "title", "svg", "math", "mi",
+                         "xmp", "pre")
+          .allowTextIn("textarea", "title")
+          .allowStandardUrlProtocols()
+          .withPreprocessor(new HtmlStreamEventProcessor() {
+            public HtmlStreamEventReceiver wrap(HtmlStreamEventReceiver r) {
+              return new HtmlStreamEventReceiverWrapper(r) {
+                @Override
+                public void text(String text) {
+                  underlying.text(text.toUpperCase(Locale.ROOT));
+                }
+              };
+            }
+          })
+          .toFactory(),
+  };
+
+  private static String deeplyNested(int depth) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < depth; ++i) {
+      sb.append("<div>");
+    }
+    return sb.append("deep").toString();
+  }
+
+  @Test
+  public static final void testSessionMatchesFactory() {
+    Random r = new Random(0x5eed);
+    for (PolicyFactory f : POLICIES) {
+      SanitizerSession session = f.newSession();
+      List<String> inputs = new ArrayList<>();
+      for (int i = 0; i < 4; ++i) {
+        inputs.addAll(INPUTS);
+      }
+      Collections.shuffle(inputs, r);
+      for (String input : inputs) {
+        assertEquals(input, f.sanitize(input), session.sanitize(input));
+      }
+      assertEquals("", session.sanitize(null));
+    }
+  }
+
+  @Test
+  public static final void testZwnjDroppedBeforeVowel() {
+    // The ZWNJ is only seen to precede a vowel once the element between
+    // them has been dropped, after the ZWNJ was written.
+    String input = "x\u200C<foo></foo>\u093E";
+    String want = "x\u093E";
+    PolicyFactory f = Sanitizers.FORMATTING;
+    assertEquals(want, f.sanitize(input));
+    assertEquals(want, f.newSession().sanitize(input));
+    assertEquals(List.of(want), f.sanitizeAll(List.of(input)));
+    assertEquals(
+        List.of(want),
+        f.sanitizeAll(List.of(input).stream()).collect(Collectors.toList()));
+  }
+
+  @Test
+  public static final void testSanitizeToAppendable() throws IOException {
+    PolicyFactory f = POLICIES[0];
+    SanitizerSession session = f.newSession();
+    for (String input : INPUTS) {
+      StringBuilder sb = new StringBuilder("prefix:");
+      session.sanitize(new StringBuilder(input), sb);
+      assertEquals(input, "prefix:" + f.sanitize(input), sb.toString());
+    }
+  }
+
+  @Test
+  public static final void testRecoversFromFailedCall() {
+    PolicyFactory f = POLICIES[0];
+    SanitizerSession session = f.newSession();
+    final IOException failure = new IOException("full");
+    Appendable failing = new Appendable() {
+      private int budget = 5;
+      public Appendable append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+      }
+      public Appendable append(CharSequence csq, int start, int end)
+          throws IOException {
+        budget -= end - start;
+        if (budget < 0) { throw failure; }
+        return this;
+      }
+      public Appendable append(char c) throws IOException {
+        return append(String.valueOf(c));
+      }
+    };
+    String input = "<b>Hello, <i>World</i></b><textarea>";
+    try {
+      session.sanitize(input, failing);
+      fail("expected exception");
+    } catch (IOException ex) {
+      assertSame(failure, ex);
+    }
+    // The session is not left in the middle of a document.
+    assertEquals(f.sanitize(input), session.sanitize(input));
+  }
+}
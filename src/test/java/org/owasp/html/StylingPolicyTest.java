@@ -28,6 +28,7 @@
 
 package org.owasp.html;
 
+import java.util.List;
 import java.util.function.Function;
 
 import javax.annotation.Nullable;
@@ -344,6 +345,41 @@ public class StylingPolicyTest extends TestCase {
     assertSanitizedCss("font-family:'a b'", "font-family: a<!--b");
   }
 
+  @Test
+  public static final void testRepeatedValuesAreCached() {
+    StylingPolicy p = new StylingPolicy(
+        CssSchema.DEFAULT, Function.<String>identity());
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(
+          "margin:0;padding:0",
+          p.apply("td", "style", "margin:0;padding:0"));
+      assertNull(p.apply("td", "style", "position: fixed"));
+    }
+    assertEquals(2, p.missCount());
+    assertEquals(4, p.hitCount());
+    assertSame(
+        p.apply("td", "style", "color: red"),
+        p.apply("p", "style", "color: red"));
+
+    // A joined policy does not see results computed under a narrower schema.
+    StylingPolicy q = new StylingPolicy(
+        CssSchema.withProperties(List.of("color")),
+        Function.<String>identity());
+    assertNull(q.apply("td", "style", "margin:0"));
+    StylingPolicy joined = (StylingPolicy)
+        StylingPolicy.StylingPolicyJoinStrategy.INSTANCE.join(
+            List.of(q, p));
+    assertEquals("margin:0", joined.apply("td", "style", "margin:0"));
+
+    StylingPolicy uncached = new StylingPolicy(
+        CssSchema.DEFAULT, Function.<String>identity(), 0);
+    for (int i = 0; i < 2; ++i) {
+      assertEquals("color:red", uncached.apply("p", "style", "color: red"));
+    }
+    assertEquals(0, uncached.hitCount());
+    assertEquals(0, uncached.missCount());
+  }
+
   private static void assertSanitizedCss(
       @Nullable String expectedCss, String css) {
     StylingPolicy stylingPolicy = new StylingPolicy(